@@ -0,0 +1,281 @@
+package com.bank.load;
+
+import com.bank.Application;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Open loop load generator replaying the requests of the HttpJsonIT testcase files
+ * against a real server, at a fixed rate whatever the response times.
+ *
+ * Request {@code i} is due at {@code start + i / rate} and its latency is measured from
+ * that time rather than from the moment a connection was free to send it, so queueing
+ * behind slow responses is part of the reported percentiles (no coordinated omission).
+ * Transactions whose offset is within the window get a random timestamp spread over the
+ * 60s window, the others keep their offset so expired and future paths stay exercised.
+ * DELETE requests and sleeps are skipped.
+ *
+ * Options, as {@code --name=value}:
+ * <ul>
+ *     <li>target: base url of the server, an embedded one on a random port when absent</li>
+ *     <li>rate: requests per second, 1000 by default</li>
+ *     <li>duration: seconds of measurement, 30 by default</li>
+ *     <li>warmup: seconds of load sent before measuring, 5 by default</li>
+ *     <li>connections: concurrent connections, 32 by default</li>
+ *     <li>testcases: directory of the testcase files, src/it/resources/testcases by default</li>
+ * </ul>
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dstart-class=com.bank.load.HttpLoadGenerator -Dexec.args="--rate=5000 --duration=60"
+ */
+public class HttpLoadGenerator {
+
+    private static final String TIMESTAMP_OFFSET_PROPERTY = "_timestampOffset";
+
+    private static final long WINDOW_TIME = 60000l;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX").withZone(ZoneId.of("UTC"));
+
+    // Up to one minute in microseconds with 3 significant digits
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    private final String target;
+    private final List<LoadRequest> requests;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicLong failures = new AtomicLong();
+
+    public HttpLoadGenerator(String target, List<LoadRequest> requests) {
+        this.target = target;
+        this.requests = requests;
+    }
+
+    public static void main(String... args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "32"));
+        Path testcases = Paths.get(options.getOrDefault("testcases", "src/it/resources/testcases"));
+
+        // HttpURLConnection only keeps 5 idle connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(connections));
+
+        ConfigurableApplicationContext context = null;
+        String target = options.get("target");
+        if (target == null) {
+            context = new SpringApplicationBuilder(Application.class)
+                    .web(Application.webApplicationType())
+                    .run("--server.port=0", "--logging.level.com.bank=WARN");
+            target = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            HttpLoadGenerator generator = new HttpLoadGenerator(target, LoadRequest.read(testcases));
+            System.out.println("Sending " + rate + " requests/s to " + target + " over " + connections
+                    + " connections for " + warmup + "s of warmup and " + duration + "s of measurement");
+            generator.run(rate, TimeUnit.SECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(duration), connections);
+            generator.report(System.out);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    public void run(int rate, long warmupNanos, long durationNanos, int connections) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            LoadRequest request = requests.get((int) (i % requests.size()));
+            boolean measured = intended >= measureStart;
+            executor.execute(() -> send(request, intended, measured));
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    public void report(PrintStream out) {
+        out.println(String.format("%-22s %9s %10s %10s %10s %10s  %s",
+                "endpoint", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "statuses"));
+        new TreeMap<>(endpoints).forEach((name, endpoint) -> {
+            Histogram latencies = endpoint.latencies;
+            out.println(String.format("%-22s %9d %10.3f %10.3f %10.3f %10.3f  %s", name,
+                    latencies.getTotalCount(),
+                    latencies.getValueAtPercentile(50) / 1000.0,
+                    latencies.getValueAtPercentile(99) / 1000.0,
+                    latencies.getValueAtPercentile(99.9) / 1000.0,
+                    latencies.getMaxValue() / 1000.0,
+                    new TreeMap<>(endpoint.statuses)));
+        });
+        out.println("Failed requests: " + failures.get());
+    }
+
+    private void send(LoadRequest request, long intended, boolean measured) {
+        int status;
+        try {
+            status = request.send(target);
+        } catch (IOException ex) {
+            failures.incrementAndGet();
+            return;
+        }
+        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+        if (measured) {
+            Endpoint endpoint = endpoints.computeIfAbsent(request.getName(), name -> new Endpoint());
+            endpoint.latencies.recordValue(Math.min(latency, HIGHEST_LATENCY));
+            endpoint.statuses.computeIfAbsent(status, code -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private static Map<String, String> parseOptions(String... args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, found " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static class Endpoint {
+        private final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * One request line of a testcase file.
+     */
+    public static class LoadRequest {
+        private final String method;
+        private final String url;
+        private final String contentType;
+        private final JsonNode body;
+
+        private LoadRequest(String method, String url, String contentType, JsonNode body) {
+            this.method = method;
+            this.url = url;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public static List<LoadRequest> read(Path directory) throws IOException {
+            List<LoadRequest> requests = new ArrayList<>();
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(file -> file.toString().endsWith(".json")).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    JsonNode request = OBJECT_MAPPER.readTree(line).get("request");
+                    if (request == null || "DELETE".equals(request.get("method").asText())) {
+                        continue;
+                    }
+                    JsonNode contentType = request.path("headers").get("Content-Type");
+                    requests.add(new LoadRequest(request.get("method").asText(), request.get("url").asText(),
+                            contentType == null ? null : contentType.asText(), request.get("body")));
+                }
+            }
+            if (requests.isEmpty()) {
+                throw new IllegalArgumentException("No request found in " + directory);
+            }
+            return requests;
+        }
+
+        public String getName() {
+            int query = url.indexOf('?');
+            return method + " " + (query < 0 ? url : url.substring(0, query));
+        }
+
+        int send(String target) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(target + url).openConnection();
+            connection.setRequestMethod(method);
+            if (contentType != null) {
+                connection.setRequestProperty("Content-Type", contentType);
+            }
+            if ("POST".equals(method) || "PUT".equals(method)) {
+                byte[] content = body().getBytes(StandardCharsets.UTF_8);
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(content.length);
+                try (OutputStream output = connection.getOutputStream()) {
+                    output.write(content);
+                }
+            }
+            int status = connection.getResponseCode();
+            // the response has to be read fully for the connection to be reused
+            try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (input != null) {
+                    byte[] buffer = new byte[1024];
+                    while (input.read(buffer) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            return status;
+        }
+
+        private String body() {
+            if (body == null || !body.isObject() || !body.has(TIMESTAMP_OFFSET_PROPERTY)) {
+                return body == null ? "" : body.toString();
+            }
+            ObjectNode bodyObject = ((ObjectNode) body).deepCopy();
+            long offset = bodyObject.remove(TIMESTAMP_OFFSET_PROPERTY).asLong();
+            if (offset <= 0 && offset >= -WINDOW_TIME) {
+                offset = -ThreadLocalRandom.current().nextLong(WINDOW_TIME);
+            }
+            bodyObject.put("timestamp", TIMESTAMP_FORMATTER.format(Instant.now().plusMillis(offset)));
+            return bodyObject.toString();
+        }
+    }
+}
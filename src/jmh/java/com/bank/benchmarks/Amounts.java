@@ -0,0 +1,36 @@
+package com.bank.benchmarks;
+
+import com.bank.utils.FixedPointStatistics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible transaction amounts for the benchmarks, between 0.01 and 10000.00.
+ */
+final class Amounts {
+
+    private static final long SEED = 42l;
+
+    private Amounts() {
+    }
+
+    static List<BigDecimal> list(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<BigDecimal> amounts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            amounts.add(BigDecimal.valueOf(random.nextLong(1l, 1000001l), FixedPointStatistics.SCALE));
+        }
+        return amounts;
+    }
+
+    static long[] scaled(List<BigDecimal> amounts) {
+        long[] scaled = new long[amounts.size()];
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] = FixedPointStatistics.toScaled(amounts.get(i));
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,72 @@
+package com.bank.benchmarks;
+
+import com.bank.utils.BigDecimalStatistics;
+import com.bank.utils.FixedPointStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of aggregating a whole window of amounts, sequentially and in parallel with the
+ * {@link BigDecimalStatistics#statistics()} collector and with {@link FixedPointStatistics}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StatisticsCollectionBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private List<BigDecimal> amounts;
+    private long[] scaledAmounts;
+
+    @Setup
+    public void setUp() {
+        amounts = Amounts.list(size);
+        scaledAmounts = Amounts.scaled(amounts);
+    }
+
+    @Benchmark
+    public BigDecimalStatistics collectSequential() {
+        return amounts.stream().collect(BigDecimalStatistics.statistics());
+    }
+
+    @Benchmark
+    public BigDecimalStatistics collectParallel() {
+        return amounts.parallelStream().collect(BigDecimalStatistics.statistics());
+    }
+
+    @Benchmark
+    public FixedPointStatistics fixedPointFromBigDecimals() {
+        FixedPointStatistics statistics = new FixedPointStatistics();
+        for (BigDecimal amount : amounts) {
+            statistics.accept(amount);
+        }
+        return statistics;
+    }
+
+    @Benchmark
+    public FixedPointStatistics fixedPointFromScaled() {
+        FixedPointStatistics statistics = new FixedPointStatistics();
+        for (long amount : scaledAmounts) {
+            statistics.accept(amount);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,65 @@
+package com.bank.benchmarks;
+
+import com.bank.utils.BigDecimalStatistics;
+import com.bank.utils.FixedPointStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@code combine} of the statistics of two halves of a window, as done by
+ * parallel collection, stripe merging and slice totals. The size only changes the
+ * magnitude of the sums being added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StatisticsCombineBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private BigDecimalStatistics left, right;
+    private FixedPointStatistics fixedLeft, fixedRight;
+
+    @Setup
+    public void setUp() {
+        List<BigDecimal> amounts = Amounts.list(size);
+        List<BigDecimal> leftAmounts = amounts.subList(0, size / 2);
+        List<BigDecimal> rightAmounts = amounts.subList(size / 2, size);
+
+        left = leftAmounts.stream().collect(BigDecimalStatistics.statistics());
+        right = rightAmounts.stream().collect(BigDecimalStatistics.statistics());
+
+        fixedLeft = new FixedPointStatistics();
+        leftAmounts.forEach(fixedLeft::accept);
+        fixedRight = new FixedPointStatistics();
+        rightAmounts.forEach(fixedRight::accept);
+    }
+
+    @Benchmark
+    public BigDecimalStatistics combineBigDecimal() {
+        // combine modifies the receiver, start from a copy of the left half
+        return new BigDecimalStatistics(left.getSum(), left.getMin(), left.getMax(), left.getCount()).combine(right);
+    }
+
+    @Benchmark
+    public FixedPointStatistics combineFixedPoint() {
+        return new FixedPointStatistics(fixedLeft).combine(fixedRight);
+    }
+}
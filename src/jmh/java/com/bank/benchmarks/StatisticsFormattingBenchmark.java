@@ -0,0 +1,71 @@
+package com.bank.benchmarks;
+
+import com.bank.models.Statistics;
+import com.bank.utils.BigDecimalStatistics;
+import com.bank.utils.FixedPointStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning aggregated statistics into the {@link Statistics} response, with the
+ * {@code setScale}/{@code toString} rounding of {@code StatisticsService.calculateStats}
+ * and with the fixed-point formatting it uses when the average is exact.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StatisticsFormattingBenchmark {
+
+    private static final int TRANSACTIONS_SCALE = 2;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private BigDecimalStatistics bigDecimalStatistics;
+    private FixedPointStatistics fixedPointStatistics;
+
+    @Setup
+    public void setUp() {
+        List<BigDecimal> amounts = Amounts.list(size);
+        bigDecimalStatistics = amounts.stream().collect(BigDecimalStatistics.statistics());
+        fixedPointStatistics = new FixedPointStatistics();
+        amounts.forEach(fixedPointStatistics::accept);
+    }
+
+    @Benchmark
+    public Statistics formatBigDecimal() {
+        BigDecimalStatistics statistics = bigDecimalStatistics;
+        return new Statistics(statistics.getSum().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                statistics.getAverage(MathContext.DECIMAL128).setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                statistics.getMax().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                statistics.getMin().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                statistics.getCount());
+    }
+
+    @Benchmark
+    public Statistics formatFixedPoint() {
+        FixedPointStatistics statistics = fixedPointStatistics;
+        return new Statistics(FixedPointStatistics.format(statistics.getScaledSum()),
+                FixedPointStatistics.format(statistics.getScaledAverage()),
+                FixedPointStatistics.format(statistics.getScaledMax()),
+                FixedPointStatistics.format(statistics.getScaledMin()),
+                statistics.getCount());
+    }
+}
@@ -0,0 +1,187 @@
+package com.bank.benchmarks;
+
+import com.bank.config.StatisticsConfiguration;
+import com.bank.models.Statistics;
+import com.bank.models.Transaction;
+import com.bank.services.StatisticsService;
+import com.bank.services.TransactionJournal;
+import com.bank.utils.CachedTimeSource;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.MultiResolutionWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.RollupHistory;
+import com.bank.utils.TimeSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readers, writers and the expiry sweep hitting one {@link StatisticsService} at the same
+ * time, for each ingest mode and pre-filled window size.
+ *
+ * Each group runs with the read:write ratio of its name, with one thread sweeping expired
+ * slices. Other thread counts or ratios can be given on the command line with
+ * {@code -tg readers,writers,sweepers}, e.g. {@code -tg 32,4,1}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StatisticsServiceBenchmark {
+
+    // Transactions are spread over the first part of the window so that most of the
+    // pre-filled ones are still there at the end of an iteration
+    private static final long FILL_SPREAD = 50000l;
+
+    @State(Scope.Benchmark)
+    public static class ServiceState {
+
+        @Param({StatisticsConfiguration.LOCKED_MODE, StatisticsConfiguration.STRIPED_MODE})
+        private String ingestMode;
+
+        @Param({"1000", "100000", "1000000"})
+        private int windowSize;
+
+        // -p exactQuantiles=false,true measures the cost of the exact quantile index
+        @Param({"false"})
+        private boolean exactQuantiles;
+
+        // -p clock=system,cached compares the time sources
+        @Param({StatisticsConfiguration.SYSTEM_CLOCK})
+        private String clock;
+
+        private TimeSource timeSource;
+        private StatisticsService service;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // the default logback configuration would log every transaction to the console
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+            MeterRegistry registry = new SimpleMeterRegistry();
+            StatisticsConfiguration configuration = new StatisticsConfiguration();
+            MultiResolutionWindow window = configuration.statisticsWindow(ingestMode, new String[]{"60s"}, registry);
+            OrderStatisticsWindow orderWindow = configuration.orderStatisticsWindow(1 << 20, exactQuantiles);
+            KeyedWindows keyedWindows = configuration.keyedWindows(1000l);
+            RollupHistory history = configuration.rollupHistory("1h", "1d");
+            timeSource = configuration.timeSource(clock, 1l);
+            // without directories the log and the checkpoints are disabled
+            TransactionJournal journal = new TransactionJournal(window, orderWindow, keyedWindows, timeSource, "", 1 << 26, 100l, 1 << 20, "", 10000l);
+            service = new StatisticsService(window, orderWindow, keyedWindows, history, journal, new ObjectMapper(), registry, timeSource, 0l);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (timeSource instanceof CachedTimeSource) {
+                ((CachedTimeSource) timeSource).close();
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void fill() {
+            service.cleanAll();
+            SplittableRandom random = new SplittableRandom(windowSize);
+            long now = timeSource.millis();
+            for (int i = 0; i < windowSize; i++) {
+                service.createTransaction(transaction(random, now - random.nextLong(FILL_SPREAD)));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(1)
+    public Statistics balancedRead(ServiceState state) {
+        return state.service.getStatistics();
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(1)
+    public Transaction balancedWrite(ServiceState state, WriterState writer) {
+        return state.service.createTransaction(transaction(writer.random, state.timeSource.millis()));
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(1)
+    public void balancedExpire(ServiceState state) {
+        state.service.cleanExpiredTransactions();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(10)
+    public Statistics readHeavyRead(ServiceState state) {
+        return state.service.getStatistics();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public Transaction readHeavyWrite(ServiceState state, WriterState writer) {
+        return state.service.createTransaction(transaction(writer.random, state.timeSource.millis()));
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public void readHeavyExpire(ServiceState state) {
+        state.service.cleanExpiredTransactions();
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(100)
+    public Statistics readMostlyRead(ServiceState state) {
+        return state.service.getStatistics();
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public Transaction readMostlyWrite(ServiceState state, WriterState writer) {
+        return state.service.createTransaction(transaction(writer.random, state.timeSource.millis()));
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public void readMostlyExpire(ServiceState state) {
+        state.service.cleanExpiredTransactions();
+    }
+
+    private static Transaction transaction(SplittableRandom random, long timestamp) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(BigDecimal.valueOf(random.nextLong(1l, 1000001l), 2));
+        transaction.setTimestamp(new Date(timestamp));
+        return transaction;
+    }
+}
@@ -0,0 +1,95 @@
+package com.bank.benchmarks;
+
+import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+import com.bank.models.TransactionDeserializer;
+import com.bank.utils.BinaryTransactions;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding a batch request body, the JSON array of {@code /transactions/batch}
+ * into {@link Transaction} objects against the {@link BinaryTransactions} encoding of the
+ * same transactions into a {@link TransactionBatch}. The JSON is decoded both by the
+ * {@link TransactionDeserializer} and by the generic bean deserializer it replaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TransactionDecodingBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private ObjectReader reader;
+    private ObjectReader beanReader;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        List<BigDecimal> amounts = Amounts.list(size);
+        long[] scaledAmounts = Amounts.scaled(amounts);
+        long now = System.currentTimeMillis();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder content = new StringBuilder("[");
+        TransactionBatch batch = new TransactionBatch(size);
+        for (int i = 0; i < size; i++) {
+            long timestamp = now - i;
+            content.append(i == 0 ? "" : ",")
+                    .append("{\"amount\":\"").append(amounts.get(i).toPlainString())
+                    .append("\",\"timestamp\":\"").append(format.format(new Date(timestamp))).append("\"}");
+            batch.add(timestamp, scaledAmounts[i]);
+        }
+        json = content.append("]").toString().getBytes(StandardCharsets.UTF_8);
+        binary = BinaryTransactions.encode(batch);
+        reader = new ObjectMapper().readerFor(Transaction[].class);
+        beanReader = new ObjectMapper().addMixIn(Transaction.class, BeanDeserialized.class).readerFor(Transaction[].class);
+    }
+
+    @Benchmark
+    public Transaction[] decodeJson() throws IOException {
+        return reader.readValue(json);
+    }
+
+    @Benchmark
+    public Transaction[] decodeJsonBean() throws IOException {
+        return beanReader.readValue(json);
+    }
+
+    @Benchmark
+    public TransactionBatch decodeBinary() throws IOException {
+        return BinaryTransactions.decode(ByteBuffer.wrap(binary));
+    }
+
+    @JsonDeserialize(using = JsonDeserializer.None.class)
+    private abstract static class BeanDeserialized {
+    }
+}
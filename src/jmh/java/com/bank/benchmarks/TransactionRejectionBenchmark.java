@@ -0,0 +1,98 @@
+package com.bank.benchmarks;
+
+import com.bank.config.StatisticsConfiguration;
+import com.bank.exceptions.ExpiredTransactionException;
+import com.bank.models.Admission;
+import com.bank.models.Transaction;
+import com.bank.services.StatisticsService;
+import com.bank.services.TransactionJournal;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.MultiResolutionWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.RollupHistory;
+import com.bank.utils.TimeSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rejecting an expired transaction with {@link StatisticsService#admit} against
+ * the exception of {@link StatisticsService#createTransaction}, stackless now and with a
+ * stack trace as it used to be, next to the cost of accepting one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TransactionRejectionBenchmark {
+
+    private StatisticsService service;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        // the default logback configuration would log every transaction to the console
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        StatisticsConfiguration configuration = new StatisticsConfiguration();
+        MultiResolutionWindow window = configuration.statisticsWindow(StatisticsConfiguration.LOCKED_MODE, new String[]{"60s"}, registry);
+        OrderStatisticsWindow orderWindow = configuration.orderStatisticsWindow(1 << 20, false);
+        KeyedWindows keyedWindows = configuration.keyedWindows(1000l);
+        RollupHistory history = configuration.rollupHistory("1h", "1d");
+        // without directories the log and the checkpoints are disabled
+        TransactionJournal journal = new TransactionJournal(window, orderWindow, keyedWindows, TimeSource.SYSTEM, "", 1 << 26, 100l, 1 << 20, "", 10000l);
+        service = new StatisticsService(window, orderWindow, keyedWindows, history, journal, new ObjectMapper(), registry, TimeSource.SYSTEM, 0l);
+        transaction = new Transaction();
+        transaction.setAmount(new BigDecimal("12.34"));
+    }
+
+    @Benchmark
+    public Admission admitAccepted() {
+        transaction.setTimestampMillis(System.currentTimeMillis());
+        return service.admit(transaction);
+    }
+
+    @Benchmark
+    public Admission admitExpired() {
+        transaction.setTimestampMillis(System.currentTimeMillis() - 100000l);
+        return service.admit(transaction);
+    }
+
+    @Benchmark
+    public Object createExpired() {
+        transaction.setTimestampMillis(System.currentTimeMillis() - 100000l);
+        try {
+            return service.createTransaction(transaction);
+        } catch (ExpiredTransactionException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Object createExpiredWithStackTrace() {
+        transaction.setTimestampMillis(System.currentTimeMillis() - 100000l);
+        try {
+            return service.createTransaction(transaction);
+        } catch (ExpiredTransactionException ex) {
+            // what constructing the exception used to add, at this depth only
+            return new RuntimeException(ex.getMessage());
+        }
+    }
+}
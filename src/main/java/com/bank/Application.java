@@ -1,13 +1,34 @@
 package com.bank;
 
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
 
 @SpringBootApplication
 public class Application {
 
+    public static final String WEB_APPLICATION_TYPE_PROPERTY = "spring.main.web-application-type";
+
     public static void main(String... args) {
-        SpringApplication.run(Application.class, args);
+        SpringApplication application = new SpringApplication(Application.class);
+        application.setWebApplicationType(webApplicationType(args));
+        application.run(args);
     }
 
+    /**
+     * Runtime selected with {@code --spring.main.web-application-type=reactive}, as an
+     * argument, a system property or an environment variable, servlet by default.
+     *
+     * Spring Boot 2.0 binds the property after creating a servlet environment, which
+     * enables the servlet configuration along with the reactive one, so it has to be
+     * known before the application starts.
+     */
+    public static WebApplicationType webApplicationType(String... args) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        String type = environment.getProperty(WEB_APPLICATION_TYPE_PROPERTY);
+        return type == null ? WebApplicationType.SERVLET : WebApplicationType.valueOf(type.trim().toUpperCase());
+    }
 }
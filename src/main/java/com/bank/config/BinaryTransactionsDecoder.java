@@ -0,0 +1,52 @@
+package com.bank.config;
+
+import com.bank.models.TransactionBatch;
+import com.bank.utils.BinaryTransactions;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Decodes {@link TransactionBatch} from the {@link BinaryTransactions} encoding on the
+ * reactive runtime, once the whole body is received.
+ */
+public class BinaryTransactionsDecoder extends AbstractDataBufferDecoder<TransactionBatch> {
+
+    public BinaryTransactionsDecoder() {
+        super(MimeType.valueOf(BinaryTransactions.MEDIA_TYPE_VALUE));
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return TransactionBatch.class == elementType.resolve() && super.canDecode(elementType, mimeType);
+    }
+
+    /**
+     * A batch is never split, the buffers of the body are joined first.
+     */
+    @Override
+    public Flux<TransactionBatch> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                         MimeType mimeType, Map<String, Object> hints) {
+        return decodeToMono(inputStream, elementType, mimeType, hints).flux();
+    }
+
+    @Override
+    protected TransactionBatch decodeDataBuffer(DataBuffer buffer, ResolvableType elementType,
+                                                MimeType mimeType, Map<String, Object> hints) {
+        try {
+            return BinaryTransactions.decode(buffer.asByteBuffer());
+        } catch (IOException ex) {
+            throw new DecodingException("Invalid binary transactions: " + ex.getMessage(), ex);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
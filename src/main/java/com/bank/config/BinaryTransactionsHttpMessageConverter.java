@@ -0,0 +1,46 @@
+package com.bank.config;
+
+import com.bank.models.TransactionBatch;
+import com.bank.utils.BinaryTransactions;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link TransactionBatch} in the {@link BinaryTransactions} encoding,
+ * on the servlet runtime and for {@code RestTemplate} clients.
+ */
+public class BinaryTransactionsHttpMessageConverter extends AbstractHttpMessageConverter<TransactionBatch> {
+
+    public BinaryTransactionsHttpMessageConverter() {
+        super(MediaType.valueOf(BinaryTransactions.MEDIA_TYPE_VALUE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TransactionBatch.class == clazz;
+    }
+
+    @Override
+    protected TransactionBatch readInternal(Class<? extends TransactionBatch> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return BinaryTransactions.read(inputMessage.getBody());
+        } catch (IOException ex) {
+            throw new HttpMessageNotReadableException("Invalid binary transactions: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected void writeInternal(TransactionBatch batch, HttpOutputMessage outputMessage) throws IOException {
+        BinaryTransactions.write(batch, outputMessage.getBody());
+    }
+
+    @Override
+    protected Long getContentLength(TransactionBatch batch, MediaType contentType) {
+        return (long) BinaryTransactions.getEncodedSize(batch);
+    }
+}
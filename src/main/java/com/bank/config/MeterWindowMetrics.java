@@ -0,0 +1,47 @@
+package com.bank.config;
+
+import com.bank.utils.WindowMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WindowMetrics} recorded as Micrometer meters, registered once so recording
+ * is only a few atomic increments.
+ */
+public class MeterWindowMetrics implements WindowMetrics {
+
+    private final Timer lockWait;
+    private final Timer lockHold;
+    private final DistributionSummary expiryBatch;
+
+    public MeterWindowMetrics(MeterRegistry registry) {
+        lockWait = Timer.builder("statistics.window.lock.wait")
+                .description("Time spent waiting for a window write lock")
+                .register(registry);
+        lockHold = Timer.builder("statistics.window.lock.hold")
+                .description("Time a window write lock was held")
+                .register(registry);
+        expiryBatch = DistributionSummary.builder("statistics.window.expiry.batch")
+                .description("Transactions evicted by one expiry pass")
+                .baseUnit("transactions")
+                .register(registry);
+    }
+
+    @Override
+    public void lockWaited(long nanos) {
+        lockWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void lockHeld(long nanos) {
+        lockHold.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void expired(long transactions) {
+        expiryBatch.record(transactions);
+    }
+}
@@ -0,0 +1,45 @@
+package com.bank.config;
+
+import com.bank.controllers.ReactiveStatisticsController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Reactive runtime of {@link ReactiveStatisticsController}, selected at startup with
+ * {@code spring.main.web-application-type=reactive}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfiguration implements WebFluxConfigurer {
+
+    private final ObjectMapper objectMapper;
+
+    public ReactiveConfiguration(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Tomcat is on the classpath for the servlet runtime and would otherwise be picked.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Newline delimited JSON is decoded like {@code application/stream+json}, one
+     * transaction per value, and the binary encoding of the transactions into primitives.
+     */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().decoder(new Jackson2JsonDecoder(objectMapper, MediaType.valueOf("application/x-ndjson")));
+        configurer.customCodecs().decoder(new BinaryTransactionsDecoder());
+    }
+}
@@ -0,0 +1,22 @@
+package com.bank.config;
+
+import com.bank.controllers.StatisticsController;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Servlet runtime of {@link StatisticsController}, the default one.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ServletConfiguration {
+
+    /**
+     * Added to the converters of Spring MVC next to the JSON one.
+     */
+    @Bean
+    public BinaryTransactionsHttpMessageConverter binaryTransactionsHttpMessageConverter() {
+        return new BinaryTransactionsHttpMessageConverter();
+    }
+}
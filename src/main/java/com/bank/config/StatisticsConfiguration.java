@@ -0,0 +1,119 @@
+package com.bank.config;
+
+import com.bank.utils.CachedTimeSource;
+import com.bank.utils.Constants;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.LockedWindow;
+import com.bank.utils.MultiResolutionWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.RollupHistory;
+import com.bank.utils.StatisticsWindow;
+import com.bank.utils.StripedWindow;
+import com.bank.utils.TimeSource;
+import com.bank.utils.VirtualTimeSource;
+import com.bank.utils.WindowDurations;
+import com.bank.utils.WindowMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+
+@Configuration
+public class StatisticsConfiguration {
+
+    public static final String LOCKED_MODE = "locked";
+    public static final String STRIPED_MODE = "striped";
+    public static final String SYSTEM_CLOCK = "system";
+    public static final String CACHED_CLOCK = "cached";
+    public static final String VIRTUAL_CLOCK = "virtual";
+
+    /**
+     * Time of the windows: the system clock, the cached one refreshed every
+     * {@code statistics.clock-resolution} ms, or a virtual one starting at the current
+     * time and only advanced through the {@link VirtualTimeSource} bean.
+     */
+    @Bean
+    public TimeSource timeSource(@Value("${statistics.clock:" + SYSTEM_CLOCK + "}") String clock,
+                                 @Value("${statistics.clock-resolution:1}") long resolution) {
+        if (SYSTEM_CLOCK.equalsIgnoreCase(clock)) {
+            return TimeSource.SYSTEM;
+        }
+        if (CACHED_CLOCK.equalsIgnoreCase(clock)) {
+            return new CachedTimeSource(resolution);
+        }
+        if (VIRTUAL_CLOCK.equalsIgnoreCase(clock)) {
+            return new VirtualTimeSource(System.currentTimeMillis());
+        }
+        throw new IllegalArgumentException("Unknown statistics.clock: " + clock);
+    }
+
+    /**
+     * Windows backing the statistics, the 60s window of the API plus the configured ones.
+     * The locked mode serializes writers on a single lock per window, the striped mode
+     * spreads them over per core stripes merged at read time.
+     */
+    @Bean
+    public MultiResolutionWindow statisticsWindow(@Value("${statistics.ingest-mode:" + LOCKED_MODE + "}") String ingestMode,
+                                                  @Value("${statistics.windows:60s}") String[] windowDurations,
+                                                  MeterRegistry meterRegistry) {
+        WindowMetrics metrics = new MeterWindowMetrics(meterRegistry);
+        long[] windowTimes = Arrays.stream(windowDurations)
+                .mapToLong(WindowDurations::parse)
+                .filter(windowTime -> windowTime != Constants.WINDOW_TIME)
+                .distinct()
+                .sorted()
+                .toArray();
+        windowTimes = Arrays.copyOf(windowTimes, windowTimes.length + 1);
+        windowTimes[windowTimes.length - 1] = Constants.WINDOW_TIME;
+
+        StatisticsWindow[] windows = new StatisticsWindow[windowTimes.length];
+        for (int i = 0; i < windowTimes.length; i++) {
+            long sliceTime = MultiResolutionWindow.sliceTime(windowTimes[i], Constants.SLICE_TIME, Constants.MAX_SLICES);
+            windows[i] = statisticsWindow(ingestMode, windowTimes[i], sliceTime, metrics);
+        }
+        return new MultiResolutionWindow(Constants.WINDOW_TIME, windowTimes, windows);
+    }
+
+    /**
+     * Amounts of the 60s window indexed for exact quantile and rank queries, sliced like
+     * the 60s statistics window so both hold the same transactions. Disabled unless
+     * {@code statistics.exact-quantiles} is set.
+     */
+    @Bean
+    public OrderStatisticsWindow orderStatisticsWindow(@Value("${statistics.order-buckets:1048576}") int buckets,
+                                                       @Value("${statistics.exact-quantiles:false}") boolean enabled) {
+        long sliceTime = MultiResolutionWindow.sliceTime(Constants.WINDOW_TIME, Constants.SLICE_TIME, Constants.MAX_SLICES);
+        return new OrderStatisticsWindow(Constants.WINDOW_TIME, sliceTime, buckets, enabled);
+    }
+
+    /**
+     * 60s windows of the transactions sent with a key, sharded for concurrent writers.
+     */
+    @Bean
+    public KeyedWindows keyedWindows(@Value("${statistics.key-slice-time:1000}") long sliceTime) {
+        return new KeyedWindows(Constants.WINDOW_TIME, sliceTime, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Per second and per minute roll-ups of the transactions accepted, kept for
+     * {@code GET /statistics/history} long after they left the windows.
+     */
+    @Bean
+    public RollupHistory rollupHistory(@Value("${statistics.history-seconds:1h}") String secondsRetention,
+                                       @Value("${statistics.history-minutes:1d}") String minutesRetention) {
+        return new RollupHistory(new long[]{1000l, 60000l},
+                new long[]{WindowDurations.parse(secondsRetention), WindowDurations.parse(minutesRetention)});
+    }
+
+    private static StatisticsWindow statisticsWindow(String ingestMode, long windowTime, long sliceTime, WindowMetrics metrics) {
+        if (STRIPED_MODE.equalsIgnoreCase(ingestMode)) {
+            return new StripedWindow(windowTime, sliceTime, Runtime.getRuntime().availableProcessors(), metrics);
+        }
+        if (LOCKED_MODE.equalsIgnoreCase(ingestMode)) {
+            return new LockedWindow(windowTime, sliceTime, metrics);
+        }
+        throw new IllegalArgumentException("Unknown statistics.ingest-mode: " + ingestMode);
+    }
+}
@@ -0,0 +1,214 @@
+package com.bank.controllers;
+
+
+import com.bank.models.BatchResult;
+import com.bank.models.OrderStatistic;
+import com.bank.models.Statistics;
+import com.bank.models.StatisticsHistory;
+import com.bank.models.StatisticsSnapshot;
+import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+import com.bank.services.PeerAggregator;
+import com.bank.services.StatisticsService;
+import com.bank.services.StatisticsStream;
+import com.bank.services.TransactionJournal;
+import com.bank.utils.BinaryTransactions;
+import com.bank.utils.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.validation.Valid;
+import java.math.BigDecimal;
+
+/**
+ * Same contract as {@link StatisticsController} on the reactive runtime, started with
+ * {@code spring.main.web-application-type=reactive}. Bodies are decoded without blocking.
+ * Reads only take short window locks and run on the event loop. Writes do as well
+ * unless the {@link TransactionJournal} is enabled: appending to the log, waiting for a
+ * checkpoint capturing the slices or deleting its files may block, so they run on a
+ * pool of {@code statistics.journal-threads} threads instead.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveStatisticsController implements DisposableBean {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private StatisticsStream statisticsStream;
+
+    @Autowired
+    private PeerAggregator peerAggregator;
+
+    @Autowired
+    private TransactionJournal journal;
+
+    @Value("${statistics.journal-threads:8}")
+    private int journalThreads;
+
+    // Null when the journal is disabled
+    private Scheduler journalScheduler;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveStatisticsController.class);
+
+    @PostMapping(path = "/transactions", produces = {"application/json"})
+    public Mono<ResponseEntity<Object>> createTransaction(@RequestBody @Valid Mono<Transaction> transaction) {
+        return onJournal(transaction).map(received -> {
+            logger.debug("Creating transaction: {}", received);
+            return StatisticsController.admissionResponse(statisticsService.admit(received));
+        });
+    }
+
+    /**
+     * Both the JSON array and the newline delimited variants are decoded as a stream of
+     * transactions applied in chunks, chunks applied before a malformed transaction are kept.
+     */
+    @PostMapping(path = "/transactions/batch", consumes = {"application/json", StatisticsController.NDJSON}, produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<BatchResult> createTransactions(@RequestBody Flux<Transaction> transactions) {
+        logger.debug("Creating transactions from stream");
+        return onJournal(transactions.buffer(StatisticsController.STREAM_CHUNK_SIZE))
+                .map(statisticsService::createTransactions)
+                .reduce(new BatchResult(), BatchResult::add);
+    }
+
+    /**
+     * Binary variant of the batch, see {@link BinaryTransactions}, decoded into primitives
+     * once the whole body is received.
+     */
+    @PostMapping(path = "/transactions/batch", consumes = {BinaryTransactions.MEDIA_TYPE_VALUE}, produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<BatchResult> createBinaryTransactions(@RequestBody Mono<TransactionBatch> batch) {
+        return onJournal(batch).map(received -> {
+            logger.debug("Creating binary batch of {} transactions", received.getSize());
+            return statisticsService.createTransactions(received);
+        });
+    }
+
+    @GetMapping(path = "/statistics", produces = {"application/json"})
+    public ResponseEntity<byte[]> getStatistics(@RequestParam(name = "window", required = false) String window,
+                                                @RequestParam(name = "percentiles", defaultValue = "false") boolean percentiles) {
+        logger.debug("Getting statistics");
+        StatisticsSnapshot snapshot = window == null ? statisticsService.getSnapshot() : statisticsService.getSnapshot(StatisticsController.parseWindow(window));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(percentiles ? snapshot.getPercentilesEtag() : snapshot.getEtag())
+                .body(percentiles ? snapshot.getPercentilesJson() : snapshot.getJson());
+    }
+
+    /**
+     * Writes the shared frames as they are, each one flushed on its own.
+     */
+    @GetMapping(path = "/statistics/stream", produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Mono<Void> streamStatistics(@RequestParam(name = "percentiles", defaultValue = "false") boolean percentiles,
+                                       ServerHttpResponse response) {
+        logger.debug("Streaming statistics");
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        response.getHeaders().setCacheControl(CacheControl.noCache().getHeaderValue());
+        return response.writeAndFlushWith(statisticsStream.subscribe(percentiles)
+                .map(frame -> Mono.just(response.bufferFactory().wrap(frame))));
+    }
+
+    @GetMapping(path = "/statistics/partial", produces = {MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<byte[]> getPartial(@RequestParam(name = "window", required = false) String window) {
+        logger.debug("Getting partial statistics");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(statisticsService.getPartial(window == null ? Constants.WINDOW_TIME : StatisticsController.parseWindow(window)));
+    }
+
+    /**
+     * The peers are queried with blocking calls, off the event loop.
+     */
+    @GetMapping(path = "/statistics/cluster", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Statistics> getClusterStatistics(@RequestParam(name = "window", required = false) String window,
+                                                 @RequestParam(name = "percentiles", defaultValue = "false") boolean percentiles) {
+        logger.debug("Getting cluster statistics");
+        long windowTime = window == null ? Constants.WINDOW_TIME : StatisticsController.parseWindow(window);
+        return Mono.fromCallable(() -> peerAggregator.getStatistics(windowTime, percentiles))
+                .subscribeOn(Schedulers.elastic());
+    }
+
+    @GetMapping(path = "/statistics/quantile", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public OrderStatistic getQuantile(@RequestParam("q") double quantile) {
+        logger.debug("Getting quantile {}", quantile);
+        return statisticsService.getQuantile(quantile);
+    }
+
+    @GetMapping(path = "/statistics/rank", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public OrderStatistic getRank(@RequestParam("amount") BigDecimal amount) {
+        logger.debug("Getting rank of {}", amount);
+        return statisticsService.getRank(amount);
+    }
+
+    @GetMapping(path = "/statistics/history", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public StatisticsHistory getHistory(@RequestParam(name = "from", required = false) String from,
+                                        @RequestParam(name = "to", required = false) String to,
+                                        @RequestParam(name = "step", required = false) String step) {
+        logger.debug("Getting history from {} to {} by {}", from, to, step);
+        return statisticsService.getHistory(StatisticsController.parseTime(from), StatisticsController.parseTime(to),
+                StatisticsController.parseStep(step));
+    }
+
+    @GetMapping(path = "/statistics/{key}", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public Statistics getKeyStatistics(@PathVariable("key") String key) {
+        logger.debug("Getting statistics of key {}", key);
+        return statisticsService.getStatistics(key);
+    }
+
+    @DeleteMapping(path = "/transactions", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deleteAllTransactions() {
+        return onJournal(Mono.just(Boolean.TRUE)).doOnNext(start -> {
+            logger.debug("Deleting all transactions");
+            statisticsService.cleanAll();
+        }).then();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (journal.isEnabled()) {
+            journalScheduler = Schedulers.newParallel("statistics-journal-io", journalThreads, true);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (journalScheduler != null) {
+            journalScheduler.dispose();
+        }
+    }
+
+    /**
+     * Moves the service calls applied downstream off the event loop when they may block.
+     */
+    private <T> Mono<T> onJournal(Mono<T> upstream) {
+        return journalScheduler == null ? upstream : upstream.publishOn(journalScheduler);
+    }
+
+    private <T> Flux<T> onJournal(Flux<T> upstream) {
+        return journalScheduler == null ? upstream : upstream.publishOn(journalScheduler);
+    }
+
+}
@@ -1,42 +1,245 @@
 package com.bank.controllers;
 
 
+import com.bank.exceptions.ExceptionResponse;
+import com.bank.exceptions.InvalidHistoryException;
+import com.bank.exceptions.UnknownWindowException;
+import com.bank.models.Admission;
+import com.bank.models.BatchResult;
+import com.bank.models.OrderStatistic;
 import com.bank.models.Statistics;
+import com.bank.models.StatisticsHistory;
+import com.bank.models.StatisticsSnapshot;
 import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+import com.bank.services.PeerAggregator;
 import com.bank.services.StatisticsService;
+import com.bank.utils.BinaryTransactions;
+import com.bank.utils.Constants;
+import com.bank.utils.IsoTimestamps;
+import com.bank.utils.WindowDurations;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
-
+/**
+ * Endpoints of the servlet runtime, see {@link ReactiveStatisticsController} for the reactive one.
+ */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class StatisticsController {
 
     @Autowired
     private StatisticsService statisticsService;
 
+    @Autowired
+    private PeerAggregator peerAggregator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    static final String NDJSON = "application/x-ndjson";
+    static final int STREAM_CHUNK_SIZE = 1024;
+    static final String FUTURE_DATED = "Future dated transaction";
+
     private static final Logger logger = LoggerFactory.getLogger(StatisticsController.class);
 
+    /**
+     * 201 when accepted, 204 when expired and 422 when future dated, the rejections being
+     * answered without throwing.
+     */
     @PostMapping(path = "/transactions", produces = {"application/json"})
-    @ResponseStatus(HttpStatus.CREATED)
-    public void createTransaction(@RequestBody @Valid Transaction transaction) {
-        logger.debug("Creating transaction: " + transaction.toString());
-        statisticsService.createTransaction(transaction);
-        System.out.println(statisticsService.getStatistics());
+    public ResponseEntity<Object> createTransaction(@RequestBody @Valid Transaction transaction) {
+        logger.debug("Creating transaction: {}", transaction);
+        return admissionResponse(statisticsService.admit(transaction));
     }
 
+    @PostMapping(path = "/transactions/batch", consumes = {"application/json"}, produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public BatchResult createTransactions(@RequestBody List<Transaction> transactions) {
+        logger.debug("Creating batch of {} transactions", transactions.size());
+        return statisticsService.createTransactions(transactions);
+    }
 
-    @GetMapping(path = "/statistics", produces = {"application/json"})
+    /**
+     * Binary variant of the batch, see {@link BinaryTransactions}, decoded into primitives
+     * without any parsing.
+     */
+    @PostMapping(path = "/transactions/batch", consumes = {BinaryTransactions.MEDIA_TYPE_VALUE}, produces = {"application/json"})
     @ResponseStatus(HttpStatus.OK)
-    public Statistics getStatistics() {
+    public BatchResult createBinaryTransactions(@RequestBody TransactionBatch batch) {
+        logger.debug("Creating binary batch of {} transactions", batch.getSize());
+        return statisticsService.createTransactions(batch);
+    }
+
+    /**
+     * Newline delimited variant of the batch, parsed incrementally and applied in chunks
+     * so the stream is never held in memory. Chunks applied before a malformed line are kept.
+     */
+    @PostMapping(path = "/transactions/batch", consumes = {NDJSON}, produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public BatchResult createTransactionStream(HttpServletRequest request) throws IOException {
+        logger.debug("Creating transactions from stream");
+        BatchResult result = new BatchResult();
+        List<Transaction> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        try (MappingIterator<Transaction> transactions = objectMapper.readerFor(Transaction.class).readValues(request.getInputStream())) {
+            while (transactions.hasNextValue()) {
+                chunk.add(transactions.nextValue());
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    result.add(statisticsService.createTransactions(chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            throw new HttpMessageNotReadableException("Invalid transaction stream: " + ex.getOriginalMessage(), ex);
+        }
+        if (!chunk.isEmpty()) {
+            result.add(statisticsService.createTransactions(chunk));
+        }
+        return result;
+    }
+
+    /**
+     * Sends the JSON encoded once per window version, tagged with the version so that
+     * a request with a matching If-None-Match gets a 304 instead. The optional window
+     * parameter selects one of the configured windows, e.g. {@code 1h}, 60s by default,
+     * and {@code percentiles=true} adds the estimated p50, p95 and p99.
+     */
+    @GetMapping(path = "/statistics", produces = {"application/json"})
+    public ResponseEntity<byte[]> getStatistics(@RequestParam(name = "window", required = false) String window,
+                                                @RequestParam(name = "percentiles", defaultValue = "false") boolean percentiles) {
         logger.debug("Getting statistics");
-        return statisticsService.getStatistics();
+        StatisticsSnapshot snapshot = window == null ? statisticsService.getSnapshot() : statisticsService.getSnapshot(parseWindow(window));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(percentiles ? snapshot.getPercentilesEtag() : snapshot.getEtag())
+                .body(percentiles ? snapshot.getPercentilesJson() : snapshot.getJson());
+    }
+
+    /**
+     * Mergeable state of a window for {@code GET /statistics/cluster} of another instance,
+     * the statistics and quantile sketch of each non empty slice in a compact binary form.
+     */
+    @GetMapping(path = "/statistics/partial", produces = {MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<byte[]> getPartial(@RequestParam(name = "window", required = false) String window) {
+        logger.debug("Getting partial statistics");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(statisticsService.getPartial(window == null ? Constants.WINDOW_TIME : parseWindow(window)));
+    }
+
+    /**
+     * Statistics of a window over this instance and the ones of {@code statistics.peers},
+     * see {@link PeerAggregator}. 502 when a peer does not answer.
+     */
+    @GetMapping(path = "/statistics/cluster", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public Statistics getClusterStatistics(@RequestParam(name = "window", required = false) String window,
+                                           @RequestParam(name = "percentiles", defaultValue = "false") boolean percentiles) {
+        logger.debug("Getting cluster statistics");
+        return peerAggregator.getStatistics(window == null ? Constants.WINDOW_TIME : parseWindow(window), percentiles);
+    }
+
+    /**
+     * Exact amount at the quantile {@code q} of the 60s window, e.g. {@code q=0.5} for the median.
+     */
+    @GetMapping(path = "/statistics/quantile", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public OrderStatistic getQuantile(@RequestParam("q") double quantile) {
+        logger.debug("Getting quantile {}", quantile);
+        return statisticsService.getQuantile(quantile);
+    }
+
+    /**
+     * Number of amounts of the 60s window below the given one.
+     */
+    @GetMapping(path = "/statistics/rank", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public OrderStatistic getRank(@RequestParam("amount") BigDecimal amount) {
+        logger.debug("Getting rank of {}", amount);
+        return statisticsService.getRank(amount);
     }
 
+    /**
+     * Statistics of {@code [from, to)} per {@code step}, merged from the per second roll-ups
+     * of the last hour and the per minute ones of the last day. The bounds are ISO-8601
+     * timestamps or epoch millis, the last hour by default, the step a duration such as
+     * {@code 10s} or {@code 5m}, a minute by default.
+     */
+    @GetMapping(path = "/statistics/history", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public StatisticsHistory getHistory(@RequestParam(name = "from", required = false) String from,
+                                        @RequestParam(name = "to", required = false) String to,
+                                        @RequestParam(name = "step", required = false) String step) {
+        logger.debug("Getting history from {} to {} by {}", from, to, step);
+        return statisticsService.getHistory(parseTime(from), parseTime(to), parseStep(step));
+    }
+
+    /**
+     * Statistics of the 60s window of the transactions sent with the given key, e.g. an
+     * account or a merchant. The quantile, rank, stream, partial, cluster and history
+     * paths take precedence over the key.
+     */
+    @GetMapping(path = "/statistics/{key}", produces = {"application/json"})
+    @ResponseStatus(HttpStatus.OK)
+    public Statistics getKeyStatistics(@PathVariable("key") String key) {
+        logger.debug("Getting statistics of key {}", key);
+        return statisticsService.getStatistics(key);
+    }
+
+    static long parseWindow(String window) {
+        try {
+            return WindowDurations.parse(window);
+        } catch (IllegalArgumentException ex) {
+            throw new UnknownWindowException(ex.getMessage());
+        }
+    }
+
+    /**
+     * @return the epoch millis of an ISO-8601 timestamp or of epoch millis, null when absent
+     */
+    static Long parseTime(String time) {
+        if (time == null) {
+            return null;
+        }
+        long millis = IsoTimestamps.parse(time);
+        if (millis != IsoTimestamps.INVALID) {
+            return millis;
+        }
+        try {
+            return Long.parseLong(time);
+        } catch (NumberFormatException ex) {
+            throw new InvalidHistoryException("Invalid time: " + time);
+        }
+    }
+
+    static Long parseStep(String step) {
+        if (step == null) {
+            return null;
+        }
+        try {
+            return WindowDurations.parse(step);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidHistoryException("Invalid step: " + step);
+        }
+    }
 
     @DeleteMapping(path = "/transactions", produces = {"application/json"})
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -45,4 +248,21 @@ public class StatisticsController {
         statisticsService.cleanAll();
     }
 
+    /**
+     * The responses {@link com.bank.exceptions.CustomizedExceptionHandling} gives to the
+     * exceptions of {@link StatisticsService#createTransaction}.
+     */
+    static ResponseEntity<Object> admissionResponse(Admission admission) {
+        switch (admission) {
+            case EXPIRED:
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            case FUTURE:
+                ExceptionResponse response = new ExceptionResponse();
+                response.setDateTime(LocalDateTime.now());
+                response.setMessage(FUTURE_DATED);
+                return new ResponseEntity<>(response, HttpStatus.UNPROCESSABLE_ENTITY);
+            default:
+                return new ResponseEntity<>(HttpStatus.CREATED);
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package com.bank.controllers;
+
+import com.bank.services.StatisticsStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Statistics stream of the servlet runtime, apart from {@link StatisticsController} so
+ * that closed connections are handled for the stream only.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class StatisticsStreamController {
+
+    @Autowired
+    private StatisticsStream statisticsStream;
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsStreamController.class);
+
+    /**
+     * Server-Sent Events of the 60s statistics, the current ones first and then their
+     * changes at most once per {@code statistics.stream-interval}, see {@link StatisticsStream}.
+     * Frames are written one at a time on a separate thread, a client not reading blocks
+     * only its own thread until the write times out.
+     */
+    @GetMapping(path = "/statistics/stream", produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> streamStatistics(@RequestParam(name = "percentiles", defaultValue = "false") boolean percentiles) {
+        logger.debug("Streaming statistics");
+        // no timeout, the stream lasts until the client leaves
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0l);
+        Disposable subscription = statisticsStream.subscribe(percentiles)
+                .publishOn(Schedulers.elastic(), 1)
+                .subscribe(frame -> send(emitter, frame), emitter::completeWithError, emitter::complete);
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noCache())
+                .body(emitter);
+    }
+
+    /**
+     * Write failures once the client left, typically a dashboard being closed, there is
+     * nobody left to answer.
+     */
+    @ExceptionHandler(IOException.class)
+    public void handleClosedConnection(IOException ex) {
+        logger.debug("Statistics stream closed: {}", ex.getMessage());
+    }
+
+    private static void send(ResponseBodyEmitter emitter, byte[] frame) {
+        try {
+            emitter.send(frame, MediaType.TEXT_EVENT_STREAM);
+        } catch (IOException ex) {
+            // cancels the subscription
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
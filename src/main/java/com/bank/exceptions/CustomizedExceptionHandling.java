@@ -1,6 +1,7 @@
 package com.bank.exceptions;
 
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +15,7 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 import java.time.LocalDateTime;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomizedExceptionHandling extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler(ExpiredTransactionException.class)
@@ -22,7 +24,7 @@ public class CustomizedExceptionHandling extends ResponseEntityExceptionHandler
     }
 
     @ExceptionHandler(FutureTransactionException.class)
-    protected ResponseEntity<Object> handleFutureDatedTransaction(MethodArgumentNotValidException ex, WebRequest request)
+    protected ResponseEntity<Object> handleFutureDatedTransaction(FutureTransactionException ex, WebRequest request)
     {
         ExceptionResponse response = new ExceptionResponse();
         response.setDateTime(LocalDateTime.now());
@@ -31,6 +33,51 @@ public class CustomizedExceptionHandling extends ResponseEntityExceptionHandler
         return new ResponseEntity(response, HttpStatus.UNPROCESSABLE_ENTITY);
     }
 
+    @ExceptionHandler(UnknownWindowException.class)
+    public ResponseEntity<Object> handleUnknownWindowException(UnknownWindowException exception, WebRequest webRequest) {
+        ExceptionResponse response = new ExceptionResponse();
+        response.setDateTime(LocalDateTime.now());
+        response.setMessage(exception.getMessage());
+
+        return new ResponseEntity(response, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidQuantileException.class)
+    public ResponseEntity<Object> handleInvalidQuantileException(InvalidQuantileException exception, WebRequest webRequest) {
+        ExceptionResponse response = new ExceptionResponse();
+        response.setDateTime(LocalDateTime.now());
+        response.setMessage(exception.getMessage());
+
+        return new ResponseEntity(response, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(QuantilesDisabledException.class)
+    public ResponseEntity<Object> handleQuantilesDisabledException(QuantilesDisabledException exception, WebRequest webRequest) {
+        ExceptionResponse response = new ExceptionResponse();
+        response.setDateTime(LocalDateTime.now());
+        response.setMessage(exception.getMessage());
+
+        return new ResponseEntity(response, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(InvalidHistoryException.class)
+    public ResponseEntity<Object> handleInvalidHistoryException(InvalidHistoryException exception, WebRequest webRequest) {
+        ExceptionResponse response = new ExceptionResponse();
+        response.setDateTime(LocalDateTime.now());
+        response.setMessage(exception.getMessage());
+
+        return new ResponseEntity(response, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(PeerUnavailableException.class)
+    public ResponseEntity<Object> handlePeerUnavailableException(PeerUnavailableException exception, WebRequest webRequest) {
+        ExceptionResponse response = new ExceptionResponse();
+        response.setDateTime(LocalDateTime.now());
+        response.setMessage(exception.getMessage());
+
+        return new ResponseEntity(response, HttpStatus.BAD_GATEWAY);
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex, HttpHeaders headers, HttpStatus status, WebRequest request)
     {
@@ -3,9 +3,13 @@ package com.bank.exceptions;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * Thrown by {@link com.bank.services.StatisticsService#createTransaction} for a transaction
+ * already out of the window. Replays of old transactions throw it in bulk, hence no stack trace.
+ */
 @ResponseStatus(value = HttpStatus.NO_CONTENT)
 public class ExpiredTransactionException extends RuntimeException {
     public ExpiredTransactionException(String message){
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -3,9 +3,13 @@ package com.bank.exceptions;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * Thrown by {@link com.bank.services.StatisticsService#createTransaction} for a future
+ * dated transaction, without a stack trace: the client's clock is at fault, not the code.
+ */
 @ResponseStatus(value = HttpStatus.UNPROCESSABLE_ENTITY)
 public class FutureTransactionException extends RuntimeException {
     public FutureTransactionException(String message){
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -0,0 +1,11 @@
+package com.bank.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidQuantileException extends RuntimeException {
+    public InvalidQuantileException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.bank.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_GATEWAY)
+public class PeerUnavailableException extends RuntimeException {
+    public PeerUnavailableException(String message){
+        super(message);
+    }
+}
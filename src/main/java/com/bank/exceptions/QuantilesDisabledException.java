@@ -0,0 +1,11 @@
+package com.bank.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class QuantilesDisabledException extends RuntimeException {
+    public QuantilesDisabledException(String message){
+        super(message);
+    }
+}
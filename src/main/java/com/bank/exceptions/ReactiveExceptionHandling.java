@@ -0,0 +1,72 @@
+package com.bank.exceptions;
+
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.time.LocalDateTime;
+
+/**
+ * Status codes of {@link CustomizedExceptionHandling} on the reactive runtime.
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveExceptionHandling {
+
+    @ExceptionHandler(ExpiredTransactionException.class)
+    public ResponseEntity<Object> handleExpiredTransactionExceptions(ExpiredTransactionException exception) {
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @ExceptionHandler(FutureTransactionException.class)
+    public ResponseEntity<Object> handleFutureDatedTransaction(FutureTransactionException exception) {
+        return response(exception.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler({UnknownWindowException.class, InvalidQuantileException.class, InvalidHistoryException.class})
+    public ResponseEntity<Object> handleInvalidQuery(RuntimeException exception) {
+        return response(exception.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(QuantilesDisabledException.class)
+    public ResponseEntity<Object> handleQuantilesDisabled(QuantilesDisabledException exception) {
+        return response(exception.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(PeerUnavailableException.class)
+    public ResponseEntity<Object> handlePeerUnavailable(PeerUnavailableException exception) {
+        return response(exception.getMessage(), HttpStatus.BAD_GATEWAY);
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Object> handleMethodArgumentNotValid(WebExchangeBindException exception) {
+        return response(exception.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Unreadable bodies and parameters, 422 when a JSON value has the wrong format like
+     * the servlet runtime does.
+     */
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<Object> handleServerWebInput(ServerWebInputException exception) {
+        for (Throwable cause = exception.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof InvalidFormatException) {
+                return response(exception.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+        }
+        return response(exception.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    private static ResponseEntity<Object> response(String message, HttpStatus status) {
+        ExceptionResponse response = new ExceptionResponse();
+        response.setDateTime(LocalDateTime.now());
+        response.setMessage(message);
+
+        return new ResponseEntity<>(response, status);
+    }
+}
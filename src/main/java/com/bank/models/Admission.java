@@ -0,0 +1,12 @@
+package com.bank.models;
+
+/**
+ * Outcome of adding a single transaction, see
+ * {@link com.bank.services.StatisticsService#admit(Transaction)}.
+ */
+public enum Admission {
+    ACCEPTED,
+    // Older than the window, or left it while being added
+    EXPIRED,
+    FUTURE
+}
@@ -0,0 +1,70 @@
+package com.bank.models;
+
+public class BatchResult {
+    private long accepted;
+    private long expired;
+    private long future;
+    private long invalid;
+
+    public BatchResult()
+    {
+
+    }
+
+    public BatchResult(long accepted, long expired, long future, long invalid) {
+        this.accepted = accepted;
+        this.expired = expired;
+        this.future = future;
+        this.invalid = invalid;
+    }
+
+    public BatchResult add(BatchResult result) {
+        accepted += result.accepted;
+        expired += result.expired;
+        future += result.future;
+        invalid += result.invalid;
+        return this;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(long accepted) {
+        this.accepted = accepted;
+    }
+
+    public long getExpired() {
+        return expired;
+    }
+
+    public void setExpired(long expired) {
+        this.expired = expired;
+    }
+
+    public long getFuture() {
+        return future;
+    }
+
+    public void setFuture(long future) {
+        this.future = future;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public void setInvalid(long invalid) {
+        this.invalid = invalid;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "accepted=" + accepted +
+                ", expired=" + expired +
+                ", future=" + future +
+                ", invalid=" + invalid +
+                '}';
+    }
+}
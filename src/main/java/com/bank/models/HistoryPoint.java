@@ -0,0 +1,36 @@
+package com.bank.models;
+
+/**
+ * Statistics of the transactions timestamped within one step of a {@link StatisticsHistory},
+ * starting at {@code time}.
+ */
+public class HistoryPoint {
+    private String time;
+    private Statistics statistics;
+
+    public HistoryPoint()
+    {
+
+    }
+
+    public HistoryPoint(String time, Statistics statistics) {
+        this.time = time;
+        this.statistics = statistics;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    public void setTime(String time) {
+        this.time = time;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(Statistics statistics) {
+        this.statistics = statistics;
+    }
+}
@@ -0,0 +1,55 @@
+package com.bank.models;
+
+/**
+ * Amount of a given rank in the window: {@code rank} amounts are strictly below it,
+ * out of {@code count}.
+ */
+public class OrderStatistic {
+    private String amount;
+    private long rank;
+    private long count;
+
+    public OrderStatistic()
+    {
+
+    }
+
+    public OrderStatistic(String amount, long rank, long count) {
+        this.amount = amount;
+        this.rank = rank;
+        this.count = count;
+    }
+
+    public String getAmount() {
+        return amount;
+    }
+
+    public void setAmount(String amount) {
+        this.amount = amount;
+    }
+
+    public long getRank() {
+        return rank;
+    }
+
+    public void setRank(long rank) {
+        this.rank = rank;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderStatistic{" +
+                "amount=" + amount +
+                ", rank=" + rank +
+                ", count=" + count +
+                '}';
+    }
+}
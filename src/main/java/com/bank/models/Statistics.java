@@ -1,11 +1,20 @@
 package com.bank.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class Statistics {
     private String sum;
     private String avg;
     private String max;
     private String min;
     private Long count;
+    // Only sent to the clients asking for percentiles
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String p50;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String p95;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String p99;
 
     public Statistics()
     {
@@ -20,6 +29,13 @@ public class Statistics {
         this.count = count;
     }
 
+    public Statistics(String sum, String avg, String max, String min, Long count, String p50, String p95, String p99) {
+        this(sum, avg, max, min, count);
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+    }
+
 
     public String getSum() {
         return sum;
@@ -60,6 +76,28 @@ public class Statistics {
     public void setCount(Long count) {
         this.count = count;
     }
-}
 
+    public String getP50() {
+        return p50;
+    }
+
+    public void setP50(String p50) {
+        this.p50 = p50;
+    }
 
+    public String getP95() {
+        return p95;
+    }
+
+    public void setP95(String p95) {
+        this.p95 = p95;
+    }
+
+    public String getP99() {
+        return p99;
+    }
+
+    public void setP99(String p99) {
+        this.p99 = p99;
+    }
+}
@@ -0,0 +1,57 @@
+package com.bank.models;
+
+import java.util.List;
+
+/**
+ * Statistics of {@code [from, to)} step by step, the bounds aligned on the step.
+ */
+public class StatisticsHistory {
+    private String from;
+    private String to;
+    private String step;
+    private List<HistoryPoint> points;
+
+    public StatisticsHistory()
+    {
+
+    }
+
+    public StatisticsHistory(String from, String to, String step, List<HistoryPoint> points) {
+        this.from = from;
+        this.to = to;
+        this.step = step;
+        this.points = points;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public String getStep() {
+        return step;
+    }
+
+    public void setStep(String step) {
+        this.step = step;
+    }
+
+    public List<HistoryPoint> getPoints() {
+        return points;
+    }
+
+    public void setPoints(List<HistoryPoint> points) {
+        this.points = points;
+    }
+}
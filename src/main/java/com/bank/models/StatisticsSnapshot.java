@@ -0,0 +1,61 @@
+package com.bank.models;
+
+/**
+ * Immutable statistics published for one version of the window, with their JSON encoding
+ * computed once so readers can send the bytes as they are. The percentiles are only part
+ * of the second encoding, so the default response keeps its fields.
+ */
+public class StatisticsSnapshot {
+    private final long version;
+    private final long createdAt;
+    private final Statistics statistics;
+    private final byte[] json;
+    private final String etag;
+    private final byte[] percentilesJson;
+    private final String percentilesEtag;
+
+    public StatisticsSnapshot(long version, long createdAt, Statistics statistics, byte[] json, String etag,
+                              byte[] percentilesJson, String percentilesEtag) {
+        this.version = version;
+        this.createdAt = createdAt;
+        this.statistics = statistics;
+        this.json = json;
+        this.etag = etag;
+        this.percentilesJson = percentilesJson;
+        this.percentilesEtag = percentilesEtag;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Encoded statistics, shared between readers and must not be modified.
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Encoded statistics including the percentiles, shared between readers and must not be modified.
+     */
+    public byte[] getPercentilesJson() {
+        return percentilesJson;
+    }
+
+    public String getPercentilesEtag() {
+        return percentilesEtag;
+    }
+}
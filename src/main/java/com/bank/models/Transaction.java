@@ -1,38 +1,130 @@
 package com.bank.models;
 
-import javax.validation.constraints.*;
+import com.bank.utils.FixedPointStatistics;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import javax.validation.constraints.AssertTrue;
 import java.math.BigDecimal;
 import java.util.Date;
 
+/**
+ * Held as primitives when read from JSON, see {@link TransactionDeserializer}: the
+ * timestamp in epoch millis and, when it fits, the amount scaled by
+ * {@link FixedPointStatistics#SCALE}, turned into a {@link BigDecimal} on first use.
+ * Validation only looks at that state, so it allocates neither the amount nor a date.
+ */
+@JsonDeserialize(using = TransactionDeserializer.class)
 public class Transaction {
 
-    @NotNull
     private BigDecimal amount;
 
-    @NotNull
-    private Date timestamp;
+    // Valid when scaled is true, amount is then built from it on demand
+    private long scaledAmount;
+    private boolean scaled;
+
+    private long timestamp;
+    private boolean timestamped;
+
+    // Optional account or merchant the transaction is also counted for
+    private String key;
 
     public BigDecimal getAmount() {
+        if (amount == null && scaled) {
+            amount = BigDecimal.valueOf(scaledAmount, FixedPointStatistics.SCALE);
+        }
         return amount;
     }
 
     public void setAmount(BigDecimal amount) {
         this.amount = amount;
+        this.scaled = false;
+    }
+
+    /**
+     * @param scaledAmount amount scaled by {@link FixedPointStatistics#SCALE}
+     */
+    void setScaledAmount(long scaledAmount) {
+        this.amount = null;
+        this.scaledAmount = scaledAmount;
+        this.scaled = true;
+    }
+
+    /**
+     * @return the amount scaled by {@link FixedPointStatistics#SCALE}, only valid when
+     * {@link #hasScaledAmount()}
+     */
+    @JsonIgnore
+    public long getScaledAmount() {
+        return scaledAmount;
     }
 
+    /**
+     * @return true when the amount is held scaled, so it can be counted without a {@link BigDecimal}
+     */
+    public boolean hasScaledAmount() {
+        return scaled;
+    }
+
+    public boolean hasAmount() {
+        return scaled || amount != null;
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "amount must not be null")
+    public boolean isAmountPresent() {
+        return hasAmount();
+    }
+
+    /**
+     * A copy of the timestamp, prefer {@link #getTimestampMillis()}.
+     */
     public Date getTimestamp() {
-        return timestamp;
+        return timestamped ? new Date(timestamp) : null;
     }
 
     public void setTimestamp(Date timestamp) {
+        this.timestamped = timestamp != null;
+        this.timestamp = timestamped ? timestamp.getTime() : 0l;
+    }
+
+    /**
+     * @return the timestamp in epoch millis, only valid when {@link #hasTimestamp()}
+     */
+    @JsonIgnore
+    public long getTimestampMillis() {
+        return timestamp;
+    }
+
+    public void setTimestampMillis(long timestamp) {
         this.timestamp = timestamp;
+        this.timestamped = true;
+    }
+
+    public boolean hasTimestamp() {
+        return timestamped;
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "timestamp must not be null")
+    public boolean isTimestampPresent() {
+        return timestamped;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
     }
 
     @Override
     public String toString() {
         return "Transaction{" +
-                "amount=" + amount +
-                ", timestamp=" + timestamp +
+                "amount=" + getAmount() +
+                ", timestamp=" + getTimestamp() +
+                ", key=" + key +
                 '}';
     }
 }
@@ -0,0 +1,64 @@
+package com.bank.models;
+
+import java.util.Arrays;
+
+/**
+ * Transactions held as primitives, as decoded from the binary encoding of
+ * {@link com.bank.utils.BinaryTransactions}: timestamps in epoch millis and amounts
+ * scaled by {@link com.bank.utils.FixedPointStatistics#SCALE}.
+ */
+public class TransactionBatch {
+
+    private long[] timestamps;
+    private long[] amounts;
+    private int size = 0;
+
+    public TransactionBatch() {
+        this(16);
+    }
+
+    public TransactionBatch(int capacity) {
+        timestamps = new long[Math.max(capacity, 1)];
+        amounts = new long[timestamps.length];
+    }
+
+    /**
+     * @param scaledAmount amount scaled by {@link com.bank.utils.FixedPointStatistics#SCALE}
+     */
+    public TransactionBatch add(long timestamp, long scaledAmount) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+        }
+        timestamps[size] = timestamp;
+        amounts[size] = scaledAmount;
+        size++;
+        return this;
+    }
+
+    /**
+     * Empties the batch, keeping its capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public long getAmount(int index) {
+        return amounts[index];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionBatch{" +
+                "size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,172 @@
+package com.bank.models;
+
+import com.bank.utils.FixedPointStatistics;
+import com.bank.utils.IsoTimestamps;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Reads a {@link Transaction} from the tokens of the parser, without going through the
+ * generic bean, {@link BigDecimal} and {@link Date} deserializers.
+ *
+ * Amounts with at most {@link FixedPointStatistics#SCALE} decimals are parsed into a
+ * scaled long, ISO-8601 timestamps by {@link IsoTimestamps}, both straight from the
+ * characters of the parser. Any other text goes through the same parsing as before, so
+ * the accepted values and the errors are unchanged: a malformed amount or timestamp
+ * raises an {@code InvalidFormatException}, a value of the wrong type a
+ * {@code MismatchedInputException}.
+ */
+public class TransactionDeserializer extends StdDeserializer<Transaction> {
+
+    private static final long SCALE_FACTOR = BigDecimal.ONE.movePointRight(FixedPointStatistics.SCALE).longValueExact();
+    // Larger amounts may overflow once scaled, they are left to BigDecimal
+    private static final long MAX_UNITS = Long.MAX_VALUE / SCALE_FACTOR - 1;
+
+    public TransactionDeserializer() {
+        super(Transaction.class);
+    }
+
+    @Override
+    public Transaction deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = p.nextToken();
+        } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            return (Transaction) ctxt.handleUnexpectedToken(Transaction.class, p);
+        }
+        Transaction transaction = new Transaction();
+        for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if ("amount".equals(name)) {
+                readAmount(p, ctxt, transaction);
+            } else if ("timestamp".equals(name)) {
+                readTimestamp(p, ctxt, transaction);
+            } else if ("key".equals(name)) {
+                transaction.setKey(p.getCurrentToken() == JsonToken.VALUE_NULL ? null : _parseString(p, ctxt));
+            } else {
+                handleUnknownProperty(p, ctxt, transaction, name);
+            }
+        }
+        return transaction;
+    }
+
+    private static void readAmount(JsonParser p, DeserializationContext ctxt, Transaction transaction) throws IOException {
+        switch (p.getCurrentToken()) {
+            case VALUE_STRING:
+                char[] chars = p.getTextCharacters();
+                int offset = p.getTextOffset();
+                int end = offset + p.getTextLength();
+                while (offset < end && chars[offset] <= ' ') {
+                    offset++;
+                }
+                while (end > offset && chars[end - 1] <= ' ') {
+                    end--;
+                }
+                if (offset == end) {
+                    transaction.setAmount(null);
+                    return;
+                }
+                long scaled = parseScaled(chars, offset, end);
+                if (scaled != Long.MIN_VALUE) {
+                    transaction.setScaledAmount(scaled);
+                    return;
+                }
+                try {
+                    transaction.setAmount(new BigDecimal(chars, offset, end - offset));
+                } catch (NumberFormatException ex) {
+                    throw ctxt.weirdStringException(p.getText().trim(), BigDecimal.class, "not a valid representation");
+                }
+                return;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                BigDecimal amount = p.getDecimalValue();
+                if (FixedPointStatistics.isScalable(amount)) {
+                    transaction.setScaledAmount(FixedPointStatistics.toScaled(amount));
+                } else {
+                    transaction.setAmount(amount);
+                }
+                return;
+            case VALUE_NULL:
+                transaction.setAmount(null);
+                return;
+            default:
+                ctxt.handleUnexpectedToken(BigDecimal.class, p);
+        }
+    }
+
+    private static void readTimestamp(JsonParser p, DeserializationContext ctxt, Transaction transaction) throws IOException {
+        switch (p.getCurrentToken()) {
+            case VALUE_STRING:
+                long timestamp = IsoTimestamps.parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+                if (timestamp != IsoTimestamps.INVALID) {
+                    transaction.setTimestampMillis(timestamp);
+                    return;
+                }
+                String text = p.getText().trim();
+                if (text.isEmpty()) {
+                    transaction.setTimestamp(null);
+                    return;
+                }
+                try {
+                    transaction.setTimestamp(ctxt.parseDate(text));
+                } catch (IllegalArgumentException ex) {
+                    throw ctxt.weirdStringException(text, Date.class, "not a valid representation (error: " + ex.getMessage() + ")");
+                }
+                return;
+            case VALUE_NUMBER_INT:
+                transaction.setTimestampMillis(p.getLongValue());
+                return;
+            case VALUE_NULL:
+                transaction.setTimestamp(null);
+                return;
+            default:
+                ctxt.handleUnexpectedToken(Date.class, p);
+        }
+    }
+
+    /**
+     * @return the amount scaled by {@link FixedPointStatistics#SCALE}, {@code Long.MIN_VALUE}
+     * when it is not a plain decimal number with at most that many decimals
+     */
+    private static long parseScaled(char[] chars, int offset, int end) {
+        int position = offset;
+        boolean negative = false;
+        if (chars[position] == '-' || chars[position] == '+') {
+            negative = chars[position] == '-';
+            position++;
+        }
+        long units = 0l;
+        int digits = 0;
+        for (; position < end && chars[position] >= '0' && chars[position] <= '9'; position++, digits++) {
+            if (units > MAX_UNITS / 10) {
+                return Long.MIN_VALUE;
+            }
+            units = units * 10 + (chars[position] - '0');
+        }
+        long cents = 0l;
+        int decimals = 0;
+        if (position < end && chars[position] == '.') {
+            for (position++; position < end && chars[position] >= '0' && chars[position] <= '9'; position++, decimals++) {
+                if (decimals == FixedPointStatistics.SCALE) {
+                    return Long.MIN_VALUE;
+                }
+                cents = cents * 10 + (chars[position] - '0');
+            }
+        }
+        if (position != end || digits + decimals == 0 || units > MAX_UNITS) {
+            return Long.MIN_VALUE;
+        }
+        for (; decimals < FixedPointStatistics.SCALE; decimals++) {
+            cents *= 10;
+        }
+        long scaled = units * SCALE_FACTOR + cents;
+        return negative ? -scaled : scaled;
+    }
+}
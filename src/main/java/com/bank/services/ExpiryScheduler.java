@@ -0,0 +1,93 @@
+package com.bank.services;
+
+import com.bank.utils.TimeSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically evicts the slices that left the windows, see
+ * {@link StatisticsService#cleanExpiredTransactions()}, on a single daemon thread started
+ * and stopped with the application context.
+ *
+ * Reads and writes already expire the window lazily, so the sweep only releases the
+ * memory of windows nobody reads. Each run visits only the slices that crossed the
+ * boundary and runs at multiples of the interval, which are slice boundaries.
+ */
+@Component
+public class ExpiryScheduler implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiryScheduler.class);
+
+    private final StatisticsService statisticsService;
+    private final TimeSource timeSource;
+    private final long interval;
+    private ScheduledExecutorService executor;
+
+    public ExpiryScheduler(StatisticsService statisticsService, TimeSource timeSource,
+                           @Value("${statistics.expiry-interval:1000}") long interval) {
+        this.statisticsService = statisticsService;
+        this.timeSource = timeSource;
+        this.interval = interval;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (executor != null || interval <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long now = timeSource.millis();
+        executor.scheduleAtFixedRate(this::expire, interval - Math.floorMod(now, interval), interval, TimeUnit.MILLISECONDS);
+        logger.info("Expiring statistics every " + interval + "ms");
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void expire() {
+        try {
+            statisticsService.cleanExpiredTransactions();
+        } catch (RuntimeException ex) {
+            // an exception would cancel the periodic task
+            logger.error("Exception expiring statistics: " + ex.getMessage(), ex);
+        }
+    }
+}
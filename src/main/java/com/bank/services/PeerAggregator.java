@@ -0,0 +1,114 @@
+package com.bank.services;
+
+import com.bank.exceptions.PeerUnavailableException;
+import com.bank.models.Statistics;
+import com.bank.utils.WindowDurations;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cluster wide statistics of instances behind a load balancer, each one holding only the
+ * transactions it received. The partials of the peers listed in {@code statistics.peers},
+ * fetched in parallel from their {@code GET /statistics/partial}, are merged with the
+ * local one slice by slice, see {@link StatisticsService#mergePartials}.
+ *
+ * Peers are expected to run the same windows with synchronized clocks, a slice outside
+ * of the local window is dropped. A peer not answering within {@code statistics.peer-timeout}
+ * fails the request, the statistics of the others alone would be silently wrong.
+ */
+@Service
+public class PeerAggregator implements DisposableBean {
+
+    private static final String LOCAL = "local";
+
+    private final StatisticsService statisticsService;
+    private final RestTemplate restTemplate;
+    private final List<String> peers = new ArrayList<>();
+    private final ExecutorService executor;
+
+    /**
+     * @param peers base URLs of the other instances, e.g. {@code http://host-2:8080}, each counted once
+     * @param timeout ms to connect to and read from a peer
+     */
+    public PeerAggregator(StatisticsService statisticsService,
+                          @Value("${statistics.peers:}") String[] peers,
+                          @Value("${statistics.peer-timeout:1000}") int timeout) {
+        this.statisticsService = statisticsService;
+        this.restTemplate = restTemplate(timeout);
+        for (String peer : peers) {
+            String trimmed = peer.trim();
+            String url = trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+            if (!url.isEmpty() && !this.peers.contains(url)) {
+                this.peers.add(url);
+            }
+        }
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-peers");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Statistics of the window of the given length over this instance and its peers.
+     *
+     * @throws PeerUnavailableException when a peer fails to answer or answers a malformed partial
+     */
+    public Statistics getStatistics(long windowTime, boolean percentiles) {
+        List<CompletableFuture<byte[]>> requests = new ArrayList<>(peers.size());
+        for (String peer : peers) {
+            requests.add(CompletableFuture.supplyAsync(() -> fetch(peer, windowTime), executor));
+        }
+        Map<String, byte[]> partials = new LinkedHashMap<>();
+        partials.put(LOCAL, statisticsService.getPartial(windowTime));
+        for (int i = 0; i < peers.size(); i++) {
+            try {
+                partials.put(peers.get(i), requests.get(i).join());
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof PeerUnavailableException) {
+                    throw (PeerUnavailableException) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+        return statisticsService.mergePartials(windowTime, partials, percentiles);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private byte[] fetch(String peer, long windowTime) {
+        try {
+            byte[] partial = restTemplate.getForObject(peer + "/statistics/partial?window={window}", byte[].class,
+                    WindowDurations.format(windowTime));
+            if (partial == null) {
+                throw new PeerUnavailableException("Empty partial from peer " + peer);
+            }
+            return partial;
+        } catch (RestClientException ex) {
+            throw new PeerUnavailableException("Peer " + peer + " unavailable: " + ex.getMessage());
+        }
+    }
+
+    private static RestTemplate restTemplate(int timeout) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        return new RestTemplate(requestFactory);
+    }
+}
@@ -2,124 +2,626 @@ package com.bank.services;
 
 import com.bank.exceptions.ExpiredTransactionException;
 import com.bank.exceptions.FutureTransactionException;
+import com.bank.exceptions.InvalidHistoryException;
+import com.bank.exceptions.InvalidQuantileException;
+import com.bank.exceptions.PeerUnavailableException;
+import com.bank.exceptions.QuantilesDisabledException;
 import com.bank.exceptions.StatisticsException;
+import com.bank.exceptions.UnknownWindowException;
+import com.bank.models.Admission;
+import com.bank.models.BatchResult;
+import com.bank.models.HistoryPoint;
+import com.bank.models.OrderStatistic;
 import com.bank.models.Statistics;
+import com.bank.models.StatisticsHistory;
+import com.bank.models.StatisticsSnapshot;
 import com.bank.models.Transaction;
-import com.bank.utils.BigDecimalStatistics;
+import com.bank.models.TransactionBatch;
 import com.bank.utils.Constants;
+import com.bank.utils.FixedPointStatistics;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.AmountIndex;
+import com.bank.utils.BinaryTransactions;
+import com.bank.utils.LockedWindow;
+import com.bank.utils.MultiResolutionWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.QuantileSketch;
+import com.bank.utils.RollupHistory;
+import com.bank.utils.StatisticsWindow;
+import com.bank.utils.TimeSource;
+import com.bank.utils.WindowCheckpoints;
+import com.bank.utils.WindowDurations;
+import com.bank.utils.WindowSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Service
 public class StatisticsService {
 
-    private static final List<Transaction> transactions = new ArrayList<>();
     private static final Integer TRANSACTIONS_SCALE = 2;
-    private Statistics statistics;
-    private ReadWriteLock rwLock = new ReentrantReadWriteLock();
-    private Lock readLock = rwLock.readLock();
-    private Lock writeLock = rwLock.writeLock();
+    // Bounds the size of a history response, a day at minute resolution fits
+    static final int MAX_HISTORY_POINTS = 10000;
+    private static final long DEFAULT_HISTORY_RANGE = 3600000l;
+    private static final long DEFAULT_HISTORY_STEP = 60000l;
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX").withZone(ZoneId.of("UTC"));
+    private final MultiResolutionWindow window;
+    private final OrderStatisticsWindow orderWindow;
+    private final KeyedWindows keyedWindows;
+    private final RollupHistory history;
+    private final TransactionJournal journal;
+    private final ObjectMapper objectMapper;
+    private final TimeSource timeSource;
+    private final long maxStaleness;
+    // Versions restart with the application, the instance id keeps the ETags apart
+    private final String instanceId = Long.toHexString(System.currentTimeMillis());
+    // Last snapshot published for each window, in the order of the window times
+    private final AtomicReferenceArray<StatisticsSnapshot> snapshots;
+    private final int primaryIndex;
+
+    private final Timer ingestTimer;
+    private final Counter acceptedCounter;
+    private final Counter expiredCounter;
+    private final Counter futureCounter;
+    private final Counter invalidCounter;
 
     private static final Logger logger = LoggerFactory.getLogger(StatisticsService.class);
 
-    public StatisticsService() {
-        initiateCleanupTask();
+    public StatisticsService(MultiResolutionWindow window, OrderStatisticsWindow orderWindow, KeyedWindows keyedWindows,
+                             RollupHistory history, TransactionJournal journal, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             TimeSource timeSource, @Value("${statistics.max-staleness:0}") long maxStaleness) {
+        this.window = window;
+        this.orderWindow = orderWindow;
+        this.keyedWindows = keyedWindows;
+        this.history = history;
+        this.journal = journal;
+        this.objectMapper = objectMapper;
+        this.timeSource = timeSource;
+        this.maxStaleness = maxStaleness;
+        this.snapshots = new AtomicReferenceArray<>(window.getWindowTimes().length);
+        this.primaryIndex = window.indexOf(window.getPrimaryTime());
+
+        ingestTimer = Timer.builder("statistics.ingest")
+                .description("Time to validate and add a transaction or a batch to the window")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        acceptedCounter = transactionCounter(meterRegistry, "accepted");
+        expiredCounter = transactionCounter(meterRegistry, "expired");
+        futureCounter = transactionCounter(meterRegistry, "future");
+        invalidCounter = transactionCounter(meterRegistry, "invalid");
+        Gauge.builder("statistics.window.transactions", this, service -> service.window.snapshot(service.timeSource.millis()).getStatistics().getCount())
+                .description("Transactions currently in the window")
+                .register(meterRegistry);
+        Gauge.builder("statistics.keys", keyedWindows, KeyedWindows::getKeyCount)
+                .description("Keys holding transactions in their window")
+                .register(meterRegistry);
+        Gauge.builder("statistics.snapshot.age", this, StatisticsService::getSnapshotAge)
+                .description("Age of the last published statistics snapshot")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
     }
 
     public Statistics getStatistics() {
-        readLock.lock();
-        try {
-            if (statistics == null) {
-                calculateStats();
-            }
-            return statistics;
-        } finally {
-            readLock.unlock();
+        return getSnapshot().getStatistics();
+    }
+
+    /**
+     * Statistics of the current version of the 60s window with their JSON encoding.
+     * With a staleness bound configured, a snapshot younger than the bound is returned
+     * without looking at the window.
+     */
+    public StatisticsSnapshot getSnapshot() {
+        return getSnapshot(window.getPrimaryTime());
+    }
+
+    /**
+     * Same as {@link #getSnapshot()} for the window of the given length.
+     *
+     * @throws UnknownWindowException when no window of that length is configured
+     */
+    public StatisticsSnapshot getSnapshot(long windowTime) {
+        if (!window.hasWindow(windowTime)) {
+            throw new UnknownWindowException("Unknown window " + WindowDurations.format(windowTime));
         }
+        int index = window.indexOf(windowTime);
+        long now = timeSource.millis();
+        StatisticsSnapshot current = snapshots.get(index);
+        if (current != null && maxStaleness > 0 && now - current.getCreatedAt() < maxStaleness) {
+            return current;
+        }
+
+        WindowSnapshot windowSnapshot = window.snapshot(windowTime, now);
+        if (current == null || current.getVersion() != windowSnapshot.getVersion()) {
+            current = publish(index, windowTime, windowSnapshot, now);
+        }
+        return current;
     }
 
-    public Transaction createTransaction(Transaction transaction) {
+    /**
+     * Statistics of the 60s window of the transactions sent with the given key, zero for
+     * a key without transactions. Computed on every call, without percentiles.
+     */
+    public Statistics getStatistics(String key) {
+        return calculateStats(keyedWindows.snapshot(key, timeSource.millis()));
+    }
 
-        if (System.currentTimeMillis() < transaction.getTimestamp().getTime()) {
-            logger.warn("Transaction with future date: " + transaction.toString());
-            throw new FutureTransactionException("Future dated transaction");
+    /**
+     * Exact amount of rank {@code floor(quantile * (count - 1))} in the 60s window,
+     * amounts being rounded to cents.
+     *
+     * @throws InvalidQuantileException when the quantile is not between 0 and 1
+     * @throws QuantilesDisabledException unless {@code statistics.exact-quantiles} is set
+     */
+    public OrderStatistic getQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new InvalidQuantileException("Quantile must be between 0 and 1: " + quantile);
         }
+        checkQuantilesEnabled();
+        return orderWindow.query(timeSource.millis(), index -> {
+            long count = index.getCount();
+            if (count == 0) {
+                return new OrderStatistic(FixedPointStatistics.format(0l), 0l, 0l);
+            }
+            long rank = (long) (quantile * (count - 1));
+            return new OrderStatistic(index.select(rank).toString(), rank, count);
+        });
+    }
 
-        if ((System.currentTimeMillis() - transaction.getTimestamp().getTime()) > Constants.WINDOW_TIME) {
-            logger.warn("Transaction with expired date: " + transaction.toString());
-            throw new ExpiredTransactionException("Expired transaction");
+    /**
+     * Number of amounts of the 60s window strictly below the given one, amounts being
+     * rounded to cents.
+     *
+     * @throws QuantilesDisabledException unless {@code statistics.exact-quantiles} is set
+     */
+    public OrderStatistic getRank(BigDecimal amount) {
+        checkQuantilesEnabled();
+        BigDecimal quantized = AmountIndex.quantize(amount);
+        return orderWindow.query(timeSource.millis(),
+                index -> new OrderStatistic(quantized.toString(), index.rank(quantized), index.getCount()));
+    }
+
+    /**
+     * Mergeable state of the window of the given length, the statistics and quantile
+     * sketch of each non empty slice with its epoch, encoded by {@link WindowCheckpoints#capture}.
+     *
+     * @throws UnknownWindowException when no window of that length is configured
+     */
+    public byte[] getPartial(long windowTime) {
+        if (!window.hasWindow(windowTime)) {
+            throw new UnknownWindowException("Unknown window " + WindowDurations.format(windowTime));
         }
+        return WindowCheckpoints.capture(window.getWindow(windowTime));
+    }
 
-        writeLock.lock();
+    /**
+     * Statistics of several partials of the window of the given length, e.g. from other
+     * instances, slices of the same time being combined. Slices outside of the window at
+     * the current time or sliced differently than the local window are ignored.
+     *
+     * @param partials partials by the peer they come from
+     * @throws PeerUnavailableException when a partial is malformed
+     */
+    public Statistics mergePartials(long windowTime, Map<String, byte[]> partials, boolean percentiles) {
+        long sliceTime = MultiResolutionWindow.sliceTime(windowTime, Constants.SLICE_TIME, Constants.MAX_SLICES);
+        StatisticsWindow merged = new LockedWindow(windowTime, sliceTime);
+        long now = timeSource.millis();
+        for (Map.Entry<String, byte[]> partial : partials.entrySet()) {
+            try {
+                WindowCheckpoints.merge(partial.getValue(), merged, now);
+            } catch (IllegalArgumentException ex) {
+                throw new PeerUnavailableException("Malformed partial from peer " + partial.getKey() + ": " + ex.getMessage());
+            }
+        }
+        WindowSnapshot snapshot = merged.snapshot(now);
+        Statistics statistics = calculateStats(snapshot.getStatistics());
+        return percentiles ? withPercentiles(statistics, snapshot.getStatistics(), snapshot.getQuantiles()) : statistics;
+    }
+
+    /**
+     * Statistics of the transactions timestamped in {@code [from, to)} step by step, merged
+     * from the roll-ups of the history, see {@link RollupHistory}. The bounds are aligned
+     * on the step, the range defaults to the last hour and the step to a minute.
+     *
+     * @param from epoch millis, null for an hour before {@code to}
+     * @param to epoch millis, null for now
+     * @param step millis, null for a minute
+     * @throws InvalidHistoryException when the range is empty, the step not a multiple
+     * of the roll-ups or the steps too many
+     */
+    public StatisticsHistory getHistory(Long from, Long to, Long step) {
+        long now = timeSource.millis();
+        long stepTime = step == null ? DEFAULT_HISTORY_STEP : step;
+        long end = to == null ? now : to;
+        long start = from == null ? end - DEFAULT_HISTORY_RANGE : from;
+        if (stepTime <= 0 || start >= end) {
+            throw new InvalidHistoryException("Expected from before to and a positive step");
+        }
+        start = Math.floorDiv(start, stepTime) * stepTime;
+        long steps = (end - start - 1) / stepTime + 1;
+        if (steps <= 0 || steps > MAX_HISTORY_POINTS) {
+            throw new InvalidHistoryException("Too many steps, at most " + MAX_HISTORY_POINTS + ": " + steps);
+        }
 
+        FixedPointStatistics[] rollups;
         try {
-            logger.info("Adding transaction: " + transaction.toString());
-            transactions.add(transaction);
-            calculateStats();
-            return transaction;
-        } finally {
-            writeLock.unlock();
+            rollups = history.query(start, stepTime, (int) steps, now);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidHistoryException(ex.getMessage());
         }
+        List<HistoryPoint> points = new ArrayList<>(rollups.length);
+        for (int i = 0; i < rollups.length; i++) {
+            points.add(new HistoryPoint(formatTime(start + i * stepTime), calculateStats(rollups[i])));
+        }
+        return new StatisticsHistory(formatTime(start), formatTime(start + steps * stepTime), WindowDurations.format(stepTime), points);
     }
 
-    public void cleanAll() {
-        writeLock.lock();
-        try {
-            logger.info("Cleaning all transaction");
-            transactions.clear();
-            calculateStats();
-        } finally {
-            writeLock.unlock();
+    public long[] getWindowTimes() {
+        return window.getWindowTimes();
+    }
+
+    /**
+     * Adds the transaction, rejections being thrown as {@link FutureTransactionException}
+     * and {@link ExpiredTransactionException}. Prefer {@link #admit}, which returns them.
+     */
+    public Transaction createTransaction(Transaction transaction) {
+        switch (admit(transaction)) {
+            case FUTURE:
+                throw new FutureTransactionException("Future dated transaction");
+            case EXPIRED:
+                throw new ExpiredTransactionException("Expired transaction");
+            default:
+                return transaction;
         }
     }
 
-    public void cleanExpiredTransactions() {
-        writeLock.lock();
+    /**
+     * Adds the transaction unless it is future dated or expired. Rejections are as
+     * common as acceptances when clients replay old transactions, they are returned
+     * rather than thrown so they cost no more than an acceptance.
+     */
+    public Admission admit(Transaction transaction) {
+
+        long start = System.nanoTime();
         try {
-            transactions.removeIf(
-                    t -> (System.currentTimeMillis() - t.getTimestamp().getTime()) > Constants.WINDOW_TIME);
-            calculateStats();
+            long now = timeSource.millis();
+            long timestamp = transaction.getTimestampMillis();
+
+            if (now < timestamp) {
+                logger.debug("Transaction with future date: {}", transaction);
+                futureCounter.increment();
+                return Admission.FUTURE;
+            }
+
+            if ((now - timestamp) > Constants.WINDOW_TIME) {
+                logger.debug("Transaction with expired date: {}", transaction);
+                expiredCounter.increment();
+                return Admission.EXPIRED;
+            }
+
+            // Amounts held scaled are counted as such, only the exact quantiles take a BigDecimal
+            if (transaction.hasScaledAmount()) {
+                long scaledAmount = transaction.getScaledAmount();
+                // Logged and added in one step, see TransactionJournal
+                if (!journal.add(timestamp, scaledAmount, transaction.getKey(), now)) {
+                    logger.debug("Transaction with expired date: {}", transaction);
+                    expiredCounter.increment();
+                    return Admission.EXPIRED;
+                }
+                if (orderWindow.isEnabled()) {
+                    orderWindow.add(timestamp, transaction.getAmount(), now);
+                }
+                history.add(timestamp, scaledAmount);
+                if (transaction.getKey() != null) {
+                    keyedWindows.add(transaction.getKey(), timestamp, scaledAmount, now);
+                }
+            } else {
+                if (!journal.add(timestamp, transaction.getAmount(), transaction.getKey(), now)) {
+                    logger.debug("Transaction with expired date: {}", transaction);
+                    expiredCounter.increment();
+                    return Admission.EXPIRED;
+                }
+                orderWindow.add(timestamp, transaction.getAmount(), now);
+                history.add(timestamp, transaction.getAmount());
+                if (transaction.getKey() != null) {
+                    keyedWindows.add(transaction.getKey(), timestamp, transaction.getAmount(), now);
+                }
+            }
+
+            logger.debug("Added transaction: {}", transaction);
+            acceptedCounter.increment();
+            return Admission.ACCEPTED;
         } finally {
-            writeLock.unlock();
+            ingestTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
-    private void calculateStats() {
-        List<BigDecimal> allAmounts = transactions.stream().map(Transaction::getAmount).collect(Collectors.toList());
-        BigDecimalStatistics bigDecimalStatistics = allAmounts.stream().collect(BigDecimalStatistics.statistics());
-        statistics = new Statistics(bigDecimalStatistics.getSum().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
-                bigDecimalStatistics.getAverage(MathContext.DECIMAL128).setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
-                bigDecimalStatistics.getMax() == null ? BigDecimal.ZERO.setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString() : bigDecimalStatistics.getMax().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
-                bigDecimalStatistics.getMin() == null ? BigDecimal.ZERO.setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString() : bigDecimalStatistics.getMin().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
-                bigDecimalStatistics.getCount());
+    /**
+     * Adds the valid transactions of the batch in a single window update. Transactions
+     * are checked against the same future and expired rules as {@link #createTransaction},
+     * the ones missing an amount or a timestamp are counted as invalid.
+     */
+    public BatchResult createTransactions(List<Transaction> transactions) {
+
+        long start = System.nanoTime();
+        long now = timeSource.millis();
+        int size = transactions.size();
+        // Scaled amounts in one batch, the ones that can't be scaled in another
+        long[] scaledTimestamps = new long[size];
+        long[] scaledAmounts = new long[size];
+        String[] scaledKeys = new String[size];
+        int scaled = 0;
+        long[] timestamps = null;
+        BigDecimal[] amounts = null;
+        String[] keys = null;
+        int unscaled = 0;
+        long expired = 0l, future = 0l, invalid = 0l;
+
+        for (Transaction transaction : transactions) {
+            if (transaction == null || !transaction.hasAmount() || !transaction.hasTimestamp()) {
+                invalid++;
+                continue;
+            }
+            long timestamp = transaction.getTimestampMillis();
+            if (now < timestamp) {
+                future++;
+            } else if ((now - timestamp) > Constants.WINDOW_TIME) {
+                expired++;
+            } else if (transaction.hasScaledAmount()) {
+                scaledTimestamps[scaled] = timestamp;
+                scaledAmounts[scaled] = transaction.getScaledAmount();
+                scaledKeys[scaled] = transaction.getKey();
+                scaled++;
+            } else {
+                if (timestamps == null) {
+                    timestamps = new long[size];
+                    amounts = new BigDecimal[size];
+                    keys = new String[size];
+                }
+                timestamps[unscaled] = timestamp;
+                amounts[unscaled] = transaction.getAmount();
+                keys[unscaled] = transaction.getKey();
+                unscaled++;
+            }
+        }
+
+        int added = addBatch(scaledTimestamps, scaledAmounts, scaledKeys, scaled, now);
+        if (unscaled > 0) {
+            added += addBatch(timestamps, amounts, keys, unscaled, now);
+        }
+        return batchResult(added, scaled + unscaled, expired, future, invalid, start);
     }
 
+    /**
+     * Adds a batch decoded from the binary encoding, see {@link BinaryTransactions}, under
+     * the same rules as {@link #createTransactions(List)}. The amounts stay scaled longs
+     * all the way to the windows.
+     */
+    public BatchResult createTransactions(TransactionBatch batch) {
 
-    private void initiateCleanupTask() {
+        long start = System.nanoTime();
+        long now = timeSource.millis();
+        int size = batch.getSize();
+        long[] timestamps = new long[size];
+        long[] amounts = new long[size];
+        int valid = 0;
+        long expired = 0l, future = 0l;
 
-        Thread task = new Thread(() -> {
-            while (true) {
-                cleanExpiredTransactions();
-                try {
-                    Thread.sleep(Constants.CLEAN_UP_INTERVAL);
-                } catch (InterruptedException ex) {
-                    logger.error("Exception in task thread sleeping: " + Thread.currentThread());
-                    throw new StatisticsException("Exception in thread sleep" + ex.getMessage());
+        for (int i = 0; i < size; i++) {
+            long timestamp = batch.getTimestamp(i);
+            if (now < timestamp) {
+                future++;
+            } else if ((now - timestamp) > Constants.WINDOW_TIME) {
+                expired++;
+            } else {
+                timestamps[valid] = timestamp;
+                amounts[valid] = batch.getAmount(i);
+                valid++;
+            }
+        }
+
+        int added = addBatch(timestamps, amounts, new String[size], valid, now);
+        return batchResult(added, valid, expired, future, 0l, start);
+    }
+
+    /**
+     * Adds the first {@code valid} transactions, moving the ones added to the start of
+     * the arrays.
+     *
+     * @return number of transactions added
+     */
+    private int addBatch(long[] timestamps, long[] scaledAmounts, String[] keys, int valid, long now) {
+        boolean[] accepted = new boolean[valid];
+        int added = journal.addAll(timestamps, scaledAmounts, keys, valid, now, accepted);
+        if (added < valid) {
+            // Like admit(), the transactions the window rejected go no further
+            int j = 0;
+            for (int i = 0; i < valid; i++) {
+                if (accepted[i]) {
+                    timestamps[j] = timestamps[i];
+                    scaledAmounts[j] = scaledAmounts[i];
+                    keys[j] = keys[i];
+                    j++;
                 }
             }
-        });
+        }
+        if (added > 0) {
+            if (orderWindow.isEnabled()) {
+                BigDecimal[] amounts = new BigDecimal[added];
+                for (int i = 0; i < added; i++) {
+                    amounts[i] = BigDecimal.valueOf(scaledAmounts[i], FixedPointStatistics.SCALE);
+                }
+                orderWindow.addAll(timestamps, amounts, added, now);
+            }
+            history.addAll(timestamps, scaledAmounts, added);
+        }
+        for (int i = 0; i < added; i++) {
+            if (keys[i] != null) {
+                keyedWindows.add(keys[i], timestamps[i], scaledAmounts[i], now);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Same as {@link #addBatch(long[], long[], String[], int, long)} for amounts that
+     * can't be scaled.
+     */
+    private int addBatch(long[] timestamps, BigDecimal[] amounts, String[] keys, int valid, long now) {
+        boolean[] accepted = new boolean[valid];
+        int added = journal.addAll(timestamps, amounts, keys, valid, now, accepted);
+        if (added < valid) {
+            // Like admit(), the transactions the window rejected go no further
+            int j = 0;
+            for (int i = 0; i < valid; i++) {
+                if (accepted[i]) {
+                    timestamps[j] = timestamps[i];
+                    amounts[j] = amounts[i];
+                    keys[j] = keys[i];
+                    j++;
+                }
+            }
+        }
+        if (added > 0) {
+            orderWindow.addAll(timestamps, amounts, added, now);
+            history.addAll(timestamps, amounts, added);
+        }
+        for (int i = 0; i < added; i++) {
+            if (keys[i] != null) {
+                keyedWindows.add(keys[i], timestamps[i], amounts[i], now);
+            }
+        }
+        return added;
+    }
+
+    private BatchResult batchResult(int added, int valid, long expired, long future, long invalid, long start) {
+        BatchResult result = new BatchResult(added, expired + valid - added, future, invalid);
+        acceptedCounter.increment(result.getAccepted());
+        expiredCounter.increment(result.getExpired());
+        futureCounter.increment(result.getFuture());
+        invalidCounter.increment(result.getInvalid());
+        ingestTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        logger.debug("Added batch of {} transactions: {}", valid + expired + future + invalid, result);
+        return result;
+    }
 
-        task.start();
+    public void cleanAll() {
+        logger.info("Cleaning all transaction");
+        // Clears the statistics window as well
+        journal.clear();
+        orderWindow.clear();
+        keyedWindows.clear();
+        history.clear();
+    }
+
+    public void cleanExpiredTransactions() {
+        long now = timeSource.millis();
+        window.expire(now);
+        orderWindow.expire(now);
+        keyedWindows.expire(now);
+    }
+
+    private Statistics calculateStats(FixedPointStatistics windowStatistics) {
+        if (windowStatistics.hasExactAverage()) {
+            boolean empty = windowStatistics.getCount() == 0;
+            return new Statistics(FixedPointStatistics.format(windowStatistics.getScaledSum()),
+                    FixedPointStatistics.format(windowStatistics.getScaledAverage()),
+                    FixedPointStatistics.format(empty ? 0l : windowStatistics.getScaledMax()),
+                    FixedPointStatistics.format(empty ? 0l : windowStatistics.getScaledMin()),
+                    windowStatistics.getCount());
+        }
+        return new Statistics(windowStatistics.getSum().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                windowStatistics.getAverage(MathContext.DECIMAL128).setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                windowStatistics.getMax() == null ? BigDecimal.ZERO.setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString() : windowStatistics.getMax().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                windowStatistics.getMin() == null ? BigDecimal.ZERO.setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString() : windowStatistics.getMin().setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString(),
+                windowStatistics.getCount());
+    }
+
+    private static Statistics withPercentiles(Statistics statistics, FixedPointStatistics windowStatistics, QuantileSketch quantiles) {
+        return new Statistics(statistics.getSum(), statistics.getAvg(), statistics.getMax(), statistics.getMin(), statistics.getCount(),
+                formatQuantile(windowStatistics, quantiles, 0.5),
+                formatQuantile(windowStatistics, quantiles, 0.95),
+                formatQuantile(windowStatistics, quantiles, 0.99));
+    }
+
+    /**
+     * Estimate of the quantile, within {@link QuantileSketch#RELATIVE_ACCURACY} of the
+     * exact amount. Clamped to the min and max so it never reports an amount outside of
+     * the window.
+     */
+    private static String formatQuantile(FixedPointStatistics windowStatistics, QuantileSketch quantiles, double quantile) {
+        if (windowStatistics.getCount() == 0 || quantiles.getCount() == 0) {
+            return BigDecimal.ZERO.setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString();
+        }
+        double estimate = quantiles.getQuantile(quantile);
+        BigDecimal value;
+        if (estimate <= windowStatistics.getMin().doubleValue()) {
+            value = windowStatistics.getMin();
+        } else if (estimate >= windowStatistics.getMax().doubleValue()) {
+            value = windowStatistics.getMax();
+        } else {
+            value = BigDecimal.valueOf(estimate);
+        }
+        return value.setScale(TRANSACTIONS_SCALE, BigDecimal.ROUND_HALF_UP).toString();
+    }
+
+    private static String formatTime(long millis) {
+        return TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(millis));
+    }
+
+    private double getSnapshotAge() {
+        StatisticsSnapshot current = snapshots.get(primaryIndex);
+        return current == null ? Double.NaN : timeSource.millis() - current.getCreatedAt();
+    }
+
+    private static Counter transactionCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("statistics.transactions")
+                .description("Transactions received, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private void checkQuantilesEnabled() {
+        if (!orderWindow.isEnabled()) {
+            throw new QuantilesDisabledException("Exact quantiles are disabled, see statistics.exact-quantiles");
+        }
+    }
+
+    private StatisticsSnapshot publish(int index, long windowTime, WindowSnapshot windowSnapshot, long now) {
+        Statistics withoutPercentiles = calculateStats(windowSnapshot.getStatistics());
+        Statistics statistics = withPercentiles(withoutPercentiles, windowSnapshot.getStatistics(), windowSnapshot.getQuantiles());
+        byte[] json;
+        byte[] percentilesJson;
+        try {
+            json = objectMapper.writeValueAsBytes(withoutPercentiles);
+            percentilesJson = objectMapper.writeValueAsBytes(statistics);
+        } catch (JsonProcessingException ex) {
+            logger.error("Exception serializing statistics: " + ex.getMessage());
+            throw new StatisticsException("Exception serializing statistics" + ex.getMessage());
+        }
+        String tag = instanceId + "-" + WindowDurations.format(windowTime) + "-" + windowSnapshot.getVersion();
+        StatisticsSnapshot published = new StatisticsSnapshot(windowSnapshot.getVersion(), now, statistics,
+                json, "\"" + tag + "\"", percentilesJson, "\"" + tag + "-p\"");
+        snapshots.set(index, published);
+        return published;
     }
 
 }
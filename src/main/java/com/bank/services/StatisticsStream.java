@@ -0,0 +1,94 @@
+package com.bank.services;
+
+import com.bank.models.StatisticsSnapshot;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Server-Sent Events frames of the 60s statistics, shared by every subscriber of
+ * {@code GET /statistics/stream} whatever the runtime.
+ *
+ * A single ticker reads the published snapshot at most once per interval while someone
+ * is subscribed, so any number of writes between two ticks results in at most one
+ * event, and no event at all when the window did not change. Each event is encoded once
+ * and the same bytes are handed to all the subscribers. A subscriber slower than the
+ * ticks only keeps the latest frame it has not taken yet, older ones are dropped, so a
+ * stuck client holds a bounded number of frames. A comment frame is sent every
+ * heartbeat so that proxies keep quiet connections and gone clients are noticed.
+ */
+@Service
+public class StatisticsStream implements DisposableBean {
+
+    static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final StatisticsService statisticsService;
+    private final Scheduler scheduler = Schedulers.newSingle("statistics-stream", true);
+    private final Flux<byte[]> frames;
+    private final Flux<byte[]> percentilesFrames;
+    private final Flux<byte[]> heartbeats;
+
+    public StatisticsStream(StatisticsService statisticsService,
+                            @Value("${statistics.stream-interval:250}") long interval,
+                            @Value("${statistics.stream-heartbeat:15000}") long heartbeat) {
+        if (interval <= 0 || heartbeat <= 0) {
+            throw new IllegalArgumentException("Invalid stream interval " + interval + "ms or heartbeat " + heartbeat + "ms");
+        }
+        this.statisticsService = statisticsService;
+        this.frames = frames(interval, false);
+        this.percentilesFrames = frames(interval, true);
+        this.heartbeats = Flux.interval(Duration.ofMillis(heartbeat), scheduler)
+                .map(tick -> HEARTBEAT)
+                .share();
+    }
+
+    /**
+     * Frames of the statistics starting with the current ones, and of their changes
+     * afterwards. Never completes, the subscriber cancels when its client leaves.
+     *
+     * @param percentiles whether the events include the estimated p50, p95 and p99
+     */
+    public Flux<byte[]> subscribe(boolean percentiles) {
+        // the shared fluxes would otherwise queue the frames of a slow subscriber
+        return Flux.merge(1, (percentiles ? percentilesFrames : frames).onBackpressureLatest(),
+                heartbeats.onBackpressureLatest());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    /**
+     * Ticks while subscribed, keeping the last frame for the next subscribers.
+     */
+    private Flux<byte[]> frames(long interval, boolean percentiles) {
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(interval), scheduler)
+                // a slow read skips the ticks it overlaps rather than queuing them
+                .onBackpressureDrop()
+                .map(tick -> statisticsService.getSnapshot())
+                .distinctUntilChanged(StatisticsSnapshot::getVersion)
+                .map(snapshot -> encode(snapshot, percentiles))
+                .replay(1)
+                .refCount();
+    }
+
+    static byte[] encode(StatisticsSnapshot snapshot, boolean percentiles) {
+        String etag = percentiles ? snapshot.getPercentilesEtag() : snapshot.getEtag();
+        byte[] json = percentiles ? snapshot.getPercentilesJson() : snapshot.getJson();
+        // the JSON is written on one line, so it fits in a single data field
+        byte[] header = ("id:" + etag.substring(1, etag.length() - 1) + "\nevent:statistics\ndata:").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[header.length + json.length + 2];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(json, 0, frame, header.length, json.length);
+        frame[frame.length - 2] = '\n';
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+}
@@ -0,0 +1,471 @@
+package com.bank.services;
+
+import com.bank.exceptions.StatisticsException;
+import com.bank.utils.Constants;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.StatisticsWindow;
+import com.bank.utils.TimeSource;
+import com.bank.utils.WindowCheckpoints;
+import com.bank.utils.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Durability of the windows, both parts optional:
+ *
+ * A {@link WriteAheadLog} of the accepted transactions, enabled by setting
+ * {@code statistics.wal-directory}. A daemon thread forces the appends to the disk every
+ * {@code statistics.wal-sync-interval}, or earlier once {@code statistics.wal-sync-bytes}
+ * are pending, and deletes the expired segments. Appends don't wait for the disk: a crash
+ * of the process loses nothing, a crash of the machine loses the transactions accepted
+ * since the last sync.
+ *
+ * {@link WindowCheckpoints} of the aggregated slices of the statistics window, enabled by
+ * setting {@code statistics.checkpoint-directory}, written every
+ * {@code statistics.checkpoint-interval} and once more on stop. With the log as well, the transactions are
+ * added to the statistics window here, under a lock that a checkpoint takes while it
+ * marks the log and copies the slices, so each transaction is either in the checkpoint
+ * or after its mark, never both. The slices are encoded once the lock is released.
+ *
+ * On start, before the web server accepts requests, the statistics window is restored
+ * from the newest checkpoint and completed by the records appended after it, the exact
+ * quantile and per key windows are rebuilt from the whole log.
+ */
+@Component
+public class TransactionJournal implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionJournal.class);
+    private static final int REPLAY_CHUNK_SIZE = 1024;
+    // A checkpoint written without the log is newer than any of its segments
+    private static final WriteAheadLog.Position AFTER_ALL = new WriteAheadLog.Position(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final StatisticsWindow window;
+    private final OrderStatisticsWindow orderWindow;
+    private final KeyedWindows keyedWindows;
+    private final TimeSource timeSource;
+    private final WriteAheadLog log;
+    private final WindowCheckpoints checkpoints;
+    private final long syncInterval;
+    private final long syncBytes;
+    private final long checkpointInterval;
+    // Only taken when both the log and the checkpoints are enabled
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final boolean coordinated;
+    private final AtomicBoolean syncRequested = new AtomicBoolean();
+    private volatile ScheduledExecutorService executor;
+
+    public TransactionJournal(StatisticsWindow window, OrderStatisticsWindow orderWindow, KeyedWindows keyedWindows,
+                              TimeSource timeSource,
+                              @Value("${statistics.wal-directory:}") String directory,
+                              @Value("${statistics.wal-segment-size:67108864}") int segmentSize,
+                              @Value("${statistics.wal-sync-interval:100}") long syncInterval,
+                              @Value("${statistics.wal-sync-bytes:1048576}") long syncBytes,
+                              @Value("${statistics.checkpoint-directory:}") String checkpointDirectory,
+                              @Value("${statistics.checkpoint-interval:10000}") long checkpointInterval) {
+        this.window = window;
+        this.orderWindow = orderWindow;
+        this.keyedWindows = keyedWindows;
+        this.timeSource = timeSource;
+        this.log = directory.isEmpty() ? null : new WriteAheadLog(Paths.get(directory), Constants.WINDOW_TIME, Constants.WINDOW_TIME, segmentSize);
+        this.checkpoints = checkpointDirectory.isEmpty() ? null : new WindowCheckpoints(Paths.get(checkpointDirectory));
+        this.syncInterval = syncInterval;
+        this.syncBytes = syncBytes;
+        this.checkpointInterval = checkpointInterval;
+        this.coordinated = log != null && checkpoints != null;
+    }
+
+    /**
+     * @return true when the log or the checkpoints are enabled, additions and clears
+     * may then wait for the disk or for a checkpoint being captured
+     */
+    public boolean isEnabled() {
+        return log != null || checkpoints != null;
+    }
+
+    /**
+     * Decides the admission of the transaction at {@code now}, logs it, then adds it to
+     * the statistics window, so the log never replays a rejected transaction and a
+     * failing log leaves no trace of it.
+     *
+     * @return false when the timestamp is outside of the window at {@code now}
+     */
+    public boolean add(long timestamp, BigDecimal amount, String key, long now) {
+        return add(timestamp, amount, 0l, key, now);
+    }
+
+    /**
+     * Same as {@link #add(long, BigDecimal, String, long)} for an amount scaled by
+     * {@link com.bank.utils.FixedPointStatistics#SCALE}.
+     */
+    public boolean add(long timestamp, long scaledAmount, String key, long now) {
+        return add(timestamp, null, scaledAmount, key, now);
+    }
+
+    /**
+     * Decides the admission of the transactions, logs the ones admitted, then adds them
+     * to the statistics window in a single step, see {@link #add}.
+     *
+     * @param accepted set to whether each transaction was added, null when not needed
+     * @return the number of transactions added, the others were outside of the window at {@code now}
+     */
+    public int addAll(long[] timestamps, BigDecimal[] amounts, String[] keys, int size, long now, boolean[] accepted) {
+        return addAll(timestamps, amounts, null, keys, size, now, accepted);
+    }
+
+    /**
+     * Same as {@link #addAll(long[], BigDecimal[], String[], int, long, boolean[])} for
+     * amounts scaled by {@link com.bank.utils.FixedPointStatistics#SCALE}.
+     */
+    public int addAll(long[] timestamps, long[] scaledAmounts, String[] keys, int size, long now, boolean[] accepted) {
+        return addAll(timestamps, null, scaledAmounts, keys, size, now, accepted);
+    }
+
+    /**
+     * @param amount null when the amount is scaled
+     */
+    private boolean add(long timestamp, BigDecimal amount, long scaledAmount, String key, long now) {
+        lockShared();
+        try {
+            if (log == null) {
+                return amount == null ? window.add(timestamp, scaledAmount, now) : window.add(timestamp, amount, now);
+            }
+            if (!window.accepts(timestamp, now)) {
+                return false;
+            }
+            try {
+                if (amount == null) {
+                    log.append(timestamp, scaledAmount, key, now);
+                } else {
+                    log.append(timestamp, amount, key, now);
+                }
+            } catch (UncheckedIOException ex) {
+                throw new StatisticsException("Exception writing the transaction log: " + ex.getMessage());
+            }
+            // Admission only depends on the age, the window agrees whatever its slices
+            if (amount == null) {
+                window.add(timestamp, scaledAmount, now);
+            } else {
+                window.add(timestamp, amount, now);
+            }
+            return true;
+        } finally {
+            unlockShared();
+            requestSyncIfNeeded();
+        }
+    }
+
+    /**
+     * @param amounts null when the amounts are scaled
+     */
+    private int addAll(long[] timestamps, BigDecimal[] amounts, long[] scaledAmounts, String[] keys, int size, long now,
+                       boolean[] accepted) {
+        if (size == 0) {
+            return 0;
+        }
+        lockShared();
+        try {
+            if (log == null) {
+                return amounts == null ? window.addAll(timestamps, scaledAmounts, size, now, accepted)
+                        : window.addAll(timestamps, amounts, size, now, accepted);
+            }
+            boolean[] admitted = accepted == null ? new boolean[size] : accepted;
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                admitted[i] = window.accepts(timestamps[i], now);
+                if (admitted[i]) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return 0;
+            }
+            try {
+                if (amounts == null) {
+                    log.appendAll(timestamps, scaledAmounts, keys, size, now, admitted);
+                } else {
+                    log.appendAll(timestamps, amounts, keys, size, now, admitted);
+                }
+            } catch (UncheckedIOException ex) {
+                throw new StatisticsException("Exception writing the transaction log: " + ex.getMessage());
+            }
+            if (count == size) {
+                if (amounts == null) {
+                    window.addAll(timestamps, scaledAmounts, size, now, null);
+                } else {
+                    window.addAll(timestamps, amounts, size, now, null);
+                }
+                return count;
+            }
+            long[] admittedTimestamps = new long[count];
+            BigDecimal[] admittedAmounts = amounts == null ? null : new BigDecimal[count];
+            long[] admittedScaledAmounts = amounts == null ? new long[count] : null;
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                if (admitted[i]) {
+                    admittedTimestamps[j] = timestamps[i];
+                    if (amounts == null) {
+                        admittedScaledAmounts[j] = scaledAmounts[i];
+                    } else {
+                        admittedAmounts[j] = amounts[i];
+                    }
+                    j++;
+                }
+            }
+            if (amounts == null) {
+                window.addAll(admittedTimestamps, admittedScaledAmounts, count, now, null);
+            } else {
+                window.addAll(admittedTimestamps, admittedAmounts, count, now, null);
+            }
+            return count;
+        } finally {
+            unlockShared();
+            requestSyncIfNeeded();
+        }
+    }
+
+    /**
+     * Empties the statistics window, the log and the checkpoints.
+     */
+    public void clear() {
+        if (checkpoints == null) {
+            clearLocked();
+            return;
+        }
+        // Waits for a checkpoint being written, which would otherwise outlive the clear
+        synchronized (checkpoints) {
+            checkpointLock.writeLock().lock();
+            try {
+                clearLocked();
+                checkpoints.clear();
+            } catch (IOException ex) {
+                throw new StatisticsException("Exception deleting the checkpoints: " + ex.getMessage());
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the statistics window. With the log, additions wait while
+     * it is marked and the slices are copied, not while they are encoded and written.
+     */
+    public void checkpoint() {
+        if (checkpoints == null) {
+            return;
+        }
+        synchronized (checkpoints) {
+            long start = System.currentTimeMillis();
+            long now = timeSource.millis();
+            WriteAheadLog.Position position = null;
+            WindowCheckpoints.Slices copied;
+            if (log != null) {
+                checkpointLock.writeLock().lock();
+                try {
+                    position = log.mark();
+                    copied = WindowCheckpoints.copy(window);
+                } finally {
+                    checkpointLock.writeLock().unlock();
+                }
+            } else {
+                copied = WindowCheckpoints.copy(window);
+            }
+            byte[] slices = WindowCheckpoints.encode(copied);
+            try {
+                checkpoints.write(now, position, slices);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot write the checkpoint", ex);
+            }
+            logger.debug("Checkpoint of {} bytes written in {}ms", slices.length, System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if ((log == null && checkpoints == null) || executor != null) {
+            return;
+        }
+        WriteAheadLog.Position position = restore();
+        if (log != null) {
+            replay(position);
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (log != null) {
+            executor.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+        if (checkpoints != null) {
+            executor.scheduleWithFixedDelay(this::checkpointLogged, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        if (checkpoints != null) {
+            // Waits for a scheduled one still being written, then captures the last transactions
+            checkpointLogged();
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * @return position of the log the checkpoint restored was captured at, null when
+     * there was none
+     */
+    private WriteAheadLog.Position restore() {
+        if (checkpoints == null) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        long now = timeSource.millis();
+        WindowCheckpoints.Checkpoint checkpoint;
+        try {
+            checkpoint = checkpoints.restore(window, now);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot restore the checkpoint", ex);
+        }
+        if (checkpoint == null) {
+            logger.info("No checkpoint to restore");
+            return null;
+        }
+        logger.info("Restored " + checkpoint.getRestoredSlices() + " slices from " + checkpoint.getPath() + " written "
+                + (now - checkpoint.getCreatedAt()) + "ms ago, in " + (System.currentTimeMillis() - start) + "ms");
+        return checkpoint.getPosition() == null ? AFTER_ALL : checkpoint.getPosition();
+    }
+
+    private void replay(WriteAheadLog.Position checkpoint) {
+        long start = System.currentTimeMillis();
+        long[] timestamps = new long[REPLAY_CHUNK_SIZE];
+        BigDecimal[] amounts = new BigDecimal[REPLAY_CHUNK_SIZE];
+        int[] size = {0};
+        // Checkpointed records come first, a chunk never mixes them with the others
+        boolean[] chunkCheckpointed = {true};
+        long replayed;
+        try {
+            replayed = log.replay(timeSource.millis(), checkpoint, (timestamp, amount, key, checkpointed) -> {
+                if (size[0] == REPLAY_CHUNK_SIZE || (size[0] > 0 && checkpointed != chunkCheckpointed[0])) {
+                    addAll(timestamps, amounts, size[0], chunkCheckpointed[0]);
+                    size[0] = 0;
+                }
+                chunkCheckpointed[0] = checkpointed;
+                timestamps[size[0]] = timestamp;
+                amounts[size[0]] = amount;
+                size[0]++;
+                if (key != null) {
+                    keyedWindows.add(key, timestamp, amount, timeSource.millis());
+                }
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot replay the transaction log", ex);
+        }
+        addAll(timestamps, amounts, size[0], chunkCheckpointed[0]);
+        logger.info("Replayed " + replayed + " transactions from the log in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * @param checkpointed whether the statistics window already holds the transactions
+     */
+    private void addAll(long[] timestamps, BigDecimal[] amounts, int size, boolean checkpointed) {
+        long now = timeSource.millis();
+        if (!checkpointed) {
+            window.addAll(timestamps, amounts, size, now, null);
+        }
+        orderWindow.addAll(timestamps, amounts, size, now);
+    }
+
+    private void clearLocked() {
+        if (log != null) {
+            log.clear();
+        }
+        window.clear();
+    }
+
+    private void lockShared() {
+        if (coordinated) {
+            checkpointLock.readLock().lock();
+        }
+    }
+
+    private void unlockShared() {
+        if (coordinated) {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    private void requestSyncIfNeeded() {
+        ScheduledExecutorService current = executor;
+        if (log != null && current != null && log.getUnsyncedBytes() >= syncBytes && syncRequested.compareAndSet(false, true)) {
+            try {
+                current.execute(this::sync);
+            } catch (RejectedExecutionException ex) {
+                // stopping, the log is synced on close
+            }
+        }
+    }
+
+    private void sync() {
+        try {
+            syncRequested.set(false);
+            log.sync();
+            log.deleteExpired(timeSource.millis());
+        } catch (RuntimeException ex) {
+            // an exception would cancel the periodic task
+            logger.error("Exception syncing the transaction log: " + ex.getMessage(), ex);
+        }
+    }
+
+    private void checkpointLogged() {
+        try {
+            checkpoint();
+        } catch (RuntimeException ex) {
+            // an exception would cancel the periodic task or the stop, the next one may succeed
+            logger.error("Exception writing the checkpoint: " + ex.getMessage(), ex);
+        }
+    }
+}
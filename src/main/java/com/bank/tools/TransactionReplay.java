@@ -0,0 +1,288 @@
+package com.bank.tools;
+
+import com.bank.config.StatisticsConfiguration;
+import com.bank.models.BatchResult;
+import com.bank.models.StatisticsSnapshot;
+import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+import com.bank.services.StatisticsService;
+import com.bank.services.TransactionJournal;
+import com.bank.utils.BinaryTransactions;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.MultiResolutionWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.RollupHistory;
+import com.bank.utils.VirtualTimeSource;
+import com.bank.utils.WindowDurations;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline replay of a recorded transaction file through the statistics engine, without
+ * a server, on a {@link VirtualTimeSource}: the simulated now is the latest timestamp
+ * read, so a recording of hours replays in seconds. Every {@code interval} of simulated
+ * time a snapshot of each window is written as a line of JSON,
+ * {@code {"time":"...","window":"1m","statistics":{...}}}, a last one after the end
+ * of the input.
+ *
+ * Records are expected roughly in timestamp order, as recorded: one older than its
+ * window at the time it is read counts as expired, exactly as the server would have.
+ * The binary encoding carries no keys, keyed statistics only follow NDJSON recordings.
+ *
+ * Options, as {@code --name=value}:
+ * <ul>
+ *     <li>input: the recorded file, required</li>
+ *     <li>format: ndjson, one transaction per line, or binary, batches of
+ *     {@link BinaryTransactions} one after the other, binary for .bin files by default</li>
+ *     <li>output: file of the timeline, the standard output by default</li>
+ *     <li>interval: simulated time between snapshots, 1m by default</li>
+ *     <li>windows: windows of the engine, 60s by default</li>
+ *     <li>ingest-mode: locked, striped or bucketed, locked by default</li>
+ *     <li>percentiles: true to include the percentiles, false by default</li>
+ * </ul>
+ *
+ * mvn compile exec:java -Dstart-class=com.bank.tools.TransactionReplay
+ * -Dexec.args="--input=transactions.ndjson --interval=10s --windows=60s,1h"
+ */
+public class TransactionReplay {
+
+    public static final String NDJSON_FORMAT = "ndjson";
+    public static final String BINARY_FORMAT = "binary";
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX").withZone(ZoneId.of("UTC"));
+
+    private final VirtualTimeSource timeSource = new VirtualTimeSource(Long.MIN_VALUE);
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private final StatisticsService service;
+    private final long[] windowTimes;
+    private final long interval;
+    private final boolean percentiles;
+    private final OutputStream out;
+
+    private final BatchResult result = new BatchResult();
+    private long nextTick = Long.MIN_VALUE;
+    private long snapshots = 0l;
+
+    /**
+     * @param interval ms of simulated time between snapshots
+     * @param out the timeline, buffered by the caller
+     */
+    public TransactionReplay(String ingestMode, String[] windows, long interval, boolean percentiles, OutputStream out) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid interval: " + interval);
+        }
+        MeterRegistry registry = new SimpleMeterRegistry();
+        StatisticsConfiguration configuration = new StatisticsConfiguration();
+        MultiResolutionWindow window = configuration.statisticsWindow(ingestMode, windows, registry);
+        OrderStatisticsWindow orderWindow = configuration.orderStatisticsWindow(1024, false);
+        KeyedWindows keyedWindows = configuration.keyedWindows(1000l);
+        RollupHistory history = configuration.rollupHistory("1h", "1d");
+        TransactionJournal journal = new TransactionJournal(window, orderWindow, keyedWindows, timeSource, "", 1 << 16, 100l, 1 << 10, "", 10000l);
+        this.service = new StatisticsService(window, orderWindow, keyedWindows, history, journal, objectMapper, registry, timeSource, 0l);
+        this.windowTimes = service.getWindowTimes();
+        this.interval = interval;
+        this.percentiles = percentiles;
+        this.out = out;
+    }
+
+    public static void main(String... args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+
+        Map<String, String> options = parseOptions(args);
+        String input = options.get("input");
+        if (input == null) {
+            throw new IllegalArgumentException("Missing --input=<file>");
+        }
+        Path path = Paths.get(input);
+        String format = options.getOrDefault("format", input.endsWith(".bin") ? BINARY_FORMAT : NDJSON_FORMAT);
+        long interval = WindowDurations.parse(options.getOrDefault("interval", "1m"));
+        String[] windows = options.getOrDefault("windows", "60s").split(",");
+        String ingestMode = options.getOrDefault("ingest-mode", StatisticsConfiguration.LOCKED_MODE);
+        boolean percentiles = Boolean.parseBoolean(options.getOrDefault("percentiles", "false"));
+        String output = options.get("output");
+
+        OutputStream out = new BufferedOutputStream(output == null ? System.out : Files.newOutputStream(Paths.get(output)), BUFFER_SIZE);
+        try (InputStream in = Files.newInputStream(path)) {
+            TransactionReplay replay = new TransactionReplay(ingestMode, windows, interval, percentiles, out);
+            long start = System.nanoTime();
+            BatchResult result = replay.replay(in, format);
+            long elapsed = Math.max(System.nanoTime() - start, 1l);
+            long total = result.getAccepted() + result.getExpired() + result.getFuture() + result.getInvalid();
+            System.err.println("Replayed " + total + " transactions of " + path + " in " + elapsed / 1000000l + "ms, "
+                    + total * 1000000000l / elapsed + " transactions/s, " + replay.getSnapshots() + " snapshots: " + result);
+        } finally {
+            if (output == null) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Replays the whole input, then writes the last snapshots.
+     *
+     * @param format {@link #NDJSON_FORMAT} or {@link #BINARY_FORMAT}
+     * @return the outcome of the transactions replayed
+     */
+    public BatchResult replay(InputStream in, String format) throws IOException {
+        if (NDJSON_FORMAT.equals(format)) {
+            return replayNdjson(in);
+        } else if (BINARY_FORMAT.equals(format)) {
+            return replayBinary(in);
+        }
+        throw new IllegalArgumentException("Unknown format " + format + ", expected " + NDJSON_FORMAT + " or " + BINARY_FORMAT);
+    }
+
+    public BatchResult replayNdjson(InputStream in) throws IOException {
+        List<Transaction> chunk = new ArrayList<>(CHUNK_SIZE);
+        long chunkMax = Long.MIN_VALUE;
+        try (MappingIterator<Transaction> transactions = objectMapper.readerFor(Transaction.class)
+                .readValues(new BufferedInputStream(in, BUFFER_SIZE))) {
+            while (transactions.hasNextValue()) {
+                Transaction transaction = transactions.nextValue();
+                if (transaction.hasTimestamp()) {
+                    long timestamp = transaction.getTimestampMillis();
+                    if (timestamp >= nextTick) {
+                        flush(chunk, chunkMax);
+                        chunkMax = Long.MIN_VALUE;
+                        tick(timestamp);
+                    }
+                    chunkMax = Math.max(chunkMax, timestamp);
+                }
+                chunk.add(transaction);
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, chunkMax);
+                    chunkMax = Long.MIN_VALUE;
+                }
+            }
+        }
+        flush(chunk, chunkMax);
+        return finish();
+    }
+
+    public BatchResult replayBinary(InputStream in) throws IOException {
+        TransactionBatch chunk = new TransactionBatch(CHUNK_SIZE);
+        long[] chunkMax = {Long.MIN_VALUE};
+        BinaryTransactions.readBatches(new BufferedInputStream(in, BUFFER_SIZE), (timestamp, amount) -> {
+            if (timestamp >= nextTick) {
+                flush(chunk, chunkMax[0]);
+                chunkMax[0] = Long.MIN_VALUE;
+                tick(timestamp);
+            }
+            chunkMax[0] = Math.max(chunkMax[0], timestamp);
+            chunk.add(timestamp, amount);
+            if (chunk.getSize() == CHUNK_SIZE) {
+                flush(chunk, chunkMax[0]);
+                chunkMax[0] = Long.MIN_VALUE;
+            }
+        });
+        flush(chunk, chunkMax[0]);
+        return finish();
+    }
+
+    /**
+     * @return number of snapshots written so far
+     */
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    private void flush(List<Transaction> chunk, long chunkMax) {
+        if (!chunk.isEmpty()) {
+            advanceTo(chunkMax);
+            result.add(service.createTransactions(chunk));
+            chunk.clear();
+        }
+    }
+
+    private void flush(TransactionBatch chunk, long chunkMax) {
+        if (chunk.getSize() > 0) {
+            advanceTo(chunkMax);
+            result.add(service.createTransactions(chunk));
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Writes the snapshots due up to the timestamp, the first one being due at the end
+     * of the interval holding the first timestamp.
+     */
+    private void tick(long timestamp) throws IOException {
+        if (nextTick == Long.MIN_VALUE) {
+            nextTick = Math.floorDiv(timestamp, interval) * interval + interval;
+            return;
+        }
+        while (nextTick <= timestamp) {
+            writeSnapshots(nextTick);
+            nextTick += interval;
+        }
+    }
+
+    private BatchResult finish() throws IOException {
+        if (nextTick != Long.MIN_VALUE) {
+            writeSnapshots(nextTick);
+        }
+        out.flush();
+        return result;
+    }
+
+    private void writeSnapshots(long time) throws IOException {
+        advanceTo(time);
+        byte[] prefix = ("{\"time\":\"" + TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(time)) + "\",\"window\":\"")
+                .getBytes(StandardCharsets.UTF_8);
+        for (long windowTime : windowTimes) {
+            StatisticsSnapshot snapshot = service.getSnapshot(windowTime);
+            out.write(prefix);
+            out.write(WindowDurations.format(windowTime).getBytes(StandardCharsets.UTF_8));
+            out.write("\",\"statistics\":".getBytes(StandardCharsets.UTF_8));
+            out.write(percentiles ? snapshot.getPercentilesJson() : snapshot.getJson());
+            out.write("}\n".getBytes(StandardCharsets.UTF_8));
+            snapshots++;
+        }
+    }
+
+    private void advanceTo(long time) {
+        if (time > timeSource.millis()) {
+            timeSource.set(time);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String... args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, found " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,196 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Multiset of amounts at {@link FixedPointStatistics#SCALE} answering exact rank and
+ * k-th amount queries. Amounts between 0 and {@code buckets} cents are counted in a
+ * Fenwick tree with one bucket per cent, so inserts, removals and queries cost
+ * O(log buckets). The other amounts, negative or large, go to an overflow tier kept
+ * in a sorted map, whose queries are linear in the number of distinct overflowing
+ * amounts and only pay off while those are rare.
+ *
+ * Not thread safe.
+ */
+public class AmountIndex {
+
+    private final int buckets;
+    // 1-based Fenwick tree, tree[i] counts the buckets (i - lowbit(i), i]
+    private final long[] tree;
+    private final BigDecimal limit;
+    private final TreeMap<BigDecimal, Long> overflow = new TreeMap<>();
+    private long bucketCount = 0l;
+    private long negativeCount = 0l;
+    private long overflowCount = 0l;
+
+    /**
+     * @param buckets number of one cent buckets, a power of two
+     */
+    public AmountIndex(int buckets) {
+        if (buckets <= 0 || Integer.bitCount(buckets) != 1) {
+            throw new IllegalArgumentException("Buckets must be a power of two: " + buckets);
+        }
+        this.buckets = buckets;
+        this.tree = new long[buckets + 1];
+        this.limit = BigDecimal.valueOf(buckets, FixedPointStatistics.SCALE);
+    }
+
+    /**
+     * Rounds an amount half up to {@link FixedPointStatistics#SCALE}, the way the
+     * statistics are reported.
+     */
+    public static BigDecimal quantize(BigDecimal amount) {
+        return amount.setScale(FixedPointStatistics.SCALE, BigDecimal.ROUND_HALF_UP);
+    }
+
+    public void add(BigDecimal amount) {
+        update(quantize(amount), 1l);
+    }
+
+    /**
+     * Adds an amount scaled by {@link FixedPointStatistics#SCALE}.
+     */
+    public void add(long scaledAmount) {
+        update(scaledAmount, 1l);
+    }
+
+    /**
+     * Removes an amount previously added, quantized the same way.
+     */
+    public void remove(BigDecimal amount) {
+        update(quantize(amount), -1l);
+    }
+
+    public void remove(long scaledAmount) {
+        update(scaledAmount, -1l);
+    }
+
+    public long getCount() {
+        return negativeCount + bucketCount + overflowCount;
+    }
+
+    /**
+     * @return the amount of the given 0-based rank in ascending order
+     * @throws IllegalArgumentException when the rank is not below the count
+     */
+    public BigDecimal select(long rank) {
+        if (rank < 0 || rank >= getCount()) {
+            throw new IllegalArgumentException("Rank " + rank + " out of " + getCount() + " amounts");
+        }
+        if (rank < negativeCount) {
+            return selectOverflow(rank);
+        }
+        rank -= negativeCount;
+        if (rank < bucketCount) {
+            return BigDecimal.valueOf(selectBucket(rank), FixedPointStatistics.SCALE);
+        }
+        return selectOverflow(negativeCount + rank - bucketCount);
+    }
+
+    /**
+     * @return the number of amounts strictly below the given one once quantized
+     */
+    public long rank(BigDecimal amount) {
+        BigDecimal quantized = quantize(amount);
+        if (quantized.signum() < 0) {
+            return countOverflowBelow(quantized);
+        }
+        if (quantized.compareTo(limit) < 0) {
+            return negativeCount + prefix((int) quantized.unscaledValue().longValue());
+        }
+        // The overflow below holds the negative amounts as well
+        return bucketCount + countOverflowBelow(quantized);
+    }
+
+    public void clear() {
+        Arrays.fill(tree, 0l);
+        overflow.clear();
+        bucketCount = 0l;
+        negativeCount = 0l;
+        overflowCount = 0l;
+    }
+
+    private void update(long scaledAmount, long delta) {
+        if (scaledAmount >= 0 && scaledAmount < buckets) {
+            for (int i = (int) scaledAmount + 1; i <= buckets; i += i & -i) {
+                tree[i] += delta;
+            }
+            bucketCount += delta;
+            return;
+        }
+        updateOverflow(BigDecimal.valueOf(scaledAmount, FixedPointStatistics.SCALE), delta);
+    }
+
+    private void update(BigDecimal quantized, long delta) {
+        if (quantized.signum() >= 0 && quantized.compareTo(limit) < 0) {
+            update(quantized.unscaledValue().longValue(), delta);
+            return;
+        }
+        updateOverflow(quantized, delta);
+    }
+
+    private void updateOverflow(BigDecimal quantized, long delta) {
+        Long count = overflow.get(quantized);
+        long updated = (count == null ? 0l : count) + delta;
+        if (updated < 0) {
+            throw new IllegalStateException("Removing an amount never added: " + quantized);
+        }
+        if (updated == 0) {
+            overflow.remove(quantized);
+        } else {
+            overflow.put(quantized, updated);
+        }
+        if (quantized.signum() < 0) {
+            negativeCount += delta;
+        } else {
+            overflowCount += delta;
+        }
+    }
+
+    /**
+     * Number of amounts in the buckets below {@code bucket}.
+     */
+    private long prefix(int bucket) {
+        long sum = 0l;
+        for (int i = bucket; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Descends the tree to the bucket holding the amount of the given rank.
+     */
+    private long selectBucket(long rank) {
+        int position = 0;
+        for (int step = buckets; step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= buckets && tree[next] <= rank) {
+                position = next;
+                rank -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    private BigDecimal selectOverflow(long rank) {
+        for (Map.Entry<BigDecimal, Long> entry : overflow.entrySet()) {
+            rank -= entry.getValue();
+            if (rank < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Overflow counts out of sync");
+    }
+
+    private long countOverflowBelow(BigDecimal quantized) {
+        long count = 0l;
+        for (long value : overflow.headMap(quantized, false).values()) {
+            count += value;
+        }
+        return count;
+    }
+}
@@ -14,6 +14,13 @@ public class BigDecimalStatistics implements Consumer<BigDecimal> {
     public BigDecimalStatistics() {
     }
 
+    public BigDecimalStatistics(BigDecimal sum, BigDecimal min, BigDecimal max, long count) {
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.count = count;
+    }
+
     public static Collector<BigDecimal,?,BigDecimalStatistics> statistics() {
         return Collector.of(BigDecimalStatistics::new,
                 BigDecimalStatistics::accept, BigDecimalStatistics::combine);
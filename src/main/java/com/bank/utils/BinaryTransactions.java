@@ -0,0 +1,160 @@
+package com.bank.utils;
+
+import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Compact binary encoding of transactions, {@value #MEDIA_TYPE_VALUE}: a count followed
+ * by that many records of the timestamp in epoch millis and the amount scaled by
+ * {@link FixedPointStatistics#SCALE}, {@code [int count]([long timestamp][long amount])*}
+ * big endian. A transaction takes 16 bytes and is decoded without parsing any text.
+ *
+ * Amounts with more decimals than the scale and keys can't be encoded, such transactions
+ * are sent as JSON.
+ */
+public final class BinaryTransactions {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-transactions";
+    public static final int RECORD_SIZE = 16;
+    // Bounds the arrays allocated for the count announced by a request
+    public static final int MAX_COUNT = 1 << 20;
+
+    private BinaryTransactions() {
+    }
+
+    /**
+     * Encodes transactions on the client side.
+     *
+     * @throws IllegalArgumentException for a transaction with a key or an amount with
+     * more decimals than {@link FixedPointStatistics#SCALE}
+     */
+    public static byte[] encode(List<Transaction> transactions) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + transactions.size() * RECORD_SIZE);
+        buffer.putInt(transactions.size());
+        for (Transaction transaction : transactions) {
+            if (!transaction.hasTimestamp() || transaction.getKey() != null || !FixedPointStatistics.isScalable(transaction.getAmount())) {
+                throw new IllegalArgumentException("Transaction not encodable in binary: " + transaction);
+            }
+            buffer.putLong(transaction.getTimestampMillis());
+            buffer.putLong(FixedPointStatistics.toScaled(transaction.getAmount()));
+        }
+        return buffer.array();
+    }
+
+    public static byte[] encode(TransactionBatch batch) {
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize(batch));
+        buffer.putInt(batch.getSize());
+        for (int i = 0; i < batch.getSize(); i++) {
+            buffer.putLong(batch.getTimestamp(i));
+            buffer.putLong(batch.getAmount(i));
+        }
+        return buffer.array();
+    }
+
+    public static void write(TransactionBatch batch, OutputStream out) throws IOException {
+        out.write(encode(batch));
+    }
+
+    public static int getEncodedSize(TransactionBatch batch) {
+        return 4 + batch.getSize() * RECORD_SIZE;
+    }
+
+    /**
+     * Reads a whole encoded batch, nothing may follow it.
+     *
+     * @throws IOException when the encoding is truncated, too long or announces more
+     * than {@link #MAX_COUNT} transactions
+     */
+    public static TransactionBatch read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int count = data.readInt();
+        checkCount(count);
+        byte[] records = new byte[count * RECORD_SIZE];
+        data.readFully(records);
+        if (data.read() != -1) {
+            throw new IOException("Unexpected bytes after " + count + " transactions");
+        }
+        return decodeRecords(ByteBuffer.wrap(records), count);
+    }
+
+    /**
+     * Streams batches encoded one after the other, e.g. recorded request bodies, up to
+     * the end of the input.
+     *
+     * @return number of transactions read
+     * @throws IOException when a batch is truncated or announces more than
+     * {@link #MAX_COUNT} transactions
+     */
+    public static long readBatches(InputStream in, TransactionVisitor visitor) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        long read = 0l;
+        for (long count = readCount(data); count != -1l; count = readCount(data)) {
+            checkCount(count);
+            for (int i = 0; i < count; i++) {
+                visitor.visit(data.readLong(), data.readLong());
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    /**
+     * Decodes the remaining bytes of the buffer as a whole encoded batch.
+     *
+     * @throws IOException when the encoding is truncated, too long or announces more
+     * than {@link #MAX_COUNT} transactions
+     */
+    public static TransactionBatch decode(ByteBuffer buffer) throws IOException {
+        try {
+            int count = buffer.getInt();
+            checkCount(count);
+            if (buffer.remaining() != count * RECORD_SIZE) {
+                throw new IOException("Expected " + count * RECORD_SIZE + " bytes of transactions, found " + buffer.remaining());
+            }
+            return decodeRecords(buffer, count);
+        } catch (BufferUnderflowException ex) {
+            throw new EOFException("Truncated transactions");
+        }
+    }
+
+    private static TransactionBatch decodeRecords(ByteBuffer buffer, int count) {
+        TransactionBatch batch = new TransactionBatch(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(buffer.getLong(), buffer.getLong());
+        }
+        return batch;
+    }
+
+    /**
+     * @return the count of the next batch read as unsigned, -1 at the end of the input
+     */
+    private static long readCount(DataInputStream data) throws IOException {
+        int first = data.read();
+        if (first == -1) {
+            return -1l;
+        }
+        return (long) first << 24 | data.readUnsignedByte() << 16 | data.readUnsignedByte() << 8 | data.readUnsignedByte();
+    }
+
+    private static void checkCount(long count) throws IOException {
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Invalid count of transactions: " + count);
+        }
+    }
+
+    public interface TransactionVisitor {
+        /**
+         * @param amount amount scaled by {@link FixedPointStatistics#SCALE}
+         */
+        void visit(long timestamp, long amount) throws IOException;
+    }
+}
@@ -0,0 +1,42 @@
+package com.bank.utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * System time refreshed by a daemon thread every {@code resolution} ms, so reading it is
+ * a volatile read. It lags the system clock by up to the resolution, which delays
+ * expiry and the future check by as much; never moves backwards.
+ */
+public class CachedTimeSource implements TimeSource, AutoCloseable {
+
+    private final ScheduledExecutorService executor;
+    private volatile long millis = System.currentTimeMillis();
+
+    public CachedTimeSource(long resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Invalid resolution: " + resolution);
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::update, resolution, resolution, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void update() {
+        millis = Math.max(millis, System.currentTimeMillis());
+    }
+}
@@ -2,5 +2,10 @@ package com.bank.utils;
 
 public class Constants {
     public static final Long WINDOW_TIME = 60000l;
-    public static final Long CLEAN_UP_INTERVAL = 10l;
+    // Shortest slice of the windows
+    public static final Long SLICE_TIME = 1l;
+    // Each window is split into at most that many slices, so its expiry is precise to
+    // 1/600 of its length: 2ms for 1s, 100ms for 60s, 6s for an hour. Slices are what
+    // a write, an expiry or a recomputed min/max visits
+    public static final Long MAX_SLICES = 600l;
 }
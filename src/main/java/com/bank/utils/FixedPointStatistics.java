@@ -0,0 +1,448 @@
+package com.bank.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Same sum/avg/min/max/count contract as {@link BigDecimalStatistics}, computed on
+ * {@code long} amounts scaled by {@link #SCALE} so accumulating allocates nothing.
+ *
+ * Amounts with more decimals than the scale, or sums overflowing a long, switch the
+ * instance to {@link BigDecimal} arithmetic until it is reset, so results are always
+ * exact and round the same way as {@link BigDecimalStatistics} would.
+ */
+public class FixedPointStatistics {
+
+    public static final int SCALE = 2;
+
+    private static final long[] POWERS_OF_TEN = {
+            1l, 10l, 100l, 1000l, 10000l, 100000l, 1000000l, 10000000l, 100000000l, 1000000000l,
+            10000000000l, 100000000000l, 1000000000000l, 10000000000000l, 100000000000000l,
+            1000000000000000l, 10000000000000000l, 100000000000000000l, 1000000000000000000l};
+
+    // Above this count a DECIMAL128 average may round differently than the exact one
+    private static final long EXACT_AVERAGE_MAX_COUNT = 1000000000000l;
+    // Longest unscaled value read, over 2400 digits
+    private static final int MAX_BIG_LENGTH = 1024;
+
+    private long count = 0l;
+    private long sum = 0l, min, max;
+
+    private boolean inflated = false;
+    private BigDecimal bigSum, bigMin, bigMax;
+
+    public FixedPointStatistics() {
+    }
+
+    public FixedPointStatistics(FixedPointStatistics statistics) {
+        copy(statistics);
+    }
+
+    /**
+     * @return true when the amount can be represented as a long at {@link #SCALE}
+     */
+    public static boolean isScalable(BigDecimal amount) {
+        int scale = amount.scale();
+        if (scale > SCALE) {
+            if (amount.signum() == 0) {
+                return true;
+            }
+            amount = amount.stripTrailingZeros();
+            scale = amount.scale();
+            if (scale > SCALE) {
+                return false;
+            }
+        }
+        int shift = SCALE - scale;
+        return shift < POWERS_OF_TEN.length && amount.precision() + shift <= 18;
+    }
+
+    /**
+     * Amount scaled by {@link #SCALE}, only valid when {@link #isScalable} is true.
+     */
+    public static long toScaled(BigDecimal amount) {
+        if (amount.scale() > SCALE) {
+            amount = amount.signum() == 0 ? BigDecimal.ZERO : amount.stripTrailingZeros();
+        }
+        return amount.unscaledValue().longValue() * POWERS_OF_TEN[SCALE - amount.scale()];
+    }
+
+    /**
+     * Formats a scaled amount the way {@code BigDecimal.valueOf(amount, SCALE).toString()} does.
+     */
+    public static String format(long amount) {
+        StringBuilder builder = new StringBuilder(24);
+        if (amount < 0) {
+            builder.append('-');
+        }
+        long units = Math.abs(amount / POWERS_OF_TEN[SCALE]);
+        long decimals = Math.abs(amount % POWERS_OF_TEN[SCALE]);
+        builder.append(units).append('.');
+        for (int i = SCALE - 1; i >= 0; i--) {
+            builder.append((char) ('0' + (decimals / POWERS_OF_TEN[i]) % 10));
+        }
+        return builder.toString();
+    }
+
+    public void accept(BigDecimal amount) {
+        if (!inflated && isScalable(amount) && acceptScaled(toScaled(amount))) {
+            return;
+        }
+        inflate();
+        acceptBig(amount);
+    }
+
+    /**
+     * Accepts an amount already scaled by {@link #SCALE}.
+     */
+    public void accept(long amount) {
+        if (!inflated && acceptScaled(amount)) {
+            return;
+        }
+        inflate();
+        acceptBig(BigDecimal.valueOf(amount, SCALE));
+    }
+
+    public FixedPointStatistics combine(FixedPointStatistics statistics) {
+        if (statistics.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            copy(statistics);
+            return this;
+        }
+        if (!inflated && !statistics.inflated) {
+            long newSum = sum + statistics.sum;
+            if (!overflows(sum, statistics.sum, newSum)) {
+                sum = newSum;
+                if (min > statistics.min) min = statistics.min;
+                if (max < statistics.max) max = statistics.max;
+                count += statistics.count;
+                return this;
+            }
+        }
+        inflate();
+        bigSum = bigSum.add(statistics.getSum());
+        if (bigMin.compareTo(statistics.getMin()) > 0) bigMin = statistics.getMin();
+        if (bigMax.compareTo(statistics.getMax()) < 0) bigMax = statistics.getMax();
+        count += statistics.count;
+        return this;
+    }
+
+    /**
+     * Same as {@link #combine} for a part held as scaled longs, e.g. a slot of a
+     * {@link RollupHistory}, so merging it allocates nothing.
+     */
+    public FixedPointStatistics combineScaled(long count, long sum, long min, long max) {
+        if (count == 0) {
+            return this;
+        }
+        if (this.count == 0) {
+            reset();
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            return this;
+        }
+        if (!inflated) {
+            long newSum = this.sum + sum;
+            if (!overflows(this.sum, sum, newSum)) {
+                this.sum = newSum;
+                if (this.min > min) this.min = min;
+                if (this.max < max) this.max = max;
+                this.count += count;
+                return this;
+            }
+        }
+        inflate();
+        bigSum = bigSum.add(BigDecimal.valueOf(sum, SCALE));
+        if (bigMin.compareTo(BigDecimal.valueOf(min, SCALE)) > 0) bigMin = BigDecimal.valueOf(min, SCALE);
+        if (bigMax.compareTo(BigDecimal.valueOf(max, SCALE)) < 0) bigMax = BigDecimal.valueOf(max, SCALE);
+        this.count += count;
+        return this;
+    }
+
+    /**
+     * Removes the sum and count of a previously combined part. Min and max can't be
+     * subtracted and are left untouched, see {@link #setExtremes}.
+     */
+    public void subtract(FixedPointStatistics statistics) {
+        if (statistics.count == 0) {
+            return;
+        }
+        if (count == statistics.count) {
+            reset();
+            return;
+        }
+        if (!inflated && !statistics.inflated) {
+            long newSum = sum - statistics.sum;
+            if (!overflows(sum, -statistics.sum, newSum) && statistics.sum != Long.MIN_VALUE) {
+                sum = newSum;
+                count -= statistics.count;
+                return;
+            }
+        }
+        inflate();
+        bigSum = bigSum.subtract(statistics.getSum());
+        count -= statistics.count;
+    }
+
+    /**
+     * Replaces min and max by the ones of the given statistics, holding the same amounts.
+     */
+    public void setExtremes(FixedPointStatistics statistics) {
+        if (count == 0 || statistics.count == 0) {
+            return;
+        }
+        if (!inflated && !statistics.inflated) {
+            min = statistics.min;
+            max = statistics.max;
+            return;
+        }
+        inflate();
+        bigMin = statistics.getMin();
+        bigMax = statistics.getMax();
+    }
+
+    /**
+     * @return true when the given statistics hold this min or this max
+     */
+    public boolean sharesExtremes(FixedPointStatistics statistics) {
+        if (count == 0 || statistics.count == 0) {
+            return false;
+        }
+        if (!inflated && !statistics.inflated) {
+            return min == statistics.min || max == statistics.max;
+        }
+        return getMin().compareTo(statistics.getMin()) == 0 || getMax().compareTo(statistics.getMax()) == 0;
+    }
+
+    public void reset() {
+        count = 0l;
+        sum = 0l;
+        min = 0l;
+        max = 0l;
+        inflated = false;
+        bigSum = null;
+        bigMin = null;
+        bigMax = null;
+    }
+
+    /**
+     * @return true while the statistics are held as scaled longs
+     */
+    public boolean isScaled() {
+        return !inflated;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getSum() {
+        return inflated ? bigSum : BigDecimal.valueOf(sum, SCALE);
+    }
+
+    public BigDecimal getAverage(MathContext mc) {
+        return count < 2 ? getSum() : getSum().divide(BigDecimal.valueOf(count), mc);
+    }
+
+    public BigDecimal getMin() {
+        if (count == 0) {
+            return null;
+        }
+        return inflated ? bigMin : BigDecimal.valueOf(min, SCALE);
+    }
+
+    public BigDecimal getMax() {
+        if (count == 0) {
+            return null;
+        }
+        return inflated ? bigMax : BigDecimal.valueOf(max, SCALE);
+    }
+
+    /**
+     * Scaled sum, only valid while {@link #isScaled} is true.
+     */
+    public long getScaledSum() {
+        return sum;
+    }
+
+    /**
+     * Scaled min, only valid while {@link #isScaled} is true and count is positive.
+     */
+    public long getScaledMin() {
+        return min;
+    }
+
+    /**
+     * Scaled max, only valid while {@link #isScaled} is true and count is positive.
+     */
+    public long getScaledMax() {
+        return max;
+    }
+
+    /**
+     * Scaled average rounded half up, only valid while {@link #isScaled} is true.
+     */
+    public long getScaledAverage() {
+        if (count < 2) {
+            return sum;
+        }
+        long quotient = sum / count;
+        long remainder = Math.abs(sum % count);
+        if (remainder >= count - remainder) {
+            quotient += Long.signum(sum);
+        }
+        return quotient;
+    }
+
+    /**
+     * @return true when {@link #getScaledAverage} rounds exactly like the BigDecimal average
+     */
+    public boolean hasExactAverage() {
+        return !inflated && count < EXACT_AVERAGE_MAX_COUNT;
+    }
+
+    private boolean acceptScaled(long amount) {
+        if (count == 0) {
+            sum = amount;
+            min = amount;
+            max = amount;
+            count = 1;
+            return true;
+        }
+        long newSum = sum + amount;
+        if (overflows(sum, amount, newSum)) {
+            return false;
+        }
+        sum = newSum;
+        if (min > amount) min = amount;
+        if (max < amount) max = amount;
+        count++;
+        return true;
+    }
+
+    private void acceptBig(BigDecimal amount) {
+        if (count == 0) {
+            bigSum = amount;
+            bigMin = amount;
+            bigMax = amount;
+            count = 1;
+        } else {
+            bigSum = bigSum.add(amount);
+            if (bigMin.compareTo(amount) > 0) bigMin = amount;
+            if (bigMax.compareTo(amount) < 0) bigMax = amount;
+            count++;
+        }
+    }
+
+    private void inflate() {
+        if (inflated) {
+            return;
+        }
+        inflated = true;
+        bigSum = BigDecimal.valueOf(sum, SCALE);
+        bigMin = count == 0 ? null : BigDecimal.valueOf(min, SCALE);
+        bigMax = count == 0 ? null : BigDecimal.valueOf(max, SCALE);
+    }
+
+    private void copy(FixedPointStatistics statistics) {
+        count = statistics.count;
+        sum = statistics.sum;
+        min = statistics.min;
+        max = statistics.max;
+        inflated = statistics.inflated;
+        bigSum = statistics.bigSum;
+        bigMin = statistics.bigMin;
+        bigMax = statistics.bigMax;
+    }
+
+    /**
+     * Writes the statistics in a compact binary form, read back by {@link #readFrom}.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeBoolean(inflated);
+        if (count == 0) {
+            return;
+        }
+        if (inflated) {
+            writeBig(out, bigSum);
+            writeBig(out, bigMin);
+            writeBig(out, bigMax);
+        } else {
+            out.writeLong(sum);
+            out.writeLong(min);
+            out.writeLong(max);
+        }
+    }
+
+    /**
+     * @throws IOException when the input is not statistics written by {@link #writeTo},
+     * it may come from a peer
+     */
+    public static FixedPointStatistics readFrom(DataInput in) throws IOException {
+        FixedPointStatistics statistics = new FixedPointStatistics();
+        statistics.count = in.readLong();
+        statistics.inflated = in.readBoolean();
+        if (statistics.count < 0) {
+            throw new IOException("Invalid count " + statistics.count);
+        }
+        if (statistics.count == 0) {
+            statistics.reset();
+        } else if (statistics.inflated) {
+            statistics.bigSum = readBig(in);
+            statistics.bigMin = readBig(in);
+            statistics.bigMax = readBig(in);
+            if (statistics.bigMin.compareTo(statistics.bigMax) > 0) {
+                throw new IOException("Minimum " + statistics.bigMin + " above the maximum " + statistics.bigMax);
+            }
+        } else {
+            statistics.sum = in.readLong();
+            statistics.min = in.readLong();
+            statistics.max = in.readLong();
+            if (statistics.min > statistics.max) {
+                throw new IOException("Minimum " + statistics.min + " above the maximum " + statistics.max);
+            }
+        }
+        return statistics;
+    }
+
+    private static void writeBig(DataOutput out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readBig(DataInput in) throws IOException {
+        int scale = in.readInt();
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_BIG_LENGTH) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] unscaled = new byte[length];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static boolean overflows(long left, long right, long result) {
+        return ((left ^ result) & (right ^ result)) < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FixedPointStatistics{" +
+                "sum=" + getSum() +
+                ", min=" + getMin() +
+                ", max=" + getMax() +
+                ", count=" + count +
+                '}';
+    }
+}
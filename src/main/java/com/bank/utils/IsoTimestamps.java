@@ -0,0 +1,131 @@
+package com.bank.utils;
+
+/**
+ * Parses ISO-8601 timestamps of the form {@code yyyy-MM-dd'T'HH:mm:ss[.SSS]X} straight
+ * into epoch millis, without the calendar and formatter objects of a {@code DateFormat}.
+ * The offset is either {@code Z} or {@code +HH}, {@code +HHmm} or {@code +HH:mm}.
+ *
+ * Anything else, including out of range fields and years before the Gregorian calendar,
+ * is reported as {@link #INVALID} so the caller can fall back to a lenient parser.
+ */
+public class IsoTimestamps {
+
+    public static final long INVALID = Long.MIN_VALUE;
+
+    // Earlier dates are Julian for java.util.Date, they are left to the fallback
+    private static final int GREGORIAN_YEAR = 1583;
+    private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+
+    private IsoTimestamps() {
+    }
+
+    public static long parse(CharSequence text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = text.charAt(i);
+        }
+        return parse(chars, 0, chars.length);
+    }
+
+    /**
+     * @return the epoch millis, {@link #INVALID} when the characters are not a timestamp
+     * of the supported form
+     */
+    public static long parse(char[] chars, int offset, int length) {
+        int end = offset + length;
+        // yyyy-MM-ddTHH:mm:ss followed by at least the Z
+        if (length < 20 || chars[offset + 4] != '-' || chars[offset + 7] != '-' || chars[offset + 10] != 'T'
+                || chars[offset + 13] != ':' || chars[offset + 16] != ':') {
+            return INVALID;
+        }
+        int year = digits(chars, offset, 4);
+        int month = digits(chars, offset + 5, 2);
+        int day = digits(chars, offset + 8, 2);
+        int hour = digits(chars, offset + 11, 2);
+        int minute = digits(chars, offset + 14, 2);
+        int second = digits(chars, offset + 17, 2);
+        if (year < GREGORIAN_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        int position = offset + 19;
+        int millis = 0;
+        if (chars[position] == '.') {
+            if (end - position < 5 || (millis = digits(chars, position + 1, 3)) < 0) {
+                return INVALID;
+            }
+            position += 4;
+        }
+        int offsetMinutes = offsetMinutes(chars, position, end - position);
+        if (offsetMinutes == Integer.MIN_VALUE) {
+            return INVALID;
+        }
+        long seconds = epochDay(year, month, day) * 86400l + hour * 3600 + minute * 60 + second - offsetMinutes * 60l;
+        return seconds * 1000l + millis;
+    }
+
+    /**
+     * @return the offset from UTC in minutes, {@code Integer.MIN_VALUE} when invalid
+     */
+    private static int offsetMinutes(char[] chars, int offset, int length) {
+        if (length == 1 && chars[offset] == 'Z') {
+            return 0;
+        }
+        if (length < 3 || (chars[offset] != '+' && chars[offset] != '-')) {
+            return Integer.MIN_VALUE;
+        }
+        int hours = digits(chars, offset + 1, 2);
+        int minutes;
+        if (length == 3) {
+            minutes = 0;
+        } else if (length == 5) {
+            minutes = digits(chars, offset + 3, 2);
+        } else if (length == 6 && chars[offset + 3] == ':') {
+            minutes = digits(chars, offset + 4, 2);
+        } else {
+            return Integer.MIN_VALUE;
+        }
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+            return Integer.MIN_VALUE;
+        }
+        int total = hours * 60 + minutes;
+        return chars[offset] == '-' ? -total : total;
+    }
+
+    /**
+     * @return the value of the decimal digits, -1 when a character is not one
+     */
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return isLeapYear(year) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long previousYears = year - 1l;
+        long days = 365l * previousYears + previousYears / 4 - previousYears / 100 + previousYears / 400;
+        days += DAYS_BEFORE_MONTH[month - 1] + (month > 2 && isLeapYear(year) ? 1 : 0) + day - 1;
+        // Days from 0001-01-01 to 1970-01-01
+        return days - 719162l;
+    }
+}
@@ -0,0 +1,235 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One sliding window per key, e.g. per account or merchant, spread over shards each
+ * guarded by its own lock so writers of different keys rarely contend.
+ *
+ * Sized for a large number of mostly quiet keys: a key only keeps its non empty slices,
+ * in epoch order, so a key with a single transaction holds a single slice. A key is
+ * dropped as soon as its window is empty, on access or by {@link #expire}, so the
+ * memory follows the keys active over the last window. Slices are coarser than in
+ * {@link TimeBucketedWindow} and reads combine them, which with the default 1s slices
+ * costs at most 61 combinations.
+ */
+public class KeyedWindows {
+
+    private final long windowTime;
+    private final long sliceTime;
+    private final Shard[] shards;
+    private final AtomicInteger keyCount = new AtomicInteger();
+
+    /**
+     * @param concurrency expected number of concurrent writers, the number of shards is
+     * the next power of two
+     */
+    public KeyedWindows(long windowTime, long sliceTime, int concurrency) {
+        if (sliceTime <= 0 || windowTime < sliceTime) {
+            throw new IllegalArgumentException("Invalid window " + windowTime + "ms with slices of " + sliceTime + "ms");
+        }
+        this.windowTime = windowTime;
+        this.sliceTime = sliceTime;
+        int size = concurrency <= 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+        shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * @return false when the timestamp is outside of the window at {@code now}
+     */
+    public boolean add(String key, long timestamp, BigDecimal amount, long now) {
+        return add(key, timestamp, amount, 0l, now);
+    }
+
+    /**
+     * Same as {@link #add(String, long, BigDecimal, long)} for an amount scaled by
+     * {@link FixedPointStatistics#SCALE}.
+     */
+    public boolean add(String key, long timestamp, long scaledAmount, long now) {
+        return add(key, timestamp, null, scaledAmount, now);
+    }
+
+    /**
+     * Statistics of the key at {@code now}, empty for a key without transactions in the
+     * window. The result belongs to the caller.
+     */
+    public FixedPointStatistics snapshot(String key, long now) {
+        Shard shard = shard(key);
+        shard.lock.lock();
+        try {
+            KeyWindow window = shard.windows.get(key);
+            if (window == null) {
+                return new FixedPointStatistics();
+            }
+            window.expire(oldestLiveEpoch(now));
+            if (window.size == 0) {
+                shard.windows.remove(key);
+                keyCount.decrementAndGet();
+                return new FixedPointStatistics();
+            }
+            return window.snapshot();
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * @param amount null when the amount is scaled
+     */
+    private boolean add(String key, long timestamp, BigDecimal amount, long scaledAmount, long now) {
+        long epoch = Math.floorDiv(timestamp, sliceTime);
+        long oldest = oldestLiveEpoch(now);
+        if (epoch < oldest || epoch > Math.floorDiv(now, sliceTime)) {
+            return false;
+        }
+        Shard shard = shard(key);
+        shard.lock.lock();
+        try {
+            KeyWindow window = shard.windows.get(key);
+            if (window == null) {
+                window = new KeyWindow();
+                shard.windows.put(key, window);
+                keyCount.incrementAndGet();
+            } else {
+                window.expire(oldest);
+            }
+            FixedPointStatistics slice = window.slice(epoch);
+            if (amount == null) {
+                slice.accept(scaledAmount);
+            } else {
+                slice.accept(amount);
+            }
+            return true;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the expired slices of every key and drops the keys left empty, one shard at
+     * a time.
+     */
+    public void expire(long now) {
+        long oldest = oldestLiveEpoch(now);
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                Iterator<KeyWindow> windows = shard.windows.values().iterator();
+                while (windows.hasNext()) {
+                    KeyWindow window = windows.next();
+                    window.expire(oldest);
+                    if (window.size == 0) {
+                        windows.remove();
+                        keyCount.decrementAndGet();
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                keyCount.addAndGet(-shard.windows.size());
+                shard.windows.clear();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Number of keys holding transactions, including the ones whose transactions all
+     * expired since the last access or {@link #expire}.
+     */
+    public int getKeyCount() {
+        return keyCount.get();
+    }
+
+    private Shard shard(String key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
+    private long oldestLiveEpoch(long now) {
+        return Math.floorDiv(now - windowTime, sliceTime);
+    }
+
+    private static class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, KeyWindow> windows = new HashMap<>();
+    }
+
+    /**
+     * Non empty slices of one key, sorted by epoch.
+     */
+    private static class KeyWindow {
+        private long[] epochs = new long[1];
+        private FixedPointStatistics[] slices = new FixedPointStatistics[1];
+        private int size = 0;
+
+        /**
+         * @return the slice of the epoch, created when missing
+         */
+        private FixedPointStatistics slice(long epoch) {
+            // Transactions mostly arrive in order, look at the newest slice first
+            int position;
+            if (size > 0 && epochs[size - 1] == epoch) {
+                position = size - 1;
+            } else {
+                position = Arrays.binarySearch(epochs, 0, size, epoch);
+                if (position < 0) {
+                    position = insert(-position - 1, epoch);
+                }
+            }
+            return slices[position];
+        }
+
+        private int insert(int position, long epoch) {
+            if (size == epochs.length) {
+                epochs = Arrays.copyOf(epochs, size * 2);
+                slices = Arrays.copyOf(slices, size * 2);
+            }
+            System.arraycopy(epochs, position, epochs, position + 1, size - position);
+            System.arraycopy(slices, position, slices, position + 1, size - position);
+            epochs[position] = epoch;
+            slices[position] = new FixedPointStatistics();
+            size++;
+            return position;
+        }
+
+        private void expire(long oldestEpoch) {
+            int expired = 0;
+            while (expired < size && epochs[expired] < oldestEpoch) {
+                expired++;
+            }
+            if (expired == 0) {
+                return;
+            }
+            System.arraycopy(epochs, expired, epochs, 0, size - expired);
+            System.arraycopy(slices, expired, slices, 0, size - expired);
+            Arrays.fill(slices, size - expired, size, null);
+            size -= expired;
+        }
+
+        private FixedPointStatistics snapshot() {
+            FixedPointStatistics statistics = new FixedPointStatistics();
+            for (int i = 0; i < size; i++) {
+                statistics.combine(slices[i]);
+            }
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link TimeBucketedWindow} guarded by a single read write lock. Readers only take the
+ * write lock when a slice has to be evicted or the cached snapshot is outdated.
+ */
+public class LockedWindow implements StatisticsWindow {
+
+    private final TimeBucketedWindow window;
+    private final WindowMetrics metrics;
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final Lock readLock = rwLock.readLock();
+    private final Lock writeLock = rwLock.writeLock();
+    private volatile WindowSnapshot snapshot;
+
+    public LockedWindow(long windowTime, long sliceTime) {
+        this(windowTime, sliceTime, WindowMetrics.NONE);
+    }
+
+    public LockedWindow(long windowTime, long sliceTime, WindowMetrics metrics) {
+        this.window = new TimeBucketedWindow(windowTime, sliceTime);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean add(long timestamp, BigDecimal amount, long now) {
+        long acquired = lockWrite();
+        try {
+            return window.add(timestamp, amount, now);
+        } finally {
+            unlockWrite(acquired);
+        }
+    }
+
+    @Override
+    public boolean add(long timestamp, long scaledAmount, long now) {
+        long acquired = lockWrite();
+        try {
+            return window.add(timestamp, scaledAmount, now);
+        } finally {
+            unlockWrite(acquired);
+        }
+    }
+
+    @Override
+    public int addAll(long[] timestamps, BigDecimal[] amounts, int size, long now, boolean[] accepted) {
+        return addAll(timestamps, amounts, null, size, now, accepted);
+    }
+
+    @Override
+    public int addAll(long[] timestamps, long[] scaledAmounts, int size, long now, boolean[] accepted) {
+        return addAll(timestamps, null, scaledAmounts, size, now, accepted);
+    }
+
+    /**
+     * @param amounts null when the amounts are scaled
+     */
+    private int addAll(long[] timestamps, BigDecimal[] amounts, long[] scaledAmounts, int size, long now, boolean[] accepted) {
+        long acquired = lockWrite();
+        try {
+            int added = 0;
+            for (int i = 0; i < size; i++) {
+                boolean accept = amounts == null ? window.add(timestamps[i], scaledAmounts[i], now)
+                        : window.add(timestamps[i], amounts[i], now);
+                if (accepted != null) {
+                    accepted[i] = accept;
+                }
+                if (accept) {
+                    added++;
+                }
+            }
+            return added;
+        } finally {
+            unlockWrite(acquired);
+        }
+    }
+
+    @Override
+    public boolean accepts(long timestamp, long now) {
+        return window.accepts(timestamp, now);
+    }
+
+    @Override
+    public WindowSnapshot snapshot(long now) {
+        readLock.lock();
+        try {
+            WindowSnapshot current = snapshot;
+            if (current != null && current.getVersion() == window.getVersion() && !window.hasExpired(now)) {
+                return current;
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        long acquired = lockWrite();
+        try {
+            expireLocked(now);
+            if (snapshot == null || snapshot.getVersion() != window.getVersion()) {
+                snapshot = new WindowSnapshot(window.getVersion(), window.snapshot(), window.quantiles());
+            }
+            return snapshot;
+        } finally {
+            unlockWrite(acquired);
+        }
+    }
+
+    @Override
+    public void expire(long now) {
+        readLock.lock();
+        try {
+            if (!window.hasExpired(now)) {
+                return;
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        long acquired = lockWrite();
+        try {
+            expireLocked(now);
+        } finally {
+            unlockWrite(acquired);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long acquired = lockWrite();
+        try {
+            window.clear();
+        } finally {
+            unlockWrite(acquired);
+        }
+    }
+
+    @Override
+    public void forEachSlice(SliceVisitor visitor) {
+        readLock.lock();
+        try {
+            window.forEachSlice(visitor);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean restoreSlice(long windowTime, long sliceTime, long epoch, FixedPointStatistics statistics,
+                                QuantileSketch sketch, long now) {
+        if (windowTime != window.getWindowTime() || sliceTime != window.getSliceTime()) {
+            return false;
+        }
+        long acquired = lockWrite();
+        try {
+            return window.restore(epoch, statistics, sketch, now);
+        } finally {
+            unlockWrite(acquired);
+        }
+    }
+
+    private void expireLocked(long now) {
+        long count = window.getCount();
+        if (window.expire(now)) {
+            metrics.expired(count - window.getCount());
+        }
+    }
+
+    /**
+     * @return the time the write lock was acquired at
+     */
+    private long lockWrite() {
+        long start = System.nanoTime();
+        writeLock.lock();
+        long acquired = System.nanoTime();
+        metrics.lockWaited(acquired - start);
+        return acquired;
+    }
+
+    private void unlockWrite(long acquired) {
+        long held = System.nanoTime() - acquired;
+        writeLock.unlock();
+        metrics.lockHeld(held);
+    }
+}
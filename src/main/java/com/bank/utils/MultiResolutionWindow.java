@@ -0,0 +1,231 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Several windows of different lengths fed by the same transactions. Each window slices
+ * time in proportion to its length, so a long window rolls the transactions up into
+ * coarse slices while a short one keeps fine slices, and every window answers reads
+ * from its running totals in O(1).
+ *
+ * The primary window decides which transactions are accepted. It is the one answering
+ * {@link #snapshot(long)}, the others are read with {@link #snapshot(long, long)}.
+ */
+public class MultiResolutionWindow implements StatisticsWindow {
+
+    private final long primaryTime;
+    private final StatisticsWindow primary;
+    private final long[] windowTimes;
+    private final StatisticsWindow[] windows;
+
+    /**
+     * @param windowTimes lengths of the windows in millis, including {@code primaryTime}
+     * @param windows windows of the given lengths, in the same order
+     */
+    public MultiResolutionWindow(long primaryTime, long[] windowTimes, StatisticsWindow[] windows) {
+        if (windowTimes.length != windows.length) {
+            throw new IllegalArgumentException("Expected " + windowTimes.length + " windows, found " + windows.length);
+        }
+        int primaryIndex = -1;
+        for (int i = 0; i < windowTimes.length; i++) {
+            if (windowTimes[i] == primaryTime) {
+                primaryIndex = i;
+            }
+        }
+        if (primaryIndex < 0) {
+            throw new IllegalArgumentException("Missing the primary window of " + primaryTime + "ms");
+        }
+        this.primaryTime = primaryTime;
+        this.primary = windows[primaryIndex];
+        this.windowTimes = windowTimes.clone();
+        this.windows = windows.clone();
+    }
+
+    /**
+     * Slice length giving a window of {@code windowTime} at most {@code maxSlices} slices.
+     */
+    public static long sliceTime(long windowTime, long minSliceTime, long maxSlices) {
+        return Math.max(minSliceTime, (windowTime + maxSlices - 1) / maxSlices);
+    }
+
+    @Override
+    public boolean add(long timestamp, BigDecimal amount, long now) {
+        if (!primary.add(timestamp, amount, now)) {
+            return false;
+        }
+        for (StatisticsWindow window : windows) {
+            if (window != primary) {
+                window.add(timestamp, amount, now);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(long timestamp, long scaledAmount, long now) {
+        if (!primary.add(timestamp, scaledAmount, now)) {
+            return false;
+        }
+        for (StatisticsWindow window : windows) {
+            if (window != primary) {
+                window.add(timestamp, scaledAmount, now);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the transactions to the primary window, then only the ones it accepted to the others.
+     */
+    @Override
+    public int addAll(long[] timestamps, BigDecimal[] amounts, int size, long now, boolean[] accepted) {
+        boolean[] primaryAccepted = accepted == null ? new boolean[size] : accepted;
+        int added = primary.addAll(timestamps, amounts, size, now, primaryAccepted);
+        if (added == 0) {
+            return 0;
+        }
+        long[] acceptedTimestamps = timestamps;
+        BigDecimal[] acceptedAmounts = amounts;
+        if (added < size) {
+            acceptedTimestamps = new long[added];
+            acceptedAmounts = new BigDecimal[added];
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                if (primaryAccepted[i]) {
+                    acceptedTimestamps[j] = timestamps[i];
+                    acceptedAmounts[j] = amounts[i];
+                    j++;
+                }
+            }
+        }
+        for (StatisticsWindow window : windows) {
+            if (window != primary) {
+                window.addAll(acceptedTimestamps, acceptedAmounts, added, now, null);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Same as {@link #addAll(long[], BigDecimal[], int, long, boolean[])} for scaled amounts.
+     */
+    @Override
+    public int addAll(long[] timestamps, long[] scaledAmounts, int size, long now, boolean[] accepted) {
+        boolean[] primaryAccepted = accepted == null ? new boolean[size] : accepted;
+        int added = primary.addAll(timestamps, scaledAmounts, size, now, primaryAccepted);
+        if (added == 0) {
+            return 0;
+        }
+        long[] acceptedTimestamps = timestamps;
+        long[] acceptedAmounts = scaledAmounts;
+        if (added < size) {
+            acceptedTimestamps = new long[added];
+            acceptedAmounts = new long[added];
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                if (primaryAccepted[i]) {
+                    acceptedTimestamps[j] = timestamps[i];
+                    acceptedAmounts[j] = scaledAmounts[i];
+                    j++;
+                }
+            }
+        }
+        for (StatisticsWindow window : windows) {
+            if (window != primary) {
+                window.addAll(acceptedTimestamps, acceptedAmounts, added, now, null);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean accepts(long timestamp, long now) {
+        return primary.accepts(timestamp, now);
+    }
+
+    @Override
+    public WindowSnapshot snapshot(long now) {
+        return primary.snapshot(now);
+    }
+
+    /**
+     * Statistics of the window of the given length.
+     *
+     * @throws IllegalArgumentException when there is no window of that length
+     */
+    public WindowSnapshot snapshot(long windowTime, long now) {
+        return windows[indexOf(windowTime)].snapshot(now);
+    }
+
+    /**
+     * The window of the given length.
+     *
+     * @throws IllegalArgumentException when there is no window of that length
+     */
+    public StatisticsWindow getWindow(long windowTime) {
+        return windows[indexOf(windowTime)];
+    }
+
+    @Override
+    public void expire(long now) {
+        for (StatisticsWindow window : windows) {
+            window.expire(now);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (StatisticsWindow window : windows) {
+            window.clear();
+        }
+    }
+
+    @Override
+    public void forEachSlice(SliceVisitor visitor) {
+        for (StatisticsWindow window : windows) {
+            window.forEachSlice(visitor);
+        }
+    }
+
+    @Override
+    public boolean restoreSlice(long windowTime, long sliceTime, long epoch, FixedPointStatistics statistics,
+                                QuantileSketch sketch, long now) {
+        for (int i = 0; i < windowTimes.length; i++) {
+            if (windowTimes[i] == windowTime) {
+                return windows[i].restoreSlice(windowTime, sliceTime, epoch, statistics, sketch, now);
+            }
+        }
+        return false;
+    }
+
+    public boolean hasWindow(long windowTime) {
+        for (long time : windowTimes) {
+            if (time == windowTime) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return position of the window of the given length, between 0 and the number of windows
+     * @throws IllegalArgumentException when there is no window of that length
+     */
+    public int indexOf(long windowTime) {
+        for (int i = 0; i < windowTimes.length; i++) {
+            if (windowTimes[i] == windowTime) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No window of " + windowTime + "ms, available: " + Arrays.toString(windowTimes));
+    }
+
+    public long getPrimaryTime() {
+        return primaryTime;
+    }
+
+    public long[] getWindowTimes() {
+        return windowTimes.clone();
+    }
+}
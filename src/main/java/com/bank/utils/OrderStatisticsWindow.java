@@ -0,0 +1,361 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Sliding window answering exact order statistics, such as the median or the rank of
+ * an amount, over the transactions it holds. Exact answers can't be pre-aggregated, so
+ * unlike {@link TimeBucketedWindow} each slice keeps the amounts of its transactions,
+ * to remove them from the {@link AmountIndex} when the slice leaves the window.
+ *
+ * Writers don't update the index, they append to one of several buffers, each guarded
+ * by its own lock and picked like the stripes of {@link StripedWindow}. The index is
+ * guarded by a single lock, under which queries and expiry first apply all the buffers.
+ * A writer filling a buffer applies it too, only if the index lock is free, so writers
+ * never wait for each other or for a query.
+ *
+ * Applying a transaction and expiring it cost O(log buckets), queries O(log buckets).
+ * A disabled window keeps nothing and can't be queried.
+ */
+public class OrderStatisticsWindow {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    // Transactions a buffer holds before its writer tries to apply them
+    private static final int BUFFER_SIZE = 1024;
+
+    private final boolean enabled;
+    private final long windowTime;
+    private final long sliceTime;
+    private final long[] epochs;
+    private final Slice[] slices;
+    private final AmountIndex index;
+    private final Buffer[] buffers;
+    private final ReentrantLock lock = new ReentrantLock();
+    // No slice older than this epoch is retained
+    private long oldestEpoch = EMPTY;
+
+    /**
+     * @param buckets one cent buckets of the index, see {@link AmountIndex}
+     */
+    public OrderStatisticsWindow(long windowTime, long sliceTime, int buckets) {
+        this(windowTime, sliceTime, buckets, true);
+    }
+
+    /**
+     * @param enabled false to ignore the transactions, e.g. when nobody queries the window
+     */
+    public OrderStatisticsWindow(long windowTime, long sliceTime, int buckets, boolean enabled) {
+        if (sliceTime <= 0 || windowTime < sliceTime) {
+            throw new IllegalArgumentException("Invalid window " + windowTime + "ms with slices of " + sliceTime + "ms");
+        }
+        this.enabled = enabled;
+        this.windowTime = windowTime;
+        this.sliceTime = sliceTime;
+        int size = (int) ((windowTime + sliceTime - 1) / sliceTime) + 1;
+        this.epochs = new long[size];
+        this.slices = new Slice[size];
+        this.index = enabled ? new AmountIndex(buckets) : null;
+        int concurrency = enabled ? Runtime.getRuntime().availableProcessors() : 1;
+        this.buffers = new Buffer[concurrency <= 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new Buffer();
+        }
+        Arrays.fill(epochs, EMPTY);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return false when the window is disabled or the timestamp is outside of the window at {@code now}
+     */
+    public boolean add(long timestamp, BigDecimal amount, long now) {
+        if (!enabled || !isLive(timestamp, now)) {
+            return false;
+        }
+        Buffer buffer = acquire();
+        try {
+            buffer.add(timestamp, amount);
+            applyIfFull(buffer, now);
+        } finally {
+            buffer.lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * @return number of transactions added
+     */
+    public int addAll(long[] timestamps, BigDecimal[] amounts, int size, long now) {
+        if (!enabled) {
+            return 0;
+        }
+        Buffer buffer = acquire();
+        try {
+            int added = 0;
+            for (int i = 0; i < size; i++) {
+                if (isLive(timestamps[i], now)) {
+                    buffer.add(timestamps[i], amounts[i]);
+                    added++;
+                }
+            }
+            applyIfFull(buffer, now);
+            return added;
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    /**
+     * Runs a query against the index of the amounts in the window at {@code now}. The
+     * index must not escape the query.
+     *
+     * @throws IllegalStateException when the window is disabled
+     */
+    public <T> T query(long now, Function<AmountIndex, T> query) {
+        if (!enabled) {
+            throw new IllegalStateException("Disabled window");
+        }
+        lock.lock();
+        try {
+            applyBuffers(now);
+            return query.apply(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void expire(long now) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            applyBuffers(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (Buffer buffer : buffers) {
+                buffer.lock.lock();
+                try {
+                    buffer.clear();
+                } finally {
+                    buffer.lock.unlock();
+                }
+            }
+            for (int i = 0; i < epochs.length; i++) {
+                if (epochs[i] != EMPTY) {
+                    epochs[i] = EMPTY;
+                    slices[i].clear();
+                }
+            }
+            index.clear();
+            oldestEpoch = EMPTY;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isLive(long timestamp, long now) {
+        long epoch = Math.floorDiv(timestamp, sliceTime);
+        return epoch >= oldestLiveEpoch(now) && epoch <= Math.floorDiv(now, sliceTime);
+    }
+
+    /**
+     * Applies the buffer its writer holds if it is full and the index lock is free.
+     */
+    private void applyIfFull(Buffer buffer, long now) {
+        if (buffer.size >= BUFFER_SIZE && lock.tryLock()) {
+            try {
+                expireLocked(now);
+                apply(buffer, now);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Expires the index and applies every buffer, holding the index lock.
+     */
+    private void applyBuffers(long now) {
+        expireLocked(now);
+        for (Buffer buffer : buffers) {
+            buffer.lock.lock();
+            try {
+                apply(buffer, now);
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+    }
+
+    private void apply(Buffer buffer, long now) {
+        for (int i = 0; i < buffer.size; i++) {
+            addLocked(buffer.timestamps[i], buffer.amounts[i], now);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Adds a buffered transaction, unless it left the window since. The future check was
+     * done by its writer, whose time may be ahead of {@code now}.
+     */
+    private void addLocked(long timestamp, BigDecimal amount, long now) {
+        long epoch = Math.floorDiv(timestamp, sliceTime);
+        if (epoch < oldestLiveEpoch(now)) {
+            return;
+        }
+
+        int position = position(epoch);
+        if (epochs[position] != epoch) {
+            evict(position);
+            epochs[position] = epoch;
+            if (slices[position] == null) {
+                slices[position] = new Slice();
+            }
+        }
+        if (oldestEpoch == EMPTY || epoch < oldestEpoch) {
+            oldestEpoch = epoch;
+        }
+
+        BigDecimal quantized = AmountIndex.quantize(amount);
+        if (FixedPointStatistics.isScalable(quantized)) {
+            long scaledAmount = FixedPointStatistics.toScaled(quantized);
+            slices[position].add(scaledAmount);
+            index.add(scaledAmount);
+        } else {
+            slices[position].add(quantized);
+            index.add(quantized);
+        }
+    }
+
+    /**
+     * Evicts the slices that left the window, visiting only the ones that crossed the
+     * boundary since the previous call.
+     */
+    private void expireLocked(long now) {
+        long newOldest = oldestLiveEpoch(now);
+        if (oldestEpoch == EMPTY || newOldest <= oldestEpoch) {
+            return;
+        }
+        long distance = Math.min(newOldest - oldestEpoch, epochs.length);
+        for (long i = 0; i < distance; i++) {
+            int position = position(oldestEpoch + i);
+            if (epochs[position] != EMPTY && epochs[position] < newOldest) {
+                evict(position);
+            }
+        }
+        oldestEpoch = index.getCount() == 0 ? EMPTY : newOldest;
+    }
+
+    private void evict(int position) {
+        if (epochs[position] == EMPTY) {
+            return;
+        }
+        Slice slice = slices[position];
+        for (int i = 0; i < slice.size; i++) {
+            index.remove(slice.amounts[i]);
+        }
+        if (slice.unscaled != null) {
+            for (BigDecimal amount : slice.unscaled) {
+                index.remove(amount);
+            }
+        }
+        slice.clear();
+        epochs[position] = EMPTY;
+    }
+
+    /**
+     * First epoch whose oldest timestamp is still in the window at {@code now}, like
+     * {@link TimeBucketedWindow}.
+     */
+    private long oldestLiveEpoch(long now) {
+        return -Math.floorDiv(windowTime - now, sliceTime);
+    }
+
+    private int position(long epoch) {
+        return (int) Math.floorMod(epoch, (long) epochs.length);
+    }
+
+    private Buffer acquire() {
+        int mask = buffers.length - 1;
+        int probe = (int) (Thread.currentThread().getId() * 0x9E3779B9L);
+        for (int i = 0; i < buffers.length; i++) {
+            Buffer buffer = buffers[(probe + i) & mask];
+            if (buffer.lock.tryLock()) {
+                return buffer;
+            }
+        }
+        Buffer buffer = buffers[probe & mask];
+        buffer.lock.lock();
+        return buffer;
+    }
+
+    /**
+     * Transactions added since the buffer was last applied.
+     */
+    private static class Buffer {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] timestamps = new long[BUFFER_SIZE];
+        private BigDecimal[] amounts = new BigDecimal[BUFFER_SIZE];
+        private int size = 0;
+
+        private void add(long timestamp, BigDecimal amount) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            timestamps[size] = timestamp;
+            amounts[size] = amount;
+            size++;
+        }
+
+        private void clear() {
+            Arrays.fill(amounts, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * Amounts of the transactions of one slice, scaled when they fit in a long.
+     */
+    private static class Slice {
+        private long[] amounts = new long[4];
+        private int size = 0;
+        private List<BigDecimal> unscaled;
+
+        private void add(long scaledAmount) {
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            amounts[size++] = scaledAmount;
+        }
+
+        private void add(BigDecimal amount) {
+            if (unscaled == null) {
+                unscaled = new ArrayList<>();
+            }
+            unscaled.add(amount);
+        }
+
+        private void clear() {
+            size = 0;
+            unscaled = null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.bank.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with a relative error guarantee, in the style of DDSketch
+ * (Masson, Rim and Lee, VLDB 2019). Amounts are counted in buckets whose bounds grow
+ * geometrically by {@code gamma = (1 + a) / (1 - a)}, where {@code a} is
+ * {@link #RELATIVE_ACCURACY}; bucket {@code i} holds the amounts of absolute value in
+ * {@code (gamma^(i-1), gamma^i]}, negative amounts in their own buckets and zeros apart.
+ *
+ * Error bound: {@link #getQuantile(double)} returns a value within {@code a} of the
+ * exact amount of rank {@code floor(q * (count - 1))}, relative to that amount, e.g.
+ * with 1% the p99 of amounts whose exact p99 is 1000.00 lies in [990.00, 1010.00].
+ * The bound holds whatever the distribution and is kept by {@link #combine} and
+ * {@link #subtract}, which add or remove bucket counts exactly.
+ *
+ * Only the non empty buckets are stored. With 1% accuracy the amounts between 0.01
+ * and 10^16 spread over less than 2300 buckets per sign, so the memory is bounded
+ * whatever the number of amounts. Not thread safe.
+ */
+public class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Buckets of the finite doubles, bounds of what a sketch read from a peer may hold
+    private static final int MIN_INDEX = index(Double.MIN_VALUE);
+    private static final int MAX_INDEX = index(Double.MAX_VALUE);
+
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount = 0l;
+    private long count = 0l;
+
+    public QuantileSketch() {
+    }
+
+    public QuantileSketch(QuantileSketch sketch) {
+        combine(sketch);
+    }
+
+    public void accept(double amount) {
+        if (amount > 0) {
+            positive.add(index(amount), 1l);
+        } else if (amount < 0) {
+            negative.add(index(-amount), 1l);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    public QuantileSketch combine(QuantileSketch sketch) {
+        positive.addAll(sketch.positive, 1l);
+        negative.addAll(sketch.negative, 1l);
+        zeroCount += sketch.zeroCount;
+        count += sketch.count;
+        return this;
+    }
+
+    /**
+     * Removes the amounts of a previously combined sketch.
+     */
+    public void subtract(QuantileSketch sketch) {
+        if (sketch.count == count) {
+            reset();
+            return;
+        }
+        positive.addAll(sketch.positive, -1l);
+        negative.addAll(sketch.negative, -1l);
+        zeroCount -= sketch.zeroCount;
+        count -= sketch.count;
+    }
+
+    public void reset() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0l;
+        count = 0l;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimate of the amount of rank {@code floor(quantile * (count - 1))}, see the
+     * class comment for the error bound.
+     *
+     * @param quantile between 0 and 1
+     * @return {@link Double#NaN} when the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Invalid quantile: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+
+        // Most negative amounts first, they are in the highest buckets
+        for (int i = negative.size - 1; i >= 0; i--) {
+            rank -= negative.counts[i];
+            if (rank < 0) {
+                return -value(negative.indexes[i]);
+            }
+        }
+        rank -= zeroCount;
+        if (rank < 0) {
+            return 0d;
+        }
+        for (int i = 0; i < positive.size; i++) {
+            rank -= positive.counts[i];
+            if (rank < 0) {
+                return value(positive.indexes[i]);
+            }
+        }
+        return value(positive.indexes[positive.size - 1]);
+    }
+
+    /**
+     * Writes the non empty buckets in a compact binary form, read back by {@link #readFrom}.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(zeroCount);
+        positive.writeTo(out);
+        negative.writeTo(out);
+    }
+
+    /**
+     * @throws IOException when the input is not a sketch written by {@link #writeTo},
+     * it may come from a peer
+     */
+    public static QuantileSketch readFrom(DataInput in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.zeroCount = in.readLong();
+        if (sketch.zeroCount < 0) {
+            throw new IOException("Invalid zero count " + sketch.zeroCount);
+        }
+        long positive = sketch.positive.readFrom(in);
+        long negative = sketch.negative.readFrom(in);
+        if (positive > Long.MAX_VALUE - sketch.zeroCount || negative > Long.MAX_VALUE - sketch.zeroCount - positive) {
+            throw new IOException("Sketch count overflows");
+        }
+        sketch.count = sketch.zeroCount + positive + negative;
+        return sketch;
+    }
+
+    private static int index(double amount) {
+        return (int) Math.ceil(Math.log(amount) / LOG_GAMMA);
+    }
+
+    /**
+     * Point of the bucket at the same relative distance from both of its bounds.
+     */
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    /**
+     * Non empty buckets sorted by index.
+     */
+    private static class Buckets {
+        private int[] indexes = new int[0];
+        private long[] counts = new long[0];
+        private int size = 0;
+
+        private void add(int index, long delta) {
+            int position = Arrays.binarySearch(indexes, 0, size, index);
+            if (position >= 0) {
+                counts[position] += delta;
+                if (counts[position] == 0) {
+                    remove(position);
+                }
+                return;
+            }
+            insert(-position - 1, index, delta);
+        }
+
+        private void addAll(Buckets buckets, long sign) {
+            for (int i = 0; i < buckets.size; i++) {
+                add(buckets.indexes[i], sign * buckets.counts[i]);
+            }
+        }
+
+        private void insert(int position, int index, long count) {
+            if (size == indexes.length) {
+                int capacity = Math.max(4, size * 2);
+                indexes = Arrays.copyOf(indexes, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            System.arraycopy(indexes, position, indexes, position + 1, size - position);
+            System.arraycopy(counts, position, counts, position + 1, size - position);
+            indexes[position] = index;
+            counts[position] = count;
+            size++;
+        }
+
+        private void remove(int position) {
+            System.arraycopy(indexes, position + 1, indexes, position, size - position - 1);
+            System.arraycopy(counts, position + 1, counts, position, size - position - 1);
+            size--;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void writeTo(DataOutput out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(indexes[i]);
+                out.writeLong(counts[i]);
+            }
+        }
+
+        /**
+         * Checks what {@link #writeTo} guarantees: at most one bucket per index of a
+         * finite double, indexes strictly increasing and counts positive.
+         *
+         * @return the total count of the buckets read
+         */
+        private long readFrom(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_INDEX - MIN_INDEX + 1) {
+                throw new IOException("Invalid number of buckets " + length);
+            }
+            indexes = new int[length];
+            counts = new long[length];
+            size = 0;
+            long total = 0l;
+            for (int i = 0; i < length; i++) {
+                indexes[i] = in.readInt();
+                counts[i] = in.readLong();
+                if (indexes[i] < MIN_INDEX || indexes[i] > MAX_INDEX || (i > 0 && indexes[i] <= indexes[i - 1])) {
+                    throw new IOException("Invalid bucket index " + indexes[i]);
+                }
+                if (counts[i] <= 0 || total + counts[i] < 0) {
+                    throw new IOException("Invalid bucket count " + counts[i]);
+                }
+                total += counts[i];
+            }
+            size = length;
+            return total;
+        }
+    }
+}
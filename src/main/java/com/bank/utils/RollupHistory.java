@@ -0,0 +1,288 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count, sum, min and max of the transactions per slice of time, kept long after they
+ * left the windows, e.g. per second for an hour and per minute for a day. Each
+ * resolution is a ring of slots held in primitive arrays and indexed by the epoch of
+ * the slice, a slot being recycled when a newer slice lands on it, so the memory is
+ * fixed whatever the traffic.
+ *
+ * Amounts are rolled up as longs scaled by {@link FixedPointStatistics#SCALE}, rounded
+ * half up when they have more decimals. An amount whose slot sum would overflow a long
+ * is left out of the history. Queries merge the slots of the coarsest resolution
+ * dividing the step with {@link FixedPointStatistics#combineScaled}, never transactions.
+ *
+ * Writers are spread over stripes in the style of {@link StripedWindow}, each holding
+ * its own rings under its own lock, and move to another stripe when theirs is
+ * contended. Queries merge the slots of every stripe, so the memory is fixed per stripe.
+ */
+public class RollupHistory {
+
+    private final Stripe[] stripes;
+
+    /**
+     * @param sliceTimes lengths of the slices of each resolution in millis, ascending
+     * @param retentions millis kept at each resolution, multiples of the slice lengths
+     */
+    public RollupHistory(long[] sliceTimes, long[] retentions) {
+        this(sliceTimes, retentions, Runtime.getRuntime().availableProcessors());
+    }
+
+    public RollupHistory(long[] sliceTimes, long[] retentions, int concurrency) {
+        if (sliceTimes.length != retentions.length || sliceTimes.length == 0) {
+            throw new IllegalArgumentException("Expected one retention per slice time");
+        }
+        for (int i = 0; i < sliceTimes.length; i++) {
+            if (sliceTimes[i] <= 0 || retentions[i] % sliceTimes[i] != 0 || retentions[i] / sliceTimes[i] > Integer.MAX_VALUE
+                    || (i > 0 && sliceTimes[i] <= sliceTimes[i - 1])) {
+                throw new IllegalArgumentException("Invalid retention of " + retentions[i] + "ms for slices of " + sliceTimes[i] + "ms");
+            }
+        }
+        int size = concurrency <= 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+        stripes = new Stripe[size];
+        for (int s = 0; s < size; s++) {
+            Rollups[] resolutions = new Rollups[sliceTimes.length];
+            for (int i = 0; i < sliceTimes.length; i++) {
+                resolutions[i] = new Rollups(sliceTimes[i], (int) (retentions[i] / sliceTimes[i]));
+            }
+            stripes[s] = new Stripe(resolutions);
+        }
+    }
+
+    /**
+     * @return false when the amount was left out of a resolution, see the class comment
+     */
+    public boolean add(long timestamp, BigDecimal amount) {
+        long scaled = scale(amount);
+        if (scaled == Long.MIN_VALUE) {
+            return false;
+        }
+        return add(timestamp, scaled);
+    }
+
+    /**
+     * Same as {@link #add(long, BigDecimal)} for an amount scaled by {@link FixedPointStatistics#SCALE}.
+     */
+    public boolean add(long timestamp, long scaledAmount) {
+        Stripe stripe = acquire();
+        try {
+            return stripe.add(timestamp, scaledAmount);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the first {@code size} transactions under the lock of a single stripe.
+     *
+     * @return number of transactions added
+     */
+    public int addAll(long[] timestamps, BigDecimal[] amounts, int size) {
+        long[] scaled = new long[size];
+        for (int i = 0; i < size; i++) {
+            scaled[i] = scale(amounts[i]);
+        }
+        return addAll(timestamps, scaled, size);
+    }
+
+    /**
+     * Same as {@link #addAll(long[], BigDecimal[], int)} for amounts scaled by
+     * {@link FixedPointStatistics#SCALE}, leaving out the ones of {@code Long.MIN_VALUE}.
+     */
+    public int addAll(long[] timestamps, long[] scaledAmounts, int size) {
+        int added = 0;
+        Stripe stripe = acquire();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (scaledAmounts[i] != Long.MIN_VALUE && stripe.add(timestamps[i], scaledAmounts[i])) {
+                    added++;
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Statistics of each step of {@code [from, from + steps * step)}, merged from the slots
+     * of the coarsest resolution whose slice divides the step and that still holds
+     * {@code from} at {@code now}, the longest kept one when none does. Slices no longer
+     * retained count as empty.
+     *
+     * @throws IllegalArgumentException when no resolution divides the step
+     */
+    public FixedPointStatistics[] query(long from, long step, int steps, long now) {
+        int resolution = resolution(from, step, now);
+        Rollups rollups = stripes[0].resolutions[resolution];
+        FixedPointStatistics[] points = new FixedPointStatistics[steps];
+        for (int i = 0; i < steps; i++) {
+            points[i] = new FixedPointStatistics();
+        }
+        long slicesPerStep = step / rollups.sliceTime;
+        long first = Math.floorDiv(from, rollups.sliceTime);
+        long last = first + steps * slicesPerStep;
+        long newest = Math.floorDiv(now, rollups.sliceTime);
+        long oldest = newest - rollups.size + 1;
+        for (Stripe stripe : stripes) {
+            Rollups slots = stripe.resolutions[resolution];
+            stripe.lock.lock();
+            try {
+                for (long epoch = Math.max(first, oldest); epoch < last && epoch <= newest; epoch++) {
+                    int slot = slots.slot(epoch);
+                    if (slots.epochs[slot] == epoch) {
+                        points[(int) ((epoch - first) / slicesPerStep)].combineScaled(slots.counts[slot], slots.sums[slot],
+                                slots.mins[slot], slots.maxs[slot]);
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return points;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (Rollups rollups : stripe.resolutions) {
+                    rollups.clear();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the position of the resolution, the same in every stripe
+     */
+    private int resolution(long from, long step, long now) {
+        Rollups[] resolutions = stripes[0].resolutions;
+        int longest = -1;
+        for (int i = resolutions.length - 1; i >= 0; i--) {
+            Rollups rollups = resolutions[i];
+            if (step <= 0 || step % rollups.sliceTime != 0) {
+                continue;
+            }
+            if (Math.floorDiv(from, rollups.sliceTime) > Math.floorDiv(now, rollups.sliceTime) - rollups.size) {
+                return i;
+            }
+            if (longest == -1 || resolutions[longest].getRetention() < rollups.getRetention()) {
+                longest = i;
+            }
+        }
+        if (longest == -1) {
+            throw new IllegalArgumentException("Step of " + step + "ms is not a multiple of the history slices");
+        }
+        return longest;
+    }
+
+    private Stripe acquire() {
+        int mask = stripes.length - 1;
+        int probe = (int) (Thread.currentThread().getId() * 0x9E3779B9L);
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(probe + i) & mask];
+            if (stripe.lock.tryLock()) {
+                return stripe;
+            }
+        }
+        Stripe stripe = stripes[probe & mask];
+        stripe.lock.lock();
+        return stripe;
+    }
+
+    /**
+     * @return the amount scaled, {@code Long.MIN_VALUE} when it doesn't fit a long
+     */
+    private static long scale(BigDecimal amount) {
+        if (!FixedPointStatistics.isScalable(amount)) {
+            amount = amount.setScale(FixedPointStatistics.SCALE, BigDecimal.ROUND_HALF_UP);
+            if (!FixedPointStatistics.isScalable(amount)) {
+                return Long.MIN_VALUE;
+            }
+        }
+        return FixedPointStatistics.toScaled(amount);
+    }
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Rollups[] resolutions;
+
+        private Stripe(Rollups[] resolutions) {
+            this.resolutions = resolutions;
+        }
+
+        private boolean add(long timestamp, long scaled) {
+            boolean added = true;
+            for (Rollups rollups : resolutions) {
+                added &= rollups.add(timestamp, scaled);
+            }
+            return added;
+        }
+    }
+
+    private static class Rollups {
+        private final long sliceTime;
+        private final int size;
+        private final long[] epochs;
+        private final long[] counts;
+        private final long[] sums;
+        private final long[] mins;
+        private final long[] maxs;
+
+        private Rollups(long sliceTime, int size) {
+            this.sliceTime = sliceTime;
+            this.size = size;
+            this.epochs = new long[size];
+            this.counts = new long[size];
+            this.sums = new long[size];
+            this.mins = new long[size];
+            this.maxs = new long[size];
+            clear();
+        }
+
+        private boolean add(long timestamp, long amount) {
+            long epoch = Math.floorDiv(timestamp, sliceTime);
+            int slot = slot(epoch);
+            if (epochs[slot] != epoch) {
+                if (epochs[slot] > epoch) {
+                    // Older than the retention
+                    return false;
+                }
+                epochs[slot] = epoch;
+                counts[slot] = 0l;
+                sums[slot] = 0l;
+                mins[slot] = Long.MAX_VALUE;
+                maxs[slot] = Long.MIN_VALUE;
+            }
+            long sum = sums[slot] + amount;
+            if (((sums[slot] ^ sum) & (amount ^ sum)) < 0) {
+                return false;
+            }
+            sums[slot] = sum;
+            if (mins[slot] > amount) mins[slot] = amount;
+            if (maxs[slot] < amount) maxs[slot] = amount;
+            counts[slot]++;
+            return true;
+        }
+
+        private int slot(long epoch) {
+            return (int) Math.floorMod(epoch, (long) size);
+        }
+
+        private long getRetention() {
+            return sliceTime * size;
+        }
+
+        private void clear() {
+            Arrays.fill(epochs, Long.MIN_VALUE);
+            Arrays.fill(counts, 0l);
+        }
+    }
+}
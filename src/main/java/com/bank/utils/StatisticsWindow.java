@@ -0,0 +1,71 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Thread safe sliding window of transaction amounts.
+ */
+public interface StatisticsWindow {
+
+    /**
+     * @return false when the timestamp is outside of the window at {@code now}
+     */
+    boolean add(long timestamp, BigDecimal amount, long now);
+
+    /**
+     * Same as {@link #add(long, BigDecimal, long)} for an amount scaled by
+     * {@link FixedPointStatistics#SCALE}, without any {@link BigDecimal}.
+     */
+    boolean add(long timestamp, long scaledAmount, long now);
+
+    /**
+     * Adds the first {@code size} amounts in a single step, at most one lock acquisition.
+     *
+     * @param accepted set to whether each amount was added, null when not needed
+     * @return the number of amounts added, the others were outside of the window at {@code now}
+     */
+    int addAll(long[] timestamps, BigDecimal[] amounts, int size, long now, boolean[] accepted);
+
+    /**
+     * Same as {@link #addAll(long[], BigDecimal[], int, long, boolean[])} for amounts
+     * scaled by {@link FixedPointStatistics#SCALE}.
+     */
+    int addAll(long[] timestamps, long[] scaledAmounts, int size, long now, boolean[] accepted);
+
+    /**
+     * Tells whether a transaction of the given timestamp is in the window at {@code now},
+     * without any lock or change, e.g. to decide its admission before adding it.
+     */
+    boolean accepts(long timestamp, long now);
+
+    /**
+     * Statistics of the transactions still in the window at {@code now}.
+     */
+    WindowSnapshot snapshot(long now);
+
+    /**
+     * Evicts the transactions that left the window at {@code now}.
+     */
+    void expire(long now);
+
+    void clear();
+
+    /**
+     * Visits the non empty slices, e.g. to checkpoint them, holding the locks of the
+     * window. The arguments belong to the window, the visitor copies what it keeps.
+     */
+    void forEachSlice(SliceVisitor visitor);
+
+    /**
+     * Merges a whole slice, e.g. read from a checkpoint, into the window of the given
+     * length and slicing.
+     *
+     * @return false when there is no such window or the slice left it at {@code now}
+     */
+    boolean restoreSlice(long windowTime, long sliceTime, long epoch, FixedPointStatistics statistics,
+                         QuantileSketch sketch, long now);
+
+    interface SliceVisitor {
+        void visit(long windowTime, long sliceTime, long epoch, FixedPointStatistics statistics, QuantileSketch sketch);
+    }
+}
@@ -0,0 +1,391 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Window striped in the style of {@link java.util.concurrent.atomic.LongAdder}: writers
+ * are spread over several {@link TimeBucketedWindow}s, each guarded by its own lock, and
+ * move to another stripe when theirs is contended, so ingestion scales with the cores.
+ *
+ * After every change a stripe publishes an immutable summary which readers merge with
+ * {@link FixedPointStatistics#combine}, without waiting for the writers, along with a
+ * copy of each slice it changed. A stripe whose summary holds expired slices is
+ * refreshed by the reader only if its lock is free, otherwise the reader combines the
+ * published slices still in the window. Like {@code LongAdder.sum()}, a snapshot is not
+ * atomic with respect to concurrent writes, but its statistics never count an expired
+ * transaction.
+ *
+ * Quantile sketches are too large to copy on every write, so they are only published
+ * by readers: a reader copies the sketch of the stripes changed since the previous read
+ * if their lock is free, otherwise it uses the sketch copied last, behind by the writes
+ * of the writer holding the lock. Readers never wait for a stripe lock.
+ */
+public class StripedWindow implements StatisticsWindow {
+
+    private final Stripe[] stripes;
+    private final WindowMetrics metrics;
+    private final AtomicLong versions = new AtomicLong();
+    private volatile Merged merged;
+
+    public StripedWindow(long windowTime, long sliceTime) {
+        this(windowTime, sliceTime, Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedWindow(long windowTime, long sliceTime, int concurrency) {
+        this(windowTime, sliceTime, concurrency, WindowMetrics.NONE);
+    }
+
+    public StripedWindow(long windowTime, long sliceTime, int concurrency, WindowMetrics metrics) {
+        this.metrics = metrics;
+        int size = concurrency <= 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+        stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe(new TimeBucketedWindow(windowTime, sliceTime));
+        }
+    }
+
+    @Override
+    public boolean add(long timestamp, BigDecimal amount, long now) {
+        return add(timestamp, amount, 0l, now);
+    }
+
+    @Override
+    public boolean add(long timestamp, long scaledAmount, long now) {
+        return add(timestamp, null, scaledAmount, now);
+    }
+
+    @Override
+    public int addAll(long[] timestamps, BigDecimal[] amounts, int size, long now, boolean[] accepted) {
+        return addAll(timestamps, amounts, null, size, now, accepted);
+    }
+
+    @Override
+    public int addAll(long[] timestamps, long[] scaledAmounts, int size, long now, boolean[] accepted) {
+        return addAll(timestamps, null, scaledAmounts, size, now, accepted);
+    }
+
+    /**
+     * @param amount null when the amount is scaled
+     */
+    private boolean add(long timestamp, BigDecimal amount, long scaledAmount, long now) {
+        long start = System.nanoTime();
+        Stripe stripe = acquire();
+        long acquired = System.nanoTime();
+        metrics.lockWaited(acquired - start);
+        try {
+            expire(stripe, now);
+            boolean added = amount == null ? stripe.window.add(timestamp, scaledAmount, now) : stripe.window.add(timestamp, amount, now);
+            if (added) {
+                stripe.publishSlice(timestamp);
+            }
+            stripe.publish();
+            return added;
+        } finally {
+            release(stripe, acquired);
+        }
+    }
+
+    /**
+     * @param amounts null when the amounts are scaled
+     */
+    private int addAll(long[] timestamps, BigDecimal[] amounts, long[] scaledAmounts, int size, long now, boolean[] accepted) {
+        long start = System.nanoTime();
+        Stripe stripe = acquire();
+        long acquired = System.nanoTime();
+        metrics.lockWaited(acquired - start);
+        try {
+            expire(stripe, now);
+            int added = 0;
+            long sliceTime = stripe.window.getSliceTime();
+            // Published once per run of transactions of the same slice
+            long pending = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                boolean accept = amounts == null ? stripe.window.add(timestamps[i], scaledAmounts[i], now)
+                        : stripe.window.add(timestamps[i], amounts[i], now);
+                if (accepted != null) {
+                    accepted[i] = accept;
+                }
+                if (accept) {
+                    added++;
+                    if (pending != Long.MIN_VALUE && Math.floorDiv(pending, sliceTime) != Math.floorDiv(timestamps[i], sliceTime)) {
+                        stripe.publishSlice(pending);
+                    }
+                    pending = timestamps[i];
+                }
+            }
+            if (pending != Long.MIN_VALUE) {
+                stripe.publishSlice(pending);
+            }
+            stripe.publish();
+            return added;
+        } finally {
+            release(stripe, acquired);
+        }
+    }
+
+    /**
+     * Same for every stripe, decided from the window length and slicing alone.
+     */
+    @Override
+    public boolean accepts(long timestamp, long now) {
+        return stripes[0].window.accepts(timestamp, now);
+    }
+
+    @Override
+    public WindowSnapshot snapshot(long now) {
+        Summary[] summaries = new Summary[stripes.length];
+        // Statistics of the stripes whose summary expired while a writer held their lock
+        FixedPointStatistics[] live = null;
+        // Whether every summary is up to date, sketch included
+        boolean current = true;
+        long version = 0l;
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            Summary summary = stripe.published;
+            if ((summary.quantilesVersion != summary.version || now >= summary.expiry) && stripe.lock.tryLock()) {
+                try {
+                    expire(stripe, now);
+                    stripe.publish(true);
+                    summary = stripe.published;
+                } finally {
+                    stripe.lock.unlock();
+                }
+            } else if (now >= summary.expiry) {
+                if (live == null) {
+                    live = new FixedPointStatistics[stripes.length];
+                }
+                live[i] = stripe.liveStatistics(now);
+            }
+            current &= summary.quantilesVersion == summary.version && live == null;
+            summaries[i] = summary;
+            version += summary.version;
+        }
+
+        // Summaries only change along with their version, a snapshot of outdated ones
+        // would be replaced by the next read and is never reused
+        Merged previous = merged;
+        if (current && previous != null && previous.version == version) {
+            return previous.snapshot;
+        }
+
+        FixedPointStatistics statistics = new FixedPointStatistics();
+        QuantileSketch quantiles = new QuantileSketch();
+        for (int i = 0; i < summaries.length; i++) {
+            statistics.combine(live != null && live[i] != null ? live[i] : summaries[i].statistics);
+            quantiles.combine(summaries[i].quantiles);
+        }
+        WindowSnapshot snapshot = new WindowSnapshot(versions.incrementAndGet(), statistics, quantiles);
+        if (current) {
+            merged = new Merged(version, snapshot);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void expire(long now) {
+        for (Stripe stripe : stripes) {
+            if (now < stripe.published.expiry) {
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                if (expire(stripe, now)) {
+                    stripe.publish();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.window.clear();
+                stripe.clearSlices();
+                stripe.publish();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void forEachSlice(SliceVisitor visitor) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.window.forEachSlice(visitor);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Restores into the first stripe, the slices of the same epoch visited in each
+     * stripe are merged back into one.
+     */
+    @Override
+    public boolean restoreSlice(long windowTime, long sliceTime, long epoch, FixedPointStatistics statistics,
+                                QuantileSketch sketch, long now) {
+        Stripe stripe = stripes[0];
+        if (windowTime != stripe.window.getWindowTime() || sliceTime != stripe.window.getSliceTime()) {
+            return false;
+        }
+        stripe.lock.lock();
+        try {
+            boolean restored = stripe.window.restore(epoch, statistics, sketch, now);
+            if (restored) {
+                stripe.publishSlice(epoch * sliceTime);
+            }
+            stripe.publish();
+            return restored;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    private boolean expire(Stripe stripe, long now) {
+        long count = stripe.window.getCount();
+        if (stripe.window.expire(now)) {
+            metrics.expired(count - stripe.window.getCount());
+            return true;
+        }
+        return false;
+    }
+
+    private void release(Stripe stripe, long acquired) {
+        long held = System.nanoTime() - acquired;
+        stripe.lock.unlock();
+        metrics.lockHeld(held);
+    }
+
+    private Stripe acquire() {
+        int mask = stripes.length - 1;
+        int probe = (int) (Thread.currentThread().getId() * 0x9E3779B9L);
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[(probe + i) & mask];
+            if (stripe.lock.tryLock()) {
+                return stripe;
+            }
+        }
+        Stripe stripe = stripes[probe & mask];
+        stripe.lock.lock();
+        return stripe;
+    }
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TimeBucketedWindow window;
+        // Copies of the slices, at the position of their epoch in the ring of the window
+        private final AtomicReferenceArray<PublishedSlice> slices;
+        private volatile Summary published;
+
+        private Stripe(TimeBucketedWindow window) {
+            this.window = window;
+            this.slices = new AtomicReferenceArray<>(window.getRingSize());
+            publish(true);
+        }
+
+        /**
+         * Publishes a copy of the slice holding the timestamp, made visible to the readers
+         * by the next summary.
+         */
+        private void publishSlice(long timestamp) {
+            long epoch = Math.floorDiv(timestamp, window.getSliceTime());
+            FixedPointStatistics statistics = window.copySlice(epoch);
+            if (statistics != null) {
+                slices.lazySet((int) Math.floorMod(epoch, (long) slices.length()), new PublishedSlice(epoch, statistics));
+            }
+        }
+
+        private void clearSlices() {
+            for (int i = 0; i < slices.length(); i++) {
+                slices.lazySet(i, null);
+            }
+        }
+
+        /**
+         * Statistics of the published slices still in the window at {@code now}, read
+         * without the lock.
+         */
+        private FixedPointStatistics liveStatistics(long now) {
+            long oldest = window.oldestLiveEpoch(now);
+            FixedPointStatistics statistics = new FixedPointStatistics();
+            for (int i = 0; i < slices.length(); i++) {
+                PublishedSlice slice = slices.get(i);
+                if (slice != null && slice.epoch >= oldest) {
+                    statistics.combine(slice.statistics);
+                }
+            }
+            return statistics;
+        }
+
+        private void publish() {
+            publish(false);
+        }
+
+        /**
+         * @param withQuantiles whether to copy the quantile sketch, otherwise the one
+         * published before is kept
+         */
+        private void publish(boolean withQuantiles) {
+            long version = window.getVersion();
+            if (withQuantiles || published == null) {
+                published = new Summary(version, window.snapshot(), window.nextExpiry(), window.quantiles(), version);
+            } else {
+                published = new Summary(version, window.snapshot(), window.nextExpiry(), published.quantiles,
+                        published.quantilesVersion);
+            }
+        }
+    }
+
+    private static class PublishedSlice {
+        private final long epoch;
+        private final FixedPointStatistics statistics;
+
+        private PublishedSlice(long epoch, FixedPointStatistics statistics) {
+            this.epoch = epoch;
+            this.statistics = statistics;
+        }
+    }
+
+    private static class Merged {
+        // Sum of the versions of the summaries merged
+        private final long version;
+        private final WindowSnapshot snapshot;
+
+        private Merged(long version, WindowSnapshot snapshot) {
+            this.version = version;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static class Summary {
+        private final long version;
+        private final FixedPointStatistics statistics;
+        private final long expiry;
+        // Sketch copied last, at the version quantilesVersion of the window
+        private final QuantileSketch quantiles;
+        private final long quantilesVersion;
+
+        private Summary(long version, FixedPointStatistics statistics, long expiry, QuantileSketch quantiles,
+                        long quantilesVersion) {
+            this.version = version;
+            this.statistics = statistics;
+            this.expiry = expiry;
+            this.quantiles = quantiles;
+            this.quantilesVersion = quantilesVersion;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.bank.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Sliding time window split into slices of {@code sliceTime} millis kept in a ring.
+ * Each slice holds the pre-aggregated {@link FixedPointStatistics} of the transactions
+ * whose timestamp falls into it and the window keeps running totals over all of them, so inserts and
+ * evictions cost O(1) whatever the number of transactions in the window. Min and max
+ * can't be subtracted, they are recomputed from the slices only when a slice holding
+ * one of them is evicted. Each slice also keeps a {@link QuantileSketch} of its amounts,
+ * whose bucket counts are added to and subtracted from a running sketch the same way.
+ *
+ * Admission is decided by the exact age of the transaction, at most {@code windowTime}.
+ * A slice leaves the window as soon as its oldest possible timestamp does, so expiry is
+ * precise to one slice: an admitted transaction may be dropped up to a slice early, an
+ * expired one is never reported. Not thread safe, callers are expected to guard access.
+ */
+public class TimeBucketedWindow {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final double SCALE_FACTOR = Math.pow(10, FixedPointStatistics.SCALE);
+
+    private final long windowTime;
+    private final long sliceTime;
+    private final long[] epochs;
+    private final FixedPointStatistics[] slices;
+    private final QuantileSketch[] sketches;
+
+    private long oldestEpoch = EMPTY;
+    private long oldestRetainedEpoch = EMPTY;
+    private long version = 0l;
+
+    private final FixedPointStatistics totals = new FixedPointStatistics();
+    private boolean staleExtremes = false;
+    private FixedPointStatistics snapshot;
+    private final QuantileSketch totalSketch = new QuantileSketch();
+    private QuantileSketch quantiles;
+
+    public TimeBucketedWindow(long windowTime, long sliceTime) {
+        if (sliceTime <= 0 || windowTime < sliceTime) {
+            throw new IllegalArgumentException("Invalid window " + windowTime + "ms with slices of " + sliceTime + "ms");
+        }
+        this.windowTime = windowTime;
+        this.sliceTime = sliceTime;
+        int size = (int) ((windowTime + sliceTime - 1) / sliceTime) + 1;
+        this.epochs = new long[size];
+        this.slices = new FixedPointStatistics[size];
+        this.sketches = new QuantileSketch[size];
+        Arrays.fill(epochs, EMPTY);
+    }
+
+    /**
+     * Adds an amount to the slice of the given timestamp, unless the slice already left
+     * the window.
+     *
+     * @return false when the timestamp is outside of the window at {@code now}, see {@link #accepts}
+     */
+    public boolean add(long timestamp, BigDecimal amount, long now) {
+        if (FixedPointStatistics.isScalable(amount)) {
+            return add(timestamp, FixedPointStatistics.toScaled(amount), now);
+        }
+        if (!accepts(timestamp, now)) {
+            return false;
+        }
+        int index = slice(timestamp, now);
+        if (index < 0) {
+            // Admitted, but dropped with its slice
+            return true;
+        }
+        slices[index].accept(amount);
+        totals.accept(amount);
+        sketches[index].accept(amount.doubleValue());
+        totalSketch.accept(amount.doubleValue());
+        changed();
+        return true;
+    }
+
+    /**
+     * Adds an amount scaled by {@link FixedPointStatistics#SCALE} to the slice of the
+     * given timestamp, unless the slice already left the window.
+     *
+     * @return false when the timestamp is outside of the window at {@code now}, see {@link #accepts}
+     */
+    public boolean add(long timestamp, long scaledAmount, long now) {
+        if (!accepts(timestamp, now)) {
+            return false;
+        }
+        int index = slice(timestamp, now);
+        if (index < 0) {
+            // Admitted, but dropped with its slice
+            return true;
+        }
+        slices[index].accept(scaledAmount);
+        totals.accept(scaledAmount);
+        double amount = scaledAmount / SCALE_FACTOR;
+        sketches[index].accept(amount);
+        totalSketch.accept(amount);
+        changed();
+        return true;
+    }
+
+    /**
+     * Evicts the slices that left the window since the previous call. Only the slices
+     * that crossed the boundary are visited.
+     *
+     * @return true when a non empty slice was evicted
+     */
+    public boolean expire(long now) {
+        long newOldest = oldestLiveEpoch(now);
+        if (oldestEpoch != EMPTY && newOldest <= oldestEpoch) {
+            return false;
+        }
+
+        boolean evicted = false;
+        if (hasExpired(now)) {
+            long start = oldestEpoch == EMPTY ? oldestRetainedEpoch : Math.max(oldestEpoch, oldestRetainedEpoch);
+            long distance = Math.min(newOldest - start, epochs.length);
+            for (long i = 0; i < distance; i++) {
+                int index = index(start + i);
+                if (epochs[index] != EMPTY && epochs[index] < newOldest) {
+                    evict(index);
+                    evicted = true;
+                }
+            }
+            oldestRetainedEpoch = findOldestRetained(newOldest);
+        }
+        oldestEpoch = newOldest;
+
+        if (evicted) {
+            changed();
+        }
+        return evicted;
+    }
+
+    /**
+     * Tells whether some retained slice left the window at {@code now}, without
+     * modifying the window.
+     */
+    public boolean hasExpired(long now) {
+        return now >= nextExpiry();
+    }
+
+    /**
+     * Earliest time at which a retained slice leaves the window, {@link Long#MAX_VALUE}
+     * when the window is empty.
+     */
+    public long nextExpiry() {
+        return totals.getCount() == 0 ? Long.MAX_VALUE : oldestRetainedEpoch * sliceTime + windowTime + 1;
+    }
+
+    /**
+     * Tells whether the transaction is admitted at {@code now}, by its exact age whatever
+     * the slices: not in the future and at most {@code windowTime} old.
+     */
+    public boolean accepts(long timestamp, long now) {
+        return timestamp <= now && now - timestamp <= windowTime;
+    }
+
+    /**
+     * First epoch whose oldest timestamp is still in the window at {@code now}.
+     */
+    public long oldestLiveEpoch(long now) {
+        return -Math.floorDiv(windowTime - now, sliceTime);
+    }
+
+    /**
+     * Statistics of all the retained slices. The result is cached until the window
+     * changes and must not be modified by the caller.
+     */
+    public FixedPointStatistics snapshot() {
+        if (snapshot == null) {
+            if (staleExtremes) {
+                recomputeExtremes();
+            }
+            snapshot = new FixedPointStatistics(totals);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Quantile sketch of all the retained slices. The result is cached until the window
+     * changes and must not be modified by the caller.
+     */
+    public QuantileSketch quantiles() {
+        if (quantiles == null) {
+            quantiles = new QuantileSketch(totalSketch);
+        }
+        return quantiles;
+    }
+
+    /**
+     * Copy of the statistics of the slice of the given epoch, null when it is not retained.
+     */
+    public FixedPointStatistics copySlice(long epoch) {
+        int index = index(epoch);
+        return epochs[index] == epoch ? new FixedPointStatistics(slices[index]) : null;
+    }
+
+    /**
+     * Visits the retained slices, in no particular order.
+     */
+    public void forEachSlice(StatisticsWindow.SliceVisitor visitor) {
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] != EMPTY && slices[i].getCount() > 0) {
+                visitor.visit(windowTime, sliceTime, epochs[i], slices[i], sketches[i]);
+            }
+        }
+    }
+
+    /**
+     * Merges the statistics and sketch of a whole slice, e.g. read from a checkpoint.
+     *
+     * @return false when the slice is outside of the window at {@code now} or has
+     * already been evicted
+     */
+    public boolean restore(long epoch, FixedPointStatistics statistics, QuantileSketch sketch, long now) {
+        if (statistics.getCount() == 0) {
+            return false;
+        }
+        int index = slice(epoch * sliceTime, now);
+        if (index < 0) {
+            return false;
+        }
+        slices[index].combine(statistics);
+        totals.combine(statistics);
+        sketches[index].combine(sketch);
+        totalSketch.combine(sketch);
+        changed();
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] != EMPTY) {
+                epochs[i] = EMPTY;
+                slices[i].reset();
+                sketches[i].reset();
+            }
+        }
+        totals.reset();
+        totalSketch.reset();
+        staleExtremes = false;
+        changed();
+    }
+
+    /**
+     * Counter increased on every change of the window content.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public long getCount() {
+        return totals.getCount();
+    }
+
+    public long getWindowTime() {
+        return windowTime;
+    }
+
+    public long getSliceTime() {
+        return sliceTime;
+    }
+
+    /**
+     * Length of the ring, the slice of an epoch is at {@code floorMod(epoch, length)}.
+     */
+    public int getRingSize() {
+        return epochs.length;
+    }
+
+    /**
+     * @return index of the slice of the timestamp, -1 when it is outside of the window
+     */
+    /**
+     * @return index of the slice, -1 when it left the window at {@code now} or a later time
+     */
+    private int slice(long timestamp, long now) {
+        long epoch = Math.floorDiv(timestamp, sliceTime);
+        long oldest = oldestEpoch == EMPTY ? oldestLiveEpoch(now) : Math.max(oldestEpoch, oldestLiveEpoch(now));
+        if (epoch < oldest || epoch > Math.floorDiv(now, sliceTime)) {
+            return -1;
+        }
+
+        int index = index(epoch);
+        if (epochs[index] != epoch) {
+            evict(index);
+            epochs[index] = epoch;
+            if (slices[index] == null) {
+                slices[index] = new FixedPointStatistics();
+                sketches[index] = new QuantileSketch();
+            }
+        }
+        if (totals.getCount() == 0 || epoch < oldestRetainedEpoch) {
+            oldestRetainedEpoch = epoch;
+        }
+        return index;
+    }
+
+    private void evict(int index) {
+        if (epochs[index] == EMPTY) {
+            return;
+        }
+        FixedPointStatistics slice = slices[index];
+        epochs[index] = EMPTY;
+
+        if (!staleExtremes && totals.sharesExtremes(slice)) {
+            staleExtremes = true;
+        }
+        totals.subtract(slice);
+        slice.reset();
+        totalSketch.subtract(sketches[index]);
+        sketches[index].reset();
+        if (totals.getCount() == 0) {
+            staleExtremes = false;
+        }
+    }
+
+    private long findOldestRetained(long from) {
+        if (totals.getCount() == 0) {
+            return EMPTY;
+        }
+        for (long epoch = from; epoch < from + epochs.length; epoch++) {
+            if (epochs[index(epoch)] == epoch) {
+                return epoch;
+            }
+        }
+        return EMPTY;
+    }
+
+    private void recomputeExtremes() {
+        FixedPointStatistics merged = new FixedPointStatistics();
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] != EMPTY) {
+                merged.combine(slices[i]);
+            }
+        }
+        totals.setExtremes(merged);
+        staleExtremes = false;
+    }
+
+    private int index(long epoch) {
+        return (int) Math.floorMod(epoch, (long) epochs.length);
+    }
+
+    private void changed() {
+        version++;
+        snapshot = null;
+        quantiles = null;
+    }
+}
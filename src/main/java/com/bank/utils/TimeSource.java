@@ -0,0 +1,14 @@
+package com.bank.utils;
+
+/**
+ * Current time in epoch millis for the windows, {@link #SYSTEM} unless configured
+ * otherwise with {@code statistics.clock}: {@link CachedTimeSource} reads a periodically
+ * updated field instead of the system clock, {@link VirtualTimeSource} only moves when
+ * told to, for simulations and tests.
+ */
+public interface TimeSource {
+
+    TimeSource SYSTEM = System::currentTimeMillis;
+
+    long millis();
+}
@@ -0,0 +1,35 @@
+package com.bank.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time that only moves when advanced, so expiry can be driven deterministically and
+ * hours of window activity simulated in milliseconds.
+ */
+public class VirtualTimeSource implements TimeSource {
+
+    private final AtomicLong millis;
+
+    public VirtualTimeSource(long millis) {
+        this.millis = new AtomicLong(millis);
+    }
+
+    @Override
+    public long millis() {
+        return millis.get();
+    }
+
+    /**
+     * @return the time after advancing it
+     */
+    public long advance(long delta) {
+        if (delta < 0) {
+            throw new IllegalArgumentException("Time can't move backwards: " + delta);
+        }
+        return millis.addAndGet(delta);
+    }
+
+    public void set(long millis) {
+        this.millis.set(millis);
+    }
+}
@@ -0,0 +1,314 @@
+package com.bank.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary checkpoints of the slices of a {@link StatisticsWindow}: per slice its
+ * {@link FixedPointStatistics} and {@link QuantileSketch}, never the transactions, so the
+ * size follows the number of non empty slices whatever the traffic.
+ *
+ * A checkpoint is written to a temporary file, forced to the disk and renamed, so the
+ * directory only ever holds complete checkpoints. The previous one is kept in case the
+ * newest turns out to be corrupt, older ones are deleted.
+ *
+ * A file is {@code [magic][version][created at][log position][slices][crc32]}, the log
+ * position being {@code [present][period][sequence][offset]} and the slices
+ * being grouped by window: {@code [WINDOW][window time][slice time]} followed by
+ * {@code [SLICE][epoch][statistics][sketch]} entries, up to {@code [END]}.
+ */
+public class WindowCheckpoints {
+
+    private static final Pattern CHECKPOINT_NAME = Pattern.compile("checkpoint-(\\d+)\\.bin");
+    private static final int MAGIC = 0x57434B50;
+    private static final int VERSION = 2;
+    private static final int KEPT = 2;
+    private static final byte END = 0;
+    private static final byte WINDOW = 1;
+    private static final byte SLICE = 2;
+
+    private final Path directory;
+
+    public WindowCheckpoints(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Encodes the slices of the window, see {@link #copy} and {@link #encode}.
+     */
+    public static byte[] capture(StatisticsWindow window) {
+        return encode(copy(window));
+    }
+
+    /**
+     * Copies the slices of the window, holding its locks only for as long as it takes
+     * to copy them.
+     */
+    public static Slices copy(StatisticsWindow window) {
+        Slices slices = new Slices();
+        window.forEachSlice((windowTime, sliceTime, epoch, statistics, sketch) -> slices.slices.add(
+                new Slice(windowTime, sliceTime, epoch, new FixedPointStatistics(statistics), new QuantileSketch(sketch))));
+        return slices;
+    }
+
+    /**
+     * Encodes slices copied by {@link #copy}, without any lock of the window.
+     */
+    public static byte[] encode(Slices slices) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        long windowTime = 0l, sliceTime = 0l;
+        try {
+            for (Slice slice : slices.slices) {
+                if (windowTime != slice.windowTime || sliceTime != slice.sliceTime) {
+                    out.writeByte(WINDOW);
+                    out.writeLong(slice.windowTime);
+                    out.writeLong(slice.sliceTime);
+                    windowTime = slice.windowTime;
+                    sliceTime = slice.sliceTime;
+                }
+                out.writeByte(SLICE);
+                out.writeLong(slice.epoch);
+                slice.statistics.writeTo(out);
+                slice.sketch.writeTo(out);
+            }
+            out.writeByte(END);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Atomically writes a checkpoint of slices returned by {@link #capture}.
+     *
+     * @param position position of the log the slices were captured at, null without a log
+     * @return the checkpoint file
+     */
+    public Path write(long createdAt, WriteAheadLog.Position position, byte[] slices) throws IOException {
+        Files.createDirectories(directory);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(slices.length + 44);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(createdAt);
+        out.writeBoolean(position != null);
+        out.writeLong(position == null ? 0l : position.getPeriod());
+        out.writeInt(position == null ? 0 : position.getSequence());
+        out.writeInt(position == null ? 0 : position.getOffset());
+        out.write(slices);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        byte[] content = bytes.toByteArray();
+
+        Path target = directory.resolve("checkpoint-" + createdAt + ".bin");
+        Path temporary = directory.resolve("checkpoint-" + createdAt + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        List<Path> checkpoints = list();
+        for (int i = KEPT; i < checkpoints.size(); i++) {
+            Files.deleteIfExists(checkpoints.get(i));
+        }
+        return target;
+    }
+
+    /**
+     * Restores the slices of the newest readable checkpoint into the window, dropping
+     * the ones that left it at {@code now}.
+     *
+     * @return the checkpoint restored, null when there is none
+     */
+    public Checkpoint restore(StatisticsWindow window, long now) throws IOException {
+        for (Path path : list()) {
+            byte[] bytes = Files.readAllBytes(path);
+            if (!isValid(bytes)) {
+                continue;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 8, bytes.length - 12));
+            long createdAt = in.readLong();
+            boolean hasPosition = in.readBoolean();
+            long period = in.readLong();
+            int sequence = in.readInt();
+            int offset = in.readInt();
+            WriteAheadLog.Position position = hasPosition ? new WriteAheadLog.Position(period, sequence, offset) : null;
+
+            long restored = merge(in, window, now);
+            return new Checkpoint(path, createdAt, position, restored);
+        }
+        return null;
+    }
+
+    /**
+     * Merges slices returned by {@link #capture}, e.g. by another instance, into the
+     * window, dropping the ones that left it at {@code now}.
+     *
+     * @return number of slices merged
+     * @throws IllegalArgumentException when the slices are malformed
+     */
+    public static long merge(byte[] slices, StatisticsWindow window, long now) {
+        try {
+            return merge(new DataInputStream(new ByteArrayInputStream(slices)), window, now);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Malformed slices: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static long merge(DataInputStream in, StatisticsWindow window, long now) throws IOException {
+        long merged = 0l;
+        long windowTime = 0l, sliceTime = 0l;
+        for (byte tag = in.readByte(); tag != END; tag = in.readByte()) {
+            if (tag == WINDOW) {
+                windowTime = in.readLong();
+                sliceTime = in.readLong();
+            } else if (tag == SLICE) {
+                long epoch = in.readLong();
+                FixedPointStatistics statistics = FixedPointStatistics.readFrom(in);
+                QuantileSketch sketch = QuantileSketch.readFrom(in);
+                if (window.restoreSlice(windowTime, sliceTime, epoch, statistics, sketch, now)) {
+                    merged++;
+                }
+            } else {
+                throw new IOException("Unexpected entry " + tag);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Deletes every checkpoint.
+     */
+    public void clear() throws IOException {
+        for (Path path : list()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * @return the checkpoints, newest first
+     */
+    private List<Path> list() throws IOException {
+        List<Path> checkpoints = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return checkpoints;
+        }
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "checkpoint-*.bin")) {
+            for (Path path : paths) {
+                if (CHECKPOINT_NAME.matcher(path.getFileName().toString()).matches()) {
+                    checkpoints.add(path);
+                }
+            }
+        }
+        checkpoints.sort(Comparator.comparingLong(WindowCheckpoints::createdAt).reversed());
+        return checkpoints;
+    }
+
+    private static long createdAt(Path path) {
+        Matcher matcher = CHECKPOINT_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0l;
+    }
+
+    private static boolean isValid(byte[] bytes) throws IOException {
+        if (bytes.length < 12) {
+            return false;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        return (int) crc.getValue() == ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt();
+    }
+
+    /**
+     * Copies of the slices of a window, held apart from it until encoded.
+     */
+    public static class Slices {
+        private final List<Slice> slices = new ArrayList<>();
+
+        private Slices() {
+        }
+
+        public int size() {
+            return slices.size();
+        }
+    }
+
+    private static class Slice {
+        private final long windowTime;
+        private final long sliceTime;
+        private final long epoch;
+        private final FixedPointStatistics statistics;
+        private final QuantileSketch sketch;
+
+        private Slice(long windowTime, long sliceTime, long epoch, FixedPointStatistics statistics, QuantileSketch sketch) {
+            this.windowTime = windowTime;
+            this.sliceTime = sliceTime;
+            this.epoch = epoch;
+            this.statistics = statistics;
+            this.sketch = sketch;
+        }
+    }
+
+    public static class Checkpoint {
+        private final Path path;
+        private final long createdAt;
+        private final WriteAheadLog.Position position;
+        private final long restoredSlices;
+
+        private Checkpoint(Path path, long createdAt, WriteAheadLog.Position position, long restoredSlices) {
+            this.path = path;
+            this.createdAt = createdAt;
+            this.position = position;
+            this.restoredSlices = restoredSlices;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * Position of the log the slices were captured at, null when written without a log.
+         */
+        public WriteAheadLog.Position getPosition() {
+            return position;
+        }
+
+        /**
+         * Number of slices restored, the expired ones excluded.
+         */
+        public long getRestoredSlices() {
+            return restoredSlices;
+        }
+    }
+}
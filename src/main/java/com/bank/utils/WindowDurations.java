@@ -0,0 +1,49 @@
+package com.bank.utils;
+
+/**
+ * Window lengths written as a number followed by one of the units ms, s, m, h or d,
+ * e.g. {@code 500ms}, {@code 60s} or {@code 1h}.
+ */
+public class WindowDurations {
+
+    private static final String[] UNITS = {"d", "h", "m", "s", "ms"};
+    private static final long[] UNIT_MILLIS = {86400000l, 3600000l, 60000l, 1000l, 1l};
+
+    private WindowDurations() {
+    }
+
+    /**
+     * @return the duration in millis
+     * @throws IllegalArgumentException when the text is not a positive duration
+     */
+    public static long parse(String text) {
+        String value = text.trim().toLowerCase();
+        int digits = 0;
+        while (digits < value.length() && Character.isDigit(value.charAt(digits))) {
+            digits++;
+        }
+        if (digits == 0 || digits > 12) {
+            throw new IllegalArgumentException("Invalid window: " + text);
+        }
+        long amount = Long.parseLong(value.substring(0, digits));
+        String unit = value.substring(digits);
+        for (int i = 0; i < UNITS.length; i++) {
+            if (UNITS[i].equals(unit) && amount > 0) {
+                return amount * UNIT_MILLIS[i];
+            }
+        }
+        throw new IllegalArgumentException("Invalid window: " + text);
+    }
+
+    /**
+     * Formats the duration with the largest unit dividing it, {@code 3600000} gives {@code 1h}.
+     */
+    public static String format(long millis) {
+        for (int i = 0; i < UNITS.length; i++) {
+            if (millis % UNIT_MILLIS[i] == 0) {
+                return (millis / UNIT_MILLIS[i]) + UNITS[i];
+            }
+        }
+        return millis + "ms";
+    }
+}
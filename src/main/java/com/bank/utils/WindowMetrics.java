@@ -0,0 +1,37 @@
+package com.bank.utils;
+
+/**
+ * Receives the timings of a {@link StatisticsWindow}. Called on the ingest path, so
+ * implementations must be cheap and never block.
+ */
+public interface WindowMetrics {
+
+    WindowMetrics NONE = new WindowMetrics() {
+        @Override
+        public void lockWaited(long nanos) {
+        }
+
+        @Override
+        public void lockHeld(long nanos) {
+        }
+
+        @Override
+        public void expired(long transactions) {
+        }
+    };
+
+    /**
+     * Time spent waiting for a write lock.
+     */
+    void lockWaited(long nanos);
+
+    /**
+     * Time a write lock was held, recorded once it has been released.
+     */
+    void lockHeld(long nanos);
+
+    /**
+     * Number of transactions evicted by one expiry pass, only called when some were.
+     */
+    void expired(long transactions);
+}
@@ -0,0 +1,30 @@
+package com.bank.utils;
+
+/**
+ * Immutable view of a window. The version increases every time the content of the
+ * window changes, so two snapshots with the same version hold the same statistics.
+ */
+public class WindowSnapshot {
+
+    private final long version;
+    private final FixedPointStatistics statistics;
+    private final QuantileSketch quantiles;
+
+    public WindowSnapshot(long version, FixedPointStatistics statistics, QuantileSketch quantiles) {
+        this.version = version;
+        this.statistics = statistics;
+        this.quantiles = quantiles;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public FixedPointStatistics getStatistics() {
+        return statistics;
+    }
+
+    public QuantileSketch getQuantiles() {
+        return quantiles;
+    }
+}
@@ -0,0 +1,476 @@
+package com.bank.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the accepted transactions, replayed on startup to rebuild the
+ * windows. Records are written to memory mapped segments, so an append is a copy into
+ * the page cache that survives a crash of the process, and {@link #sync()} forces them
+ * to the disk in a group, for all the appends since the previous call.
+ *
+ * Segments are named after the period of {@code segmentTime} in which their records
+ * were appended, a new one starts with each period or when a segment is full. Records
+ * are never appended before their own timestamp, so once the period of a segment ended
+ * {@code windowTime} ago all its transactions expired and the file is deleted as a whole.
+ *
+ * A record is {@code [length][crc32][timestamp][scale][amount length][amount][key length][key]},
+ * replay stops at the first record of a segment that is incomplete or corrupt, the tail
+ * of an append interrupted by a crash. Appends after a restart go to a new segment.
+ *
+ * {@link #mark} returns the {@link Position} of the next append, a segment and an offset
+ * in it, without starting a new segment: a checkpoint of the windows taken along with it
+ * holds exactly the records before that position.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("transactions-(\\d+)-(\\d+)\\.wal");
+    private static final int HEADER_SIZE = 8;
+    private static final int NO_KEY = -1;
+
+    private final Path directory;
+    private final long windowTime;
+    private final long segmentTime;
+    private final int segmentSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Segments older than the current one, oldest first
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    // Segments appended to since the last sync
+    private final List<Segment> unsyncedSegments = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(64);
+    private Segment current;
+    private long unsyncedBytes = 0l;
+
+    public interface RecordVisitor {
+        /**
+         * @param checkpointed whether the record was appended before the position given
+         * to {@link #replay(long, Position, RecordVisitor)}
+         */
+        void visit(long timestamp, BigDecimal amount, String key, boolean checkpointed);
+    }
+
+    /**
+     * @param segmentTime length in millis of the period covered by a segment
+     * @param segmentSize capacity in bytes of a segment
+     */
+    public WriteAheadLog(Path directory, long windowTime, long segmentTime, int segmentSize) {
+        if (segmentTime <= 0 || segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid segments of " + segmentTime + "ms and " + segmentSize + " bytes");
+        }
+        this.directory = directory;
+        this.windowTime = windowTime;
+        this.segmentTime = segmentTime;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Deletes the expired segments and visits the records of the other ones in the order
+     * they were appended, skipping the records older than the window at {@code now}.
+     * Called once, before the first append.
+     *
+     * @return number of records visited
+     */
+    public long replay(long now, RecordVisitor visitor) throws IOException {
+        return replay(now, null, visitor);
+    }
+
+    /**
+     * Same as {@link #replay(long, RecordVisitor)}, telling the visitor which records
+     * were appended before {@code checkpoint}, a position returned by {@link #mark}.
+     *
+     * @param checkpoint null when no record was checkpointed
+     */
+    public long replay(long now, Position checkpoint, RecordVisitor visitor) throws IOException {
+        Files.createDirectories(directory);
+        List<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "transactions-*.wal")) {
+            for (Path path : paths) {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    found.add(new Segment(path, Long.parseLong(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+                }
+            }
+        }
+        found.sort((a, b) -> a.period != b.period ? Long.compare(a.period, b.period) : Integer.compare(a.sequence, b.sequence));
+
+        long oldest = now - windowTime;
+        long visited = 0l;
+        lock.lock();
+        try {
+            for (Segment segment : found) {
+                if (isExpired(segment, now)) {
+                    Files.deleteIfExists(segment.path);
+                    continue;
+                }
+                segments.addLast(segment);
+                int checkpointed = checkpoint == null ? 0 : checkpoint.checkpointedBytes(segment.period, segment.sequence);
+                visited += replay(segment, oldest, checkpointed, visitor);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return visited;
+    }
+
+    public void append(long timestamp, BigDecimal amount, String key, long now) {
+        lock.lock();
+        try {
+            appendLocked(timestamp, amount, 0l, key, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #append(long, BigDecimal, String, long)} for an amount scaled by
+     * {@link FixedPointStatistics#SCALE}, replayed as a {@link BigDecimal} of that scale.
+     */
+    public void append(long timestamp, long scaledAmount, String key, long now) {
+        lock.lock();
+        try {
+            appendLocked(timestamp, null, scaledAmount, key, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param keys keys of the transactions, null elements for the ones without a key
+     * @param selected which of the first {@code size} transactions to append, null for all
+     */
+    public void appendAll(long[] timestamps, BigDecimal[] amounts, String[] keys, int size, long now, boolean[] selected) {
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (selected == null || selected[i]) {
+                    appendLocked(timestamps[i], amounts[i], 0l, keys[i], now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #appendAll(long[], BigDecimal[], String[], int, long, boolean[])} for
+     * amounts scaled by {@link FixedPointStatistics#SCALE}.
+     */
+    public void appendAll(long[] timestamps, long[] scaledAmounts, String[] keys, int size, long now, boolean[] selected) {
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                if (selected == null || selected[i]) {
+                    appendLocked(timestamps[i], null, scaledAmounts[i], keys[i], now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Position of the next append, so that the records appended from now on can be told
+     * apart on replay.
+     */
+    public Position mark() {
+        lock.lock();
+        try {
+            if (current != null) {
+                return new Position(current.period, current.sequence, current.buffer.position());
+            }
+            // The next append starts a segment after all the ones replayed
+            Segment last = segments.peekLast();
+            return last == null ? new Position(Long.MIN_VALUE, 0, 0) : new Position(last.period, last.sequence, Integer.MAX_VALUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bytes appended since the last {@link #sync()}.
+     */
+    public long getUnsyncedBytes() {
+        lock.lock();
+        try {
+            return unsyncedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the records appended so far to the disk. Appends carry on meanwhile, the
+     * ones landing in the synced segments may be forced as well.
+     *
+     * @return number of segments forced
+     */
+    public int sync() {
+        Segment[] toSync;
+        lock.lock();
+        try {
+            unsyncedBytes = 0l;
+            if (unsyncedSegments.isEmpty()) {
+                return 0;
+            }
+            toSync = unsyncedSegments.toArray(new Segment[unsyncedSegments.size()]);
+            unsyncedSegments.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : toSync) {
+            segment.buffer.force();
+        }
+        return toSync.length;
+    }
+
+    /**
+     * Deletes the segments whose transactions all left the window at {@code now}.
+     */
+    public void deleteExpired(long now) {
+        List<Segment> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            while (!segments.isEmpty() && isExpired(segments.peekFirst(), now)) {
+                expired.add(segments.removeFirst());
+            }
+        } finally {
+            lock.unlock();
+        }
+        delete(expired);
+    }
+
+    /**
+     * Deletes every record, the next append starts a new segment.
+     */
+    public void clear() {
+        List<Segment> deleted;
+        lock.lock();
+        try {
+            deleted = new ArrayList<>(segments);
+            if (current != null) {
+                deleted.add(current);
+            }
+            segments.clear();
+            unsyncedSegments.clear();
+            unsyncedBytes = 0l;
+            current = null;
+        } finally {
+            lock.unlock();
+        }
+        delete(deleted);
+    }
+
+    /**
+     * Forces the last appends to the disk.
+     */
+    @Override
+    public void close() {
+        sync();
+    }
+
+    /**
+     * @param amount null when the amount is scaled
+     */
+    private void appendLocked(long timestamp, BigDecimal amount, long scaledAmount, String key, long now) {
+        ByteBuffer record = encode(timestamp, amount, scaledAmount, key);
+        long period = Math.floorDiv(now, segmentTime) * segmentTime;
+        if (current == null || current.period != period || current.buffer.remaining() < record.remaining()) {
+            rotate(period, record.remaining());
+        }
+        unsyncedBytes += record.remaining();
+        current.buffer.put(record);
+        // Dirty again after each sync, forced by the next one
+        if (!unsyncedSegments.contains(current)) {
+            unsyncedSegments.add(current);
+        }
+    }
+
+    private ByteBuffer encode(long timestamp, BigDecimal amount, long scaledAmount, String key) {
+        byte[] unscaled = amount == null ? null : amount.unscaledValue().toByteArray();
+        // Same bytes as BigInteger.toByteArray: the shortest two's complement, big endian
+        int unscaledLength = amount == null
+                ? (64 - Long.numberOfLeadingZeros(scaledAmount < 0 ? ~scaledAmount : scaledAmount)) / 8 + 1
+                : unscaled.length;
+        byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 4 + 4 + unscaledLength + 4 + (keyBytes == null ? 0 : keyBytes.length);
+        if (scratch.capacity() < HEADER_SIZE + length) {
+            scratch = ByteBuffer.allocate(Math.max(HEADER_SIZE + length, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        scratch.position(HEADER_SIZE);
+        scratch.putLong(timestamp);
+        scratch.putInt(amount == null ? FixedPointStatistics.SCALE : amount.scale());
+        scratch.putInt(unscaledLength);
+        if (amount == null) {
+            for (int shift = (unscaledLength - 1) * 8; shift >= 0; shift -= 8) {
+                scratch.put((byte) (scaledAmount >> shift));
+            }
+        } else {
+            scratch.put(unscaled);
+        }
+        if (keyBytes == null) {
+            scratch.putInt(NO_KEY);
+        } else {
+            scratch.putInt(keyBytes.length);
+            scratch.put(keyBytes);
+        }
+        crc.reset();
+        crc.update(scratch.array(), HEADER_SIZE, length);
+        scratch.putInt(0, length);
+        scratch.putInt(4, (int) crc.getValue());
+        scratch.flip();
+        return scratch;
+    }
+
+    private void rotate(long period, int recordSize) {
+        if (HEADER_SIZE + recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record of " + recordSize + " bytes larger than the segments");
+        }
+        int sequence = 0;
+        if (current != null) {
+            segments.addLast(current);
+            sequence = current.period == period ? current.sequence + 1 : 0;
+        }
+        // A restart never appends to the segments it replayed
+        Segment last = segments.peekLast();
+        if (last != null && last.period == period && last.sequence >= sequence) {
+            sequence = last.sequence + 1;
+        }
+        Segment segment = new Segment(directory.resolve("transactions-" + period + "-" + sequence + ".wal"), period, sequence);
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot create the log segment " + segment.path, ex);
+        }
+        current = segment;
+    }
+
+    /**
+     * @param checkpointed number of bytes at the start of the segment appended before the checkpoint
+     */
+    private long replay(Segment segment, long oldest, int checkpointed, RecordVisitor visitor) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        long visited = 0l;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int offset = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            long timestamp = record.getLong();
+            int scale = record.getInt();
+            byte[] unscaled = new byte[record.getInt()];
+            record.get(unscaled);
+            int keyLength = record.getInt();
+            String key = null;
+            if (keyLength != NO_KEY) {
+                key = new String(payload, record.position(), keyLength, StandardCharsets.UTF_8);
+            }
+            if (timestamp >= oldest) {
+                visitor.visit(timestamp, new BigDecimal(new BigInteger(unscaled), scale), key, offset < checkpointed);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    private boolean isExpired(Segment segment, long now) {
+        return segment.period + segmentTime + windowTime <= now;
+    }
+
+    private static void delete(List<Segment> segments) {
+        for (Segment segment : segments) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot delete the log segment " + segment.path, ex);
+            }
+        }
+    }
+
+    /**
+     * Offset in a segment of the log, segments being ordered by period then sequence.
+     */
+    public static class Position {
+        private final long period;
+        private final int sequence;
+        private final int offset;
+
+        public Position(long period, int sequence, int offset) {
+            this.period = period;
+            this.sequence = sequence;
+            this.offset = offset;
+        }
+
+        public long getPeriod() {
+            return period;
+        }
+
+        public int getSequence() {
+            return sequence;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return number of bytes of the segment before this position
+         */
+        private int checkpointedBytes(long otherPeriod, int otherSequence) {
+            int order = period != otherPeriod ? Long.compare(period, otherPeriod) : Integer.compare(sequence, otherSequence);
+            return order > 0 ? Integer.MAX_VALUE : order == 0 ? offset : 0;
+        }
+
+        @Override
+        public String toString() {
+            return period + "-" + sequence + "@" + offset;
+        }
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final long period;
+        private final int sequence;
+        // Only set for the segments appended to by this instance
+        private MappedByteBuffer buffer;
+
+        private Segment(Path path, long period, int sequence) {
+            this.path = path;
+            this.period = period;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.bank.controllers;
+
+import com.bank.Application;
+import com.bank.models.BatchResult;
+import com.bank.models.Statistics;
+import com.bank.services.StatisticsService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive",
+                "statistics.wal-directory=target/reactive-journal/wal",
+                "statistics.checkpoint-directory=target/reactive-journal/checkpoints",
+                "statistics.journal-threads=2"})
+public class ReactiveJournalControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @After
+    public void clean() {
+        statisticsService.cleanAll();
+    }
+
+    @Test
+    public void testWritesOffTheEventLoop() {
+        long now = System.currentTimeMillis();
+        String transaction = "{\"amount\":\"10\",\"timestamp\":\"" + java.time.Instant.ofEpochMilli(now) + "\"}";
+        String future = "{\"amount\":\"10\",\"timestamp\":\"" + java.time.Instant.ofEpochMilli(now + 60000) + "\"}";
+
+        post("/transactions", MediaType.APPLICATION_JSON, transaction).expectStatus().isCreated();
+        post("/transactions", MediaType.APPLICATION_JSON, future).expectStatus().isEqualTo(422);
+        BatchResult result = post("/transactions/batch", MediaType.valueOf("application/x-ndjson"), transaction + "\n" + transaction + "\n")
+                .expectStatus().isOk()
+                .expectBody(BatchResult.class).returnResult().getResponseBody();
+        assertTrue(result.getAccepted() == 2);
+
+        Statistics statistics = webTestClient.get().uri("/statistics").exchange()
+                .expectStatus().isOk()
+                .expectBody(Statistics.class).returnResult().getResponseBody();
+        assertTrue(statistics.getCount() == 3);
+
+        webTestClient.delete().uri("/transactions").exchange().expectStatus().isNoContent();
+        assertTrue(statisticsService.getStatistics().getCount() == 0);
+    }
+
+    private WebTestClient.ResponseSpec post(String uri, MediaType contentType, String body) {
+        return webTestClient.post().uri(uri)
+                .contentType(contentType)
+                .syncBody(body)
+                .exchange();
+    }
+}
@@ -0,0 +1,182 @@
+package com.bank.controllers;
+
+import com.bank.Application;
+import com.bank.models.BatchResult;
+import com.bank.models.Statistics;
+import com.bank.models.StatisticsHistory;
+import com.bank.models.TransactionBatch;
+import com.bank.services.StatisticsService;
+import com.bank.utils.BinaryTransactions;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+public class ReactiveStatisticsControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveWebServerApplicationContext context;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @After
+    public void clean() {
+        statisticsService.cleanAll();
+    }
+
+    @Test
+    public void testRunsOnNetty() {
+        assertTrue(context.getWebServer().getClass().getSimpleName().startsWith("Netty"));
+    }
+
+    @Test
+    public void testCreateTransaction() {
+        long now = System.currentTimeMillis();
+        postTransaction("{\"amount\":\"12.3343\",\"timestamp\":\"" + iso(now) + "\"}").expectStatus().isCreated();
+        postTransaction("{\"amount\":\"5\",\"timestamp\":\"" + iso(now - 70000) + "\"}").expectStatus().isNoContent();
+        postTransaction("{\"amount\":\"5\",\"timestamp\":\"" + iso(now + 60000) + "\"}").expectStatus().isEqualTo(422);
+        postTransaction("{\"amount\":\"5\",\"timestamp\":\"yesterday\"}").expectStatus().isEqualTo(422);
+        postTransaction("{\"amount\":\"5\"").expectStatus().isBadRequest();
+        postTransaction("{\"amount\":\"5\"}").expectStatus().isBadRequest();
+
+        Statistics statistics = webTestClient.get().uri("/statistics").exchange()
+                .expectStatus().isOk()
+                .expectBody(Statistics.class).returnResult().getResponseBody();
+        assertEquals(statistics.getSum(), "12.33");
+        assertTrue(statistics.getCount() == 1);
+    }
+
+    @Test
+    public void testBatch() {
+        long now = System.currentTimeMillis();
+        String transaction = "{\"amount\":\"10\",\"timestamp\":\"" + iso(now) + "\"}";
+
+        BatchResult json = webTestClient.post().uri("/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("[" + transaction + "," + transaction + "]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BatchResult.class).returnResult().getResponseBody();
+        assertTrue(json.getAccepted() == 2);
+
+        BatchResult ndjson = webTestClient.post().uri("/transactions/batch")
+                .contentType(MediaType.valueOf("application/x-ndjson"))
+                .syncBody(transaction + "\n" + transaction + "\n" + transaction + "\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BatchResult.class).returnResult().getResponseBody();
+        assertTrue(ndjson.getAccepted() == 3);
+    }
+
+    @Test
+    public void testCreateBinaryTransactions() {
+        long now = System.currentTimeMillis();
+        byte[] content = BinaryTransactions.encode(new TransactionBatch().add(now, 1000l).add(now, 1250l).add(now - 70000, 100l));
+
+        BatchResult result = webTestClient.post().uri("/transactions/batch")
+                .contentType(MediaType.valueOf(BinaryTransactions.MEDIA_TYPE_VALUE))
+                .syncBody(content)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BatchResult.class).returnResult().getResponseBody();
+        assertTrue(result.getAccepted() == 2);
+        assertTrue(result.getExpired() == 1);
+
+        webTestClient.post().uri("/transactions/batch")
+                .contentType(MediaType.valueOf(BinaryTransactions.MEDIA_TYPE_VALUE))
+                .syncBody(Arrays.copyOf(content, 3))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testStatisticsNotModified() {
+        String etag = webTestClient.get().uri("/statistics").exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/statistics").header("If-None-Match", etag).exchange()
+                .expectStatus().isNotModified();
+        webTestClient.get().uri("/statistics?window=forever").exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/statistics/quantile?q=2").exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.delete().uri("/transactions").exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    public void testStreamStatistics() {
+        long now = System.currentTimeMillis();
+        postTransaction("{\"amount\":\"10\",\"timestamp\":\"" + iso(now) + "\"}").expectStatus().isCreated();
+
+        Statistics statistics = webTestClient.get().uri("/statistics/stream").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(Statistics.class).getResponseBody()
+                .blockFirst();
+        assertTrue(statistics.getCount() == 1);
+    }
+
+    @Test
+    public void testClusterStatistics() {
+        long now = System.currentTimeMillis();
+        postTransaction("{\"amount\":\"10\",\"timestamp\":\"" + iso(now) + "\"}").expectStatus().isCreated();
+
+        byte[] partial = webTestClient.get().uri("/statistics/partial?window=60s").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertTrue(partial.length > 1);
+
+        // Without peers the cluster is this instance alone
+        Statistics statistics = webTestClient.get().uri("/statistics/cluster").exchange()
+                .expectStatus().isOk()
+                .expectBody(Statistics.class).returnResult().getResponseBody();
+        assertTrue(statistics.getCount() == 1);
+        assertEquals(statistics.getSum(), "10.00");
+    }
+
+    @Test
+    public void testHistory() {
+        long now = System.currentTimeMillis();
+        postTransaction("{\"amount\":\"10\",\"timestamp\":\"" + iso(now) + "\"}").expectStatus().isCreated();
+
+        StatisticsHistory history = webTestClient.get().uri("/statistics/history?from={from}&step=1s", now).exchange()
+                .expectStatus().isOk()
+                .expectBody(StatisticsHistory.class).returnResult().getResponseBody();
+        assertEquals(history.getStep(), "1s");
+        assertTrue(history.getPoints().get(0).getStatistics().getCount() == 1);
+        assertEquals(history.getPoints().get(0).getStatistics().getSum(), "10.00");
+
+        webTestClient.get().uri("/statistics/history?step=1500ms").exchange().expectStatus().isBadRequest();
+    }
+
+    private WebTestClient.ResponseSpec postTransaction(String body) {
+        return webTestClient.post().uri("/transactions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(body)
+                .exchange();
+    }
+
+    private static String iso(long timestamp) {
+        return java.time.Instant.ofEpochMilli(timestamp).toString();
+    }
+}
@@ -3,11 +3,22 @@ package com.bank.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.bank.Application;
-import com.bank.exceptions.ExpiredTransactionException;
-import com.bank.exceptions.FutureTransactionException;
+import com.bank.exceptions.InvalidHistoryException;
+import com.bank.exceptions.InvalidQuantileException;
+import com.bank.exceptions.QuantilesDisabledException;
+import com.bank.exceptions.PeerUnavailableException;
+import com.bank.models.Admission;
+import com.bank.models.BatchResult;
+import com.bank.models.HistoryPoint;
+import com.bank.models.OrderStatistic;
 import com.bank.models.Statistics;
+import com.bank.models.StatisticsHistory;
+import com.bank.models.StatisticsSnapshot;
 import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+import com.bank.services.PeerAggregator;
 import com.bank.services.StatisticsService;
+import com.bank.utils.BinaryTransactions;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -24,10 +35,13 @@ import org.springframework.web.context.support.GenericWebApplicationContext;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 @RunWith(SpringRunner.class)
@@ -38,6 +52,9 @@ public class StatisticsControllerTest {
     @MockBean
     private StatisticsService service;
 
+    @MockBean
+    private PeerAggregator peerAggregator;
+
     @Autowired
     private GenericWebApplicationContext webApplicationContext;
 
@@ -70,7 +87,7 @@ public class StatisticsControllerTest {
         Transaction transaction = new Transaction();
         transaction.setAmount(new BigDecimal(100.000));
         transaction.setTimestamp(new Date());
-        when(service.createTransaction(transaction)).thenReturn(transaction);
+        when(service.admit(any(Transaction.class))).thenReturn(Admission.ACCEPTED);
 
         MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions")
                 .contentType(MediaType.APPLICATION_JSON_VALUE).content(mapToJson(transaction))).andReturn();
@@ -84,7 +101,7 @@ public class StatisticsControllerTest {
         Transaction transaction = new Transaction();
         transaction.setAmount(new BigDecimal(100.000));
         transaction.setTimestamp(new Date());
-        when(service.createTransaction(transaction)).thenReturn(transaction);
+        when(service.admit(any(Transaction.class))).thenReturn(Admission.ACCEPTED);
 
         MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions")
                 .contentType(MediaType.APPLICATION_JSON_VALUE).content("{ss\"amount\":\"10.00\", \"timestamp\":\"2021-05-02T10:51:40.312Z\"}")).andReturn();
@@ -98,7 +115,7 @@ public class StatisticsControllerTest {
         Transaction transaction = new Transaction();
         transaction.setAmount(new BigDecimal(100.000));
         transaction.setTimestamp(new Date());
-        when(service.createTransaction(transaction)).thenReturn(transaction);
+        when(service.admit(any(Transaction.class))).thenReturn(Admission.ACCEPTED);
 
         MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions")
                 .contentType(MediaType.APPLICATION_JSON_VALUE).content("{\"amount\":\"10.00aaa\", \"timestamp\":\"2021-05-02T10:51:40.312Z\"}")).andReturn();
@@ -114,7 +131,7 @@ public class StatisticsControllerTest {
         Date oldDate = new Date(System.currentTimeMillis() - 100000);
         transaction.setTimestamp(oldDate);
 
-        when(service.createTransaction(any(Transaction.class))).thenThrow(new ExpiredTransactionException("Expired timestamp"));
+        when(service.admit(any(Transaction.class))).thenReturn(Admission.EXPIRED);
 
         MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions")
                 .contentType(MediaType.APPLICATION_JSON_VALUE).content(mapToJson(transaction))).andReturn();
@@ -133,7 +150,7 @@ public class StatisticsControllerTest {
         Date oldDate = new Date(System.currentTimeMillis() + 100000);
         transaction.setTimestamp(oldDate);
 
-        when(service.createTransaction(any(Transaction.class))).thenThrow(new FutureTransactionException("Future timestamp"));
+        when(service.admit(any(Transaction.class))).thenReturn(Admission.FUTURE);
 
         MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions")
                 .contentType(MediaType.APPLICATION_JSON_VALUE).content(mapToJson(transaction))).andReturn();
@@ -141,6 +158,75 @@ public class StatisticsControllerTest {
         int status = mvcResult.getResponse().getStatus();
 
         assertEquals(422, status);
+        assertTrue(mvcResult.getResponse().getContentAsString().contains("Future dated transaction"));
+    }
+
+    @Test
+    public void testCreateTransactions() throws Exception {
+
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(100.000));
+        transaction.setTimestamp(new Date());
+
+        when(service.createTransactions(anyList())).thenReturn(new BatchResult(2l, 0l, 0l, 0l));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON_VALUE).content(mapToJson(Arrays.asList(transaction, transaction)))).andReturn();
+
+        int status = mvcResult.getResponse().getStatus();
+        assertEquals(200, status);
+
+        BatchResult res = mapFromJson(mvcResult.getResponse().getContentAsString(), BatchResult.class);
+        assertTrue(res.getAccepted() == 2);
+    }
+
+    @Test
+    public void testCreateBinaryTransactions() throws Exception {
+
+        when(service.createTransactions(any(TransactionBatch.class))).thenAnswer(invocation ->
+                new BatchResult(((TransactionBatch) invocation.getArgument(0)).getSize(), 0l, 0l, 0l));
+
+        byte[] content = BinaryTransactions.encode(new TransactionBatch().add(1000l, 1000l).add(2000l, 1250l));
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/batch")
+                .contentType(BinaryTransactions.MEDIA_TYPE_VALUE).content(content)).andReturn();
+
+        int status = mvcResult.getResponse().getStatus();
+        assertEquals(200, status);
+
+        BatchResult res = mapFromJson(mvcResult.getResponse().getContentAsString(), BatchResult.class);
+        assertTrue(res.getAccepted() == 2);
+
+        mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/batch")
+                .contentType(BinaryTransactions.MEDIA_TYPE_VALUE).content(Arrays.copyOf(content, content.length - 1))).andReturn();
+        assertEquals(400, mvcResult.getResponse().getStatus());
+    }
+
+    @Test
+    public void testCreateTransactionStream() throws Exception {
+
+        when(service.createTransactions(anyList())).thenAnswer(invocation ->
+                new BatchResult(((List<?>) invocation.getArgument(0)).size(), 0l, 0l, 0l));
+
+        String content = "{\"amount\":\"10.00\", \"timestamp\":\"2021-05-02T10:51:40.312Z\"}\n" +
+                "{\"amount\":\"12.50\", \"timestamp\":\"2021-05-02T10:51:41.312Z\"}\n";
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/batch")
+                .contentType("application/x-ndjson").content(content)).andReturn();
+
+        int status = mvcResult.getResponse().getStatus();
+        assertEquals(200, status);
+
+        BatchResult res = mapFromJson(mvcResult.getResponse().getContentAsString(), BatchResult.class);
+        assertTrue(res.getAccepted() == 2);
+    }
+
+    @Test
+    public void testCreateTransactionStreamWithWrongFieldType() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/batch")
+                .contentType("application/x-ndjson").content("{\"amount\":\"10.00aaa\", \"timestamp\":\"2021-05-02T10:51:40.312Z\"}\n")).andReturn();
+
+        int status = mvcResult.getResponse().getStatus();
+        assertEquals(422, status);
     }
 
     @Test
@@ -152,19 +238,225 @@ public class StatisticsControllerTest {
         statistics.setMin("10.00");
         statistics.setCount(1l);
 
-        when(service.getStatistics()).thenReturn(statistics);
+        when(service.getSnapshot()).thenReturn(new StatisticsSnapshot(1l, System.currentTimeMillis(), statistics, mapToJson(statistics).getBytes(), "\"a-1\"", mapToJson(statistics).getBytes(), "\"a-1-p\""));
 
         MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics")
                 .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
 
         int status = mvcResult.getResponse().getStatus();
         assertEquals(200, status);
+        assertEquals(mvcResult.getResponse().getHeader("ETag"), "\"a-1\"");
 
         String content = mvcResult.getResponse().getContentAsString();
         Statistics res = mapFromJson(content, Statistics.class);
         assertTrue(res.getCount() == 1);
     }
 
+    @Test
+    public void testGetStatisticsNotModified() throws Exception {
+
+        Statistics statistics = new Statistics();
+        statistics.setCount(1l);
+
+        when(service.getSnapshot()).thenReturn(new StatisticsSnapshot(1l, System.currentTimeMillis(), statistics, mapToJson(statistics).getBytes(), "\"a-1\"", mapToJson(statistics).getBytes(), "\"a-1-p\""));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics")
+                .accept(MediaType.APPLICATION_JSON_VALUE).header("If-None-Match", "\"a-1\"")).andReturn();
+
+        int status = mvcResult.getResponse().getStatus();
+        assertEquals(304, status);
+        assertEquals(mvcResult.getResponse().getContentLength(), 0);
+    }
+
+    @Test
+    public void testStreamStatistics() throws Exception {
+
+        Statistics statistics = new Statistics();
+        statistics.setCount(1l);
+
+        when(service.getSnapshot()).thenReturn(new StatisticsSnapshot(1l, System.currentTimeMillis(), statistics, mapToJson(statistics).getBytes(), "\"a-1\"", mapToJson(statistics).getBytes(), "\"a-1-p\""));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM_VALUE))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        long deadline = System.currentTimeMillis() + 5000l;
+        while (mvcResult.getResponse().getContentAsString().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10l);
+        }
+        mvcResult.getRequest().getAsyncContext().complete();
+
+        assertEquals(mvcResult.getResponse().getContentType(), MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertEquals(mvcResult.getResponse().getContentAsString(), "id:a-1\nevent:statistics\ndata:" + mapToJson(statistics) + "\n\n");
+    }
+
+    @Test
+    public void testGetStatisticsOfWindow() throws Exception {
+
+        Statistics statistics = new Statistics();
+        statistics.setCount(3l);
+
+        when(service.getSnapshot(3600000l)).thenReturn(new StatisticsSnapshot(1l, System.currentTimeMillis(), statistics, mapToJson(statistics).getBytes(), "\"a-1h-1\"", mapToJson(statistics).getBytes(), "\"a-1h-1-p\""));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics?window=1h")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        Statistics res = mapFromJson(mvcResult.getResponse().getContentAsString(), Statistics.class);
+        assertTrue(res.getCount() == 3);
+    }
+
+    @Test
+    public void testGetStatisticsWithPercentiles() throws Exception {
+
+        Statistics statistics = new Statistics("30.00", "10.00", "20.00", "1.00", 3l, "9.00", "19.80", "20.00");
+
+        when(service.getSnapshot()).thenReturn(new StatisticsSnapshot(1l, System.currentTimeMillis(), statistics, "{}".getBytes(), "\"a-1\"", mapToJson(statistics).getBytes(), "\"a-1-p\""));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics?percentiles=true")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        assertEquals(mvcResult.getResponse().getHeader("ETag"), "\"a-1-p\"");
+        Statistics res = mapFromJson(mvcResult.getResponse().getContentAsString(), Statistics.class);
+        assertEquals(res.getP95(), "19.80");
+    }
+
+    @Test
+    public void testGetStatisticsOfInvalidWindow() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics?window=forever")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(400, mvcResult.getResponse().getStatus());
+    }
+
+    @Test
+    public void testGetKeyStatistics() throws Exception {
+
+        when(service.getStatistics("merchant-1")).thenReturn(new Statistics("30.00", "15.00", "20.00", "10.00", 2l));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/merchant-1")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        Statistics res = mapFromJson(mvcResult.getResponse().getContentAsString(), Statistics.class);
+        assertEquals(res.getSum(), "30.00");
+        assertTrue(res.getCount() == 2);
+    }
+
+    @Test
+    public void testGetPartial() throws Exception {
+
+        when(service.getPartial(60000l)).thenReturn(new byte[]{1, 2, 3});
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/partial")
+                .accept(MediaType.APPLICATION_OCTET_STREAM)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        assertArrayEquals(mvcResult.getResponse().getContentAsByteArray(), new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void testGetClusterStatistics() throws Exception {
+
+        when(peerAggregator.getStatistics(3600000l, false)).thenReturn(new Statistics("30.00", "15.00", "20.00", "10.00", 2l));
+        when(peerAggregator.getStatistics(60000l, false)).thenThrow(new PeerUnavailableException("Peer http://localhost:1 unavailable"));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/cluster?window=1h")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        Statistics res = mapFromJson(mvcResult.getResponse().getContentAsString(), Statistics.class);
+        assertTrue(res.getCount() == 2);
+
+        mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/cluster")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(502, mvcResult.getResponse().getStatus());
+    }
+
+    @Test
+    public void testGetQuantile() throws Exception {
+
+        when(service.getQuantile(0.5)).thenReturn(new OrderStatistic("12.50", 49l, 99l));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/quantile?q=0.5")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        OrderStatistic res = mapFromJson(mvcResult.getResponse().getContentAsString(), OrderStatistic.class);
+        assertEquals(res.getAmount(), "12.50");
+        assertTrue(res.getRank() == 49);
+    }
+
+    @Test
+    public void testGetInvalidQuantile() throws Exception {
+
+        when(service.getQuantile(2.0)).thenThrow(new InvalidQuantileException("Quantile must be between 0 and 1: 2.0"));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/quantile?q=2")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(400, mvcResult.getResponse().getStatus());
+    }
+
+    @Test
+    public void testGetRankDisabled() throws Exception {
+
+        when(service.getRank(new BigDecimal("10.5"))).thenThrow(new QuantilesDisabledException("Exact quantiles are disabled"));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/rank?amount=10.5")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(404, mvcResult.getResponse().getStatus());
+    }
+
+    @Test
+    public void testGetRank() throws Exception {
+
+        when(service.getRank(new BigDecimal("10.5"))).thenReturn(new OrderStatistic("10.50", 3l, 10l));
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/statistics/rank?amount=10.5")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        OrderStatistic res = mapFromJson(mvcResult.getResponse().getContentAsString(), OrderStatistic.class);
+        assertTrue(res.getRank() == 3);
+        assertTrue(res.getCount() == 10);
+    }
+
+    @Test
+    public void testGetHistory() throws Exception {
+
+        StatisticsHistory history = new StatisticsHistory("2020-09-13T12:26:00.000Z", "2020-09-13T12:28:00.000Z", "1m",
+                Arrays.asList(new HistoryPoint("2020-09-13T12:26:00.000Z", new Statistics("10.00", "5.00", "6.00", "4.00", 2l)),
+                        new HistoryPoint("2020-09-13T12:27:00.000Z", new Statistics("0.00", "0.00", "0.00", "0.00", 0l))));
+        when(service.getHistory(1600000000000l, 1600000080000l, 60000l)).thenReturn(history);
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders
+                .get("/statistics/history?from=2020-09-13T12:26:40Z&to=1600000080000&step=1m")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        StatisticsHistory res = mapFromJson(mvcResult.getResponse().getContentAsString(), StatisticsHistory.class);
+        assertTrue(res.getPoints().size() == 2);
+        assertEquals(res.getPoints().get(0).getStatistics().getSum(), "10.00");
+    }
+
+    @Test
+    public void testGetInvalidHistory() throws Exception {
+
+        when(service.getHistory(null, null, 60000l)).thenThrow(new InvalidHistoryException("Too many steps"));
+
+        assertEquals(400, mockMvc.perform(MockMvcRequestBuilders.get("/statistics/history?step=1m")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn().getResponse().getStatus());
+        assertEquals(400, mockMvc.perform(MockMvcRequestBuilders.get("/statistics/history?from=yesterday")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn().getResponse().getStatus());
+        assertEquals(400, mockMvc.perform(MockMvcRequestBuilders.get("/statistics/history?step=0s")
+                .accept(MediaType.APPLICATION_JSON_VALUE)).andReturn().getResponse().getStatus());
+    }
+
     @Test
     public void testDeleteAllTransactionsStatus() throws Exception {
 
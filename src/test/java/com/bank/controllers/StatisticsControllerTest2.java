@@ -3,12 +3,14 @@ package com.bank.controllers;
 import com.bank.Application;
 import com.bank.models.Statistics;
 import com.bank.models.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Date;
 
@@ -21,8 +23,11 @@ public class StatisticsControllerTest2 {
     @Autowired
     private StatisticsController statisticsController;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Test
-    public void testStatisticsController() {
+    public void testStatisticsController() throws IOException {
 
         Transaction transaction = new Transaction();
         transaction.setAmount(new BigDecimal(100.000));
@@ -35,13 +40,13 @@ public class StatisticsControllerTest2 {
         statisticsController.createTransaction(transaction);
         statisticsController.createTransaction(transaction1);
 
-        Statistics statistics = statisticsController.getStatistics();
+        Statistics statistics = objectMapper.readValue(statisticsController.getStatistics(null, false).getBody(), Statistics.class);
 
         assertTrue(statistics.getCount() == 2);
         assertEquals(statistics.getMax(), "110.00");
 
         statisticsController.deleteAllTransactions();
-        statistics = statisticsController.getStatistics();
+        statistics = objectMapper.readValue(statisticsController.getStatistics(null, false).getBody(), Statistics.class);
         assertTrue(statistics.getCount() == 0);
 
     }
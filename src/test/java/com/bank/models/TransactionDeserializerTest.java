@@ -0,0 +1,88 @@
+package com.bank.models;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionDeserializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Test
+    public void testDeserialize() throws IOException {
+        Transaction transaction = read("{\"amount\":\" 12.5 \",\"timestamp\":\"2021-05-02T10:51:40.312Z\",\"key\":\"acc-1\",\"other\":{\"a\":[1]}}");
+
+        assertEquals(transaction.getAmount(), new BigDecimal("12.50"));
+        assertTrue(transaction.getTimestampMillis() == Instant.parse("2021-05-02T10:51:40.312Z").toEpochMilli());
+        assertEquals(transaction.getKey(), "acc-1");
+    }
+
+    @Test
+    public void testDeserializeOtherRepresentations() throws IOException {
+        Transaction transaction = read("{\"amount\":12.3343,\"timestamp\":1620000000000}");
+        assertEquals(transaction.getAmount(), new BigDecimal("12.3343"));
+        assertTrue(transaction.getTimestampMillis() == 1620000000000l);
+
+        transaction = read("{\"amount\":\"-1e3\",\"timestamp\":\"2021-05-02\"}");
+        assertEquals(transaction.getAmount(), new BigDecimal("-1e3"));
+        assertTrue(transaction.getTimestampMillis() == Instant.parse("2021-05-02T00:00:00Z").toEpochMilli());
+
+        transaction = read("{\"amount\":\"92233720368547758.07\",\"timestamp\":\"2021-05-02T10:51:40.312Z\"}");
+        assertEquals(transaction.getAmount(), new BigDecimal("92233720368547758.07"));
+    }
+
+    @Test
+    public void testDeserializeMissingFields() throws IOException {
+        Transaction transaction = read("{\"amount\":null}");
+        assertNull(transaction.getAmount());
+        assertNull(transaction.getTimestamp());
+        assertTrue(!transaction.hasTimestamp());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setTimestamp(new Date(1620000000000l));
+
+        Transaction read = read(objectMapper.writeValueAsString(transaction));
+        assertEquals(read.getAmount(), transaction.getAmount());
+        assertEquals(read.getTimestamp(), transaction.getTimestamp());
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testInvalidAmount() throws IOException {
+        read("{\"amount\":\"10.00aaa\",\"timestamp\":\"2021-05-02T10:51:40.312Z\"}");
+    }
+
+    @Test(expected = InvalidFormatException.class)
+    public void testInvalidTimestamp() throws IOException {
+        read("{\"amount\":\"262.01\",\"timestamp\":\"4/23/2018 11:32 PM\"}");
+    }
+
+    @Test(expected = MismatchedInputException.class)
+    public void testWrongType() throws IOException {
+        read("{\"amount\":{\"value\":1},\"timestamp\":\"2021-05-02T10:51:40.312Z\"}");
+    }
+
+    @Test(expected = UnrecognizedPropertyException.class)
+    public void testUnknownProperty() throws IOException {
+        new ObjectMapper().readValue("{\"amount\":\"1\",\"other\":1}", Transaction.class);
+    }
+
+    private Transaction read(String json) throws IOException {
+        return objectMapper.readValue(json, Transaction.class);
+    }
+}
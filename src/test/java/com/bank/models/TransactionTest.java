@@ -0,0 +1,38 @@
+package com.bank.models;
+
+import org.junit.Test;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    public void testValidate() {
+        Transaction transaction = new Transaction();
+        transaction.setScaledAmount(1250l);
+        transaction.setTimestampMillis(1620000000000l);
+        assertTrue(validator.validate(transaction).isEmpty());
+
+        transaction.setAmount(null);
+        assertViolation(transaction, "amountPresent");
+
+        transaction.setAmount(BigDecimal.ONE);
+        transaction.setTimestamp(null);
+        assertViolation(transaction, "timestampPresent");
+    }
+
+    private void assertViolation(Transaction transaction, String property) {
+        Set<ConstraintViolation<Transaction>> violations = validator.validate(transaction);
+        assertTrue(violations.size() == 1);
+        assertEquals(violations.iterator().next().getPropertyPath().toString(), property);
+    }
+}
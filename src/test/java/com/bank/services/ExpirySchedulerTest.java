@@ -0,0 +1,57 @@
+package com.bank.services;
+
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.LockedWindow;
+import com.bank.utils.MultiResolutionWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.RollupHistory;
+import com.bank.utils.StatisticsWindow;
+import com.bank.utils.TimeSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExpirySchedulerTest {
+
+    @Test
+    public void testStartAndStop() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(3);
+        StatisticsWindow window = new LockedWindow(60000l, 1l) {
+            @Override
+            public void expire(long now) {
+                super.expire(now);
+                expired.countDown();
+            }
+        };
+        ExpiryScheduler scheduler = new ExpiryScheduler(service(window), TimeSource.SYSTEM, 10l);
+
+        scheduler.start();
+        assertTrue(scheduler.isRunning());
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+
+        scheduler.stop();
+        assertFalse(scheduler.isRunning());
+    }
+
+    @Test
+    public void testDisabled() {
+        ExpiryScheduler scheduler = new ExpiryScheduler(service(new LockedWindow(60000l, 1l)), TimeSource.SYSTEM, 0l);
+        scheduler.start();
+        assertFalse(scheduler.isRunning());
+    }
+
+    private static StatisticsService service(StatisticsWindow window60s) {
+        MultiResolutionWindow window = new MultiResolutionWindow(60000l, new long[]{60000l}, new StatisticsWindow[]{window60s});
+        OrderStatisticsWindow orderWindow = new OrderStatisticsWindow(60000l, 1l, 1024);
+        KeyedWindows keyedWindows = new KeyedWindows(60000l, 1000l, 1);
+        TransactionJournal journal = new TransactionJournal(window, orderWindow, keyedWindows, TimeSource.SYSTEM, "", 1 << 16, 100l, 1 << 10, "", 10000l);
+        return new StatisticsService(window, orderWindow, keyedWindows, new RollupHistory(new long[]{1000l}, new long[]{60000l}),
+                journal, new ObjectMapper(), new SimpleMeterRegistry(), TimeSource.SYSTEM, 0l);
+    }
+}
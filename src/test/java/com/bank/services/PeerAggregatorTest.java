@@ -0,0 +1,115 @@
+package com.bank.services;
+
+import com.bank.Application;
+import com.bank.exceptions.PeerUnavailableException;
+import com.bank.models.Statistics;
+import com.bank.models.Transaction;
+import com.bank.utils.LockedWindow;
+import com.bank.utils.StatisticsWindow;
+import com.bank.utils.WindowCheckpoints;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class PeerAggregatorTest {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @LocalServerPort
+    private int port;
+
+    @After
+    public void clean() {
+        statisticsService.cleanAll();
+    }
+
+    @Test
+    public void testMergePartials() {
+        long now = System.currentTimeMillis();
+        StatisticsWindow first = new LockedWindow(60000l, 100l);
+        first.add(now - 1000, new BigDecimal("10"), now);
+        first.add(now, new BigDecimal("20"), now);
+        StatisticsWindow second = new LockedWindow(60000l, 100l);
+        second.add(now, new BigDecimal("30"), now);
+        second.add(now - 70000, new BigDecimal("40"), now - 20000);
+
+        Map<String, byte[]> partials = new LinkedHashMap<>();
+        partials.put("first", WindowCheckpoints.capture(first));
+        partials.put("second", WindowCheckpoints.capture(second));
+        Statistics statistics = statisticsService.mergePartials(60000l, partials, true);
+        assertTrue(statistics.getCount() == 3);
+        assertEquals(statistics.getSum(), "60.00");
+        assertEquals(statistics.getMin(), "10.00");
+        assertEquals(statistics.getMax(), "30.00");
+        assertTrue(Math.abs(Double.parseDouble(statistics.getP50()) - 20) <= 0.2);
+    }
+
+    @Test
+    public void testGetStatistics() {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal("12.5"));
+        transaction.setTimestamp(new Date());
+        statisticsService.createTransaction(transaction);
+
+        // This instance listed as its own peer counts its transactions twice
+        PeerAggregator aggregator = new PeerAggregator(statisticsService, new String[]{"http://localhost:" + port + "/"}, 1000);
+        Statistics statistics = aggregator.getStatistics(60000l, false);
+        aggregator.destroy();
+        assertTrue(statistics.getCount() == 2);
+        assertEquals(statistics.getSum(), "25.00");
+        assertEquals(statistics.getAvg(), "12.50");
+    }
+
+    @Test
+    public void testMalformedPartial() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/statistics/partial", exchange -> {
+            byte[] garbage = {2, 7, 7, 7};
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, garbage.length);
+            exchange.getResponseBody().write(garbage);
+            exchange.close();
+        });
+        server.start();
+        String peer = "http://localhost:" + server.getAddress().getPort();
+        PeerAggregator aggregator = new PeerAggregator(statisticsService, new String[]{peer}, 1000);
+        try {
+            aggregator.getStatistics(60000l, false);
+            fail("Merged a malformed partial");
+        } catch (PeerUnavailableException ex) {
+            assertTrue(ex.getMessage().startsWith("Malformed partial from peer " + peer));
+        } finally {
+            aggregator.destroy();
+            server.stop(0);
+        }
+    }
+
+    @Test(expected = PeerUnavailableException.class)
+    public void testPeerUnavailable() {
+        PeerAggregator aggregator = new PeerAggregator(statisticsService, new String[]{"http://localhost:" + port, "http://localhost:1"}, 1000);
+        try {
+            aggregator.getStatistics(60000l, false);
+        } finally {
+            aggregator.destroy();
+        }
+    }
+}
@@ -3,8 +3,16 @@ package com.bank.services;
 import com.bank.Application;
 import com.bank.exceptions.ExpiredTransactionException;
 import com.bank.exceptions.FutureTransactionException;
+import com.bank.exceptions.InvalidQuantileException;
+import com.bank.exceptions.UnknownWindowException;
+import com.bank.models.Admission;
+import com.bank.models.BatchResult;
+import com.bank.models.OrderStatistic;
 import com.bank.models.Statistics;
+import com.bank.models.StatisticsSnapshot;
 import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,18 +21,24 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = Application.class)
+@SpringBootTest(classes = Application.class, properties = "statistics.exact-quantiles=true")
 public class StatisticsServiceTest {
 
     @Autowired
     private StatisticsService statisticsService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @After
     public void clean() {
         statisticsService.cleanAll();
@@ -51,6 +65,125 @@ public class StatisticsServiceTest {
         assertTrue(statistics.getCount() == 2);
     }
 
+    @Test
+    public void testPercentiles() {
+        for (int i = 1; i <= 100; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(BigDecimal.valueOf(i));
+            transaction.setTimestamp(new Date());
+            statisticsService.createTransaction(transaction);
+        }
+
+        Statistics statistics = statisticsService.getStatistics();
+
+        assertTrue(Math.abs(Double.parseDouble(statistics.getP50()) - 50) <= 0.5);
+        assertTrue(Math.abs(Double.parseDouble(statistics.getP95()) - 95) <= 0.95);
+        assertTrue(Math.abs(Double.parseDouble(statistics.getP99()) - 99) <= 0.99);
+        assertFalse(new String(statisticsService.getSnapshot().getJson()).contains("p50"));
+        assertTrue(new String(statisticsService.getSnapshot().getPercentilesJson()).contains("\"p50\""));
+    }
+
+    @Test
+    public void testQuantileAndRank() {
+        for (int i = 100; i >= 1; i--) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(BigDecimal.valueOf(i));
+            transaction.setTimestamp(new Date());
+            statisticsService.createTransaction(transaction);
+        }
+
+        OrderStatistic median = statisticsService.getQuantile(0.5);
+        assertEquals(median.getAmount(), "50.00");
+        assertTrue(median.getRank() == 49);
+        assertTrue(median.getCount() == 100);
+        assertEquals(statisticsService.getQuantile(1).getAmount(), "100.00");
+
+        OrderStatistic rank = statisticsService.getRank(new BigDecimal("10.5"));
+        assertEquals(rank.getAmount(), "10.50");
+        assertTrue(rank.getRank() == 10);
+    }
+
+    @Test(expected = InvalidQuantileException.class)
+    public void testInvalidQuantile() {
+        statisticsService.getQuantile(1.5);
+    }
+
+    @Test
+    public void testKeyStatistics() {
+        String[] keys = {"merchant-1", "merchant-2", "merchant-1", null};
+        for (int i = 0; i < keys.length; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(BigDecimal.valueOf(10 * (i + 1)));
+            transaction.setTimestamp(new Date());
+            transaction.setKey(keys[i]);
+            statisticsService.createTransaction(transaction);
+        }
+
+        Statistics statistics = statisticsService.getStatistics("merchant-1");
+        assertEquals(statistics.getSum(), "40.00");
+        assertTrue(statistics.getCount() == 2);
+        assertTrue(statisticsService.getStatistics("merchant-2").getCount() == 1);
+        assertTrue(statisticsService.getStatistics("merchant-3").getCount() == 0);
+        assertTrue(statisticsService.getStatistics().getCount() == 4);
+    }
+
+    @Test
+    public void testSnapshotVersion() {
+        StatisticsSnapshot snapshot = statisticsService.getSnapshot();
+        assertTrue(statisticsService.getSnapshot() == snapshot);
+
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(100.000));
+        transaction.setTimestamp(new Date());
+        statisticsService.createTransaction(transaction);
+
+        StatisticsSnapshot updated = statisticsService.getSnapshot();
+        assertTrue(updated.getVersion() > snapshot.getVersion());
+        assertFalse(updated.getEtag().equals(snapshot.getEtag()));
+        assertTrue(new String(updated.getJson()).contains("\"count\":1"));
+    }
+
+    @Test
+    public void testTransactionMetrics() {
+        double accepted = meterRegistry.get("statistics.transactions").tag("result", "accepted").counter().count();
+        double future = meterRegistry.get("statistics.transactions").tag("result", "future").counter().count();
+
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(100.000));
+        transaction.setTimestamp(new Date());
+        statisticsService.createTransaction(transaction);
+
+        Transaction futureTransaction = new Transaction();
+        futureTransaction.setAmount(new BigDecimal(100.000));
+        futureTransaction.setTimestamp(new Date(System.currentTimeMillis() + 100000));
+        try {
+            statisticsService.createTransaction(futureTransaction);
+        } catch (FutureTransactionException ex) {
+            // counted as future
+        }
+
+        assertTrue(meterRegistry.get("statistics.transactions").tag("result", "accepted").counter().count() == accepted + 1);
+        assertTrue(meterRegistry.get("statistics.transactions").tag("result", "future").counter().count() == future + 1);
+        assertTrue(meterRegistry.get("statistics.window.transactions").gauge().value() == 1);
+        assertTrue(meterRegistry.get("statistics.window.lock.hold").timer().count() > 0);
+    }
+
+    @Test
+    public void testWindowSnapshots() {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(100.000));
+        transaction.setTimestamp(new Date(System.currentTimeMillis() - 5000));
+        statisticsService.createTransaction(transaction);
+
+        assertTrue(statisticsService.getSnapshot(3600000l).getStatistics().getCount() == 1);
+        assertTrue(statisticsService.getSnapshot(1000l).getStatistics().getCount() == 0);
+    }
+
+    @Test(expected = UnknownWindowException.class)
+    public void testUnknownWindow() {
+        statisticsService.getSnapshot(120000l);
+    }
+
     @Test(expected = ExpiredTransactionException.class)
     public void testCreateTransactionWithOldDate() {
         Transaction transaction = new Transaction();
@@ -67,6 +200,74 @@ public class StatisticsServiceTest {
         statisticsService.createTransaction(transaction);
     }
 
+    @Test
+    public void testAdmit() {
+        long now = System.currentTimeMillis();
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal("100.00"));
+
+        transaction.setTimestampMillis(now);
+        assertTrue(statisticsService.admit(transaction) == Admission.ACCEPTED);
+        transaction.setTimestampMillis(now - 100000);
+        assertTrue(statisticsService.admit(transaction) == Admission.EXPIRED);
+        transaction.setTimestampMillis(now + 100000);
+        assertTrue(statisticsService.admit(transaction) == Admission.FUTURE);
+
+        assertTrue(statisticsService.getStatistics().getCount() == 1);
+    }
+
+    @Test
+    public void testRejectionsAreStackless() {
+        assertTrue(new ExpiredTransactionException("Expired transaction").getStackTrace().length == 0);
+        assertTrue(new FutureTransactionException("Future dated transaction").getStackTrace().length == 0);
+    }
+
+    @Test
+    public void testCreateTransactions() {
+        long now = System.currentTimeMillis();
+        List<Transaction> transactions = new ArrayList<>();
+        for (long offset : new long[]{0, 1000, 100000, -100000}) {
+            Transaction transaction = new Transaction();
+            transaction.setAmount(new BigDecimal(offset == 0 ? 100 : 110));
+            transaction.setTimestamp(new Date(now - offset));
+            transactions.add(transaction);
+        }
+        transactions.add(new Transaction());
+
+        BatchResult result = statisticsService.createTransactions(transactions);
+
+        assertTrue(result.getAccepted() == 2);
+        assertTrue(result.getExpired() == 1);
+        assertTrue(result.getFuture() == 1);
+        assertTrue(result.getInvalid() == 1);
+
+        Statistics statistics = statisticsService.getStatistics();
+        assertEquals(statistics.getSum(), "210.00");
+        assertTrue(statistics.getCount() == 2);
+    }
+
+    @Test
+    public void testCreateBinaryTransactions() {
+        long now = System.currentTimeMillis();
+        TransactionBatch batch = new TransactionBatch()
+                .add(now - 1000, 10000l)
+                .add(now - 2000, 1050l)
+                .add(now - 70000, 500l)
+                .add(now + 60000, 500l);
+
+        BatchResult result = statisticsService.createTransactions(batch);
+
+        assertTrue(result.getAccepted() == 2);
+        assertTrue(result.getExpired() == 1);
+        assertTrue(result.getFuture() == 1);
+        assertTrue(result.getInvalid() == 0);
+
+        Statistics statistics = statisticsService.getStatistics();
+        assertEquals(statistics.getSum(), "110.50");
+        assertEquals(statistics.getMin(), "10.50");
+        assertTrue(statistics.getCount() == 2);
+    }
+
     @Test
     public void testCleanExpiredTransactions() throws InterruptedException {
         Transaction transaction = new Transaction();
@@ -0,0 +1,139 @@
+package com.bank.services;
+
+import com.bank.config.StatisticsConfiguration;
+import com.bank.models.Admission;
+import com.bank.models.BatchResult;
+import com.bank.models.HistoryPoint;
+import com.bank.models.StatisticsHistory;
+import com.bank.models.Transaction;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.MultiResolutionWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.RollupHistory;
+import com.bank.utils.VirtualTimeSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Windows driven by a {@link VirtualTimeSource}: hours of traffic and expiry without waiting.
+ */
+public class StatisticsSimulationTest {
+
+    private VirtualTimeSource timeSource;
+    private StatisticsService service;
+
+    @Before
+    public void setUp() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        StatisticsConfiguration configuration = new StatisticsConfiguration();
+        MultiResolutionWindow window = configuration.statisticsWindow(StatisticsConfiguration.LOCKED_MODE, new String[]{"60s", "1h"}, registry);
+        OrderStatisticsWindow orderWindow = configuration.orderStatisticsWindow(1024, true);
+        KeyedWindows keyedWindows = configuration.keyedWindows(1000l);
+        RollupHistory history = configuration.rollupHistory("1h", "1d");
+        timeSource = new VirtualTimeSource(1600000000000l);
+        TransactionJournal journal = new TransactionJournal(window, orderWindow, keyedWindows, timeSource, "", 1 << 16, 100l, 1 << 10, "", 10000l);
+        service = new StatisticsService(window, orderWindow, keyedWindows, history, journal, new ObjectMapper(), registry, timeSource, 0l);
+    }
+
+    @Test
+    public void testSimulatedDay() {
+        // one transaction of 1.00 per simulated second, for a day
+        for (int second = 0; second < 86400; second++) {
+            assertTrue(service.admit(transaction(timeSource.millis(), "1.00")) == Admission.ACCEPTED);
+            timeSource.advance(1000l);
+        }
+
+        assertTrue(service.getStatistics().getCount() == 60);
+        assertEquals(service.getStatistics().getSum(), "60.00");
+        // the hour expires by slices of 6s
+        long hourCount = service.getSnapshot(3600000l).getStatistics().getCount();
+        assertTrue(hourCount > 3594 && hourCount <= 3600);
+        assertTrue(service.getQuantile(0.5).getCount() == 60);
+    }
+
+    @Test
+    public void testExpiry() {
+        service.admit(transaction(timeSource.millis() - 59999l, "10.00"));
+        service.admit(transaction(timeSource.millis(), "20.00"));
+        assertTrue(service.admit(transaction(timeSource.millis() + 1l, "5.00")) == Admission.FUTURE);
+        assertTrue(service.getStatistics().getCount() == 2);
+
+        // expired with its 100ms slice, once the oldest time of the slice is older than the window
+        timeSource.advance(1l);
+        assertTrue(service.getStatistics().getCount() == 1);
+        assertEquals(service.getStatistics().getMax(), "20.00");
+
+        timeSource.advance(60000l);
+        assertTrue(service.getStatistics().getCount() == 0);
+        assertTrue(service.getSnapshot(3600000l).getStatistics().getCount() == 2);
+    }
+
+    @Test
+    public void testAdmissionByExactAge() {
+        timeSource.advance(50l);
+        assertTrue(service.admit(transaction(timeSource.millis() - 60000l, "1.00")) == Admission.ACCEPTED);
+        assertTrue(service.admit(transaction(timeSource.millis() - 60001l, "1.00")) == Admission.EXPIRED);
+
+        // in the 60s by 10ms, but its 100ms slice is not anymore
+        Transaction late = transaction(timeSource.millis() - 59990l, "10.00");
+        late.setKey("account-1");
+        Transaction current = transaction(timeSource.millis(), "20.00");
+        current.setKey("account-1");
+        Transaction expired = transaction(timeSource.millis() - 60001l, "30.00");
+        expired.setKey("account-1");
+
+        BatchResult result = service.createTransactions(Arrays.asList(late, current, expired));
+        assertTrue(result.getAccepted() == 2 && result.getExpired() == 1);
+        // dropped up to a slice early by the 60s window, kept by the others
+        assertTrue(service.getStatistics().getCount() == 1);
+        assertTrue(service.getSnapshot(3600000l).getStatistics().getCount() == 3);
+        assertTrue(service.getStatistics("account-1").getCount() == 2);
+        assertTrue(service.getHistory(null, null, null).getPoints().stream()
+                .mapToLong(point -> point.getStatistics().getCount()).sum() == 3);
+    }
+
+    @Test
+    public void testHistory() {
+        // on a minute boundary
+        long start = timeSource.advance(20000l);
+        // one transaction of 1.00 per simulated second, for two hours
+        for (int second = 0; second < 7200; second++) {
+            service.admit(transaction(timeSource.millis(), "1.00"));
+            timeSource.advance(1000l);
+        }
+
+        StatisticsHistory minutes = service.getHistory(start, null, 60000l);
+        assertTrue(minutes.getPoints().size() == 120);
+        for (HistoryPoint point : minutes.getPoints()) {
+            assertTrue(point.getStatistics().getCount() == 60);
+            assertEquals(point.getStatistics().getAvg(), "1.00");
+        }
+
+        // aligned on the half hour, 27 minutes before the start
+        StatisticsHistory halfHours = service.getHistory(start, start + 7200000l, 1800000l);
+        assertTrue(halfHours.getPoints().size() == 5);
+        assertTrue(halfHours.getPoints().get(0).getStatistics().getCount() == 180);
+        assertTrue(halfHours.getPoints().get(1).getStatistics().getCount() == 1800);
+        StatisticsHistory lastMinute = service.getHistory(timeSource.millis() - 60000l, null, 10000l);
+        assertTrue(lastMinute.getPoints().size() == 6);
+        assertEquals(lastMinute.getPoints().get(5).getStatistics().getSum(), "10.00");
+        // the seconds only go an hour back
+        assertTrue(service.getHistory(start, null, 1000l).getPoints().get(0).getStatistics().getCount() == 0);
+    }
+
+    private static Transaction transaction(long timestamp, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setTimestampMillis(timestamp);
+        return transaction;
+    }
+}
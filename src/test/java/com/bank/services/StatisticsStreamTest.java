@@ -0,0 +1,113 @@
+package com.bank.services;
+
+import com.bank.models.Statistics;
+import com.bank.models.StatisticsSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StatisticsStreamTest {
+
+    private static final long INTERVAL = 50l;
+
+    private final AtomicReference<StatisticsSnapshot> current = new AtomicReference<>();
+    private StatisticsStream stream;
+
+    @Before
+    public void createStream() {
+        StatisticsService service = mock(StatisticsService.class);
+        when(service.getSnapshot()).thenAnswer(invocation -> current.get());
+        publish(1l);
+        stream = new StatisticsStream(service, INTERVAL, 60000l);
+    }
+
+    @After
+    public void destroyStream() {
+        stream.destroy();
+    }
+
+    @Test
+    public void testCoalescesWrites() throws InterruptedException {
+        List<byte[]> frames = new CopyOnWriteArrayList<>();
+        Disposable subscription = stream.subscribe(false).subscribe(frames::add);
+        Thread.sleep(INTERVAL * 4);
+        assertTrue(frames.size() == 1);
+        assertEquals(new String(frames.get(0), StandardCharsets.UTF_8), "id:a-1\nevent:statistics\ndata:{\"count\":1}\n\n");
+
+        for (long version = 2l; version <= 100l; version++) {
+            publish(version);
+        }
+        Thread.sleep(INTERVAL * 4);
+        assertTrue(frames.size() >= 2 && frames.size() <= 3);
+        assertTrue(new String(frames.get(frames.size() - 1), StandardCharsets.UTF_8).startsWith("id:a-100\n"));
+        subscription.dispose();
+    }
+
+    @Test
+    public void testSharesFrames() throws InterruptedException {
+        List<byte[]> first = new CopyOnWriteArrayList<>();
+        List<byte[]> second = new CopyOnWriteArrayList<>();
+        Disposable firstSubscription = stream.subscribe(false).subscribe(first::add);
+        Disposable secondSubscription = stream.subscribe(false).subscribe(second::add);
+        Thread.sleep(INTERVAL * 4);
+        publish(2l);
+        Thread.sleep(INTERVAL * 4);
+
+        assertTrue(first.size() == 2 && second.size() == 2);
+        assertTrue(first.get(0) == second.get(0));
+        assertTrue(first.get(1) == second.get(1));
+        firstSubscription.dispose();
+        secondSubscription.dispose();
+    }
+
+    @Test
+    public void testSlowSubscriberKeepsLatestFrames() throws InterruptedException {
+        List<byte[]> frames = new CopyOnWriteArrayList<>();
+        BaseSubscriber<byte[]> subscriber = new BaseSubscriber<byte[]>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(byte[] frame) {
+                frames.add(frame);
+            }
+        };
+        stream.subscribe(true).subscribe(subscriber);
+        for (long version = 2l; version <= 10l; version++) {
+            Thread.sleep(INTERVAL * 2);
+            publish(version);
+        }
+        Thread.sleep(INTERVAL * 4);
+        assertTrue(frames.size() == 1);
+
+        // the versions in between were dropped
+        subscriber.request(Long.MAX_VALUE);
+        Thread.sleep(INTERVAL * 2);
+        assertTrue(frames.size() <= 3);
+        assertTrue(new String(frames.get(frames.size() - 1), StandardCharsets.UTF_8).startsWith("id:a-10-p\n"));
+        subscriber.dispose();
+    }
+
+    private void publish(long version) {
+        Statistics statistics = new Statistics();
+        statistics.setCount(version);
+        byte[] json = "{\"count\":1}".getBytes(StandardCharsets.UTF_8);
+        current.set(new StatisticsSnapshot(version, System.currentTimeMillis(), statistics,
+                json, "\"a-" + version + "\"", json, "\"a-" + version + "-p\""));
+    }
+}
@@ -0,0 +1,206 @@
+package com.bank.services;
+
+import com.bank.exceptions.StatisticsException;
+import com.bank.utils.KeyedWindows;
+import com.bank.utils.LockedWindow;
+import com.bank.utils.OrderStatisticsWindow;
+import com.bank.utils.StatisticsWindow;
+import com.bank.utils.TimeSource;
+import com.bank.utils.VirtualTimeSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestart() {
+        String directory = folder.getRoot().getPath();
+        TransactionJournal journal = new TransactionJournal(new LockedWindow(60000l, 1l), new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, directory, 1 << 16, 10l, 1 << 10, "", 10000l);
+        journal.start();
+        long now = System.currentTimeMillis();
+        journal.add(now - 1000, new BigDecimal("10"), "account-1", now);
+        journal.addAll(new long[]{now - 500, now - 70000}, new BigDecimal[]{new BigDecimal("20"), new BigDecimal("30")},
+                new String[]{null, null}, 2, now, null);
+        journal.stop();
+
+        StatisticsWindow window = new LockedWindow(60000l, 1l);
+        OrderStatisticsWindow orderWindow = new OrderStatisticsWindow(60000l, 1l, 1024);
+        KeyedWindows keyedWindows = new KeyedWindows(60000l, 1000l, 1);
+        TransactionJournal restarted = new TransactionJournal(window, orderWindow, keyedWindows, TimeSource.SYSTEM, directory, 1 << 16, 10l, 1 << 10, "", 10000l);
+        restarted.start();
+        assertTrue(restarted.isRunning());
+        now = System.currentTimeMillis();
+        assertEquals(window.snapshot(now).getStatistics().getSum(), new BigDecimal("30.00"));
+        assertTrue(orderWindow.query(now, index -> index.getCount()) == 2);
+        assertTrue(keyedWindows.snapshot("account-1", now).getCount() == 1);
+
+        restarted.clear();
+        restarted.stop();
+        TransactionJournal cleared = new TransactionJournal(window, orderWindow, keyedWindows, TimeSource.SYSTEM, directory, 1 << 16, 10l, 1 << 10, "", 10000l);
+        window.clear();
+        cleared.start();
+        assertTrue(window.snapshot(System.currentTimeMillis()).getStatistics().getCount() == 0);
+        cleared.stop();
+    }
+
+    @Test
+    public void testRestartScaled() {
+        String directory = folder.getRoot().getPath();
+        TransactionJournal journal = new TransactionJournal(new LockedWindow(60000l, 1l), new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, directory, 1 << 16, 10l, 1 << 10, "", 10000l);
+        journal.start();
+        long now = System.currentTimeMillis();
+        assertTrue(journal.add(now - 1000, 1050l, "account-1", now));
+        assertTrue(journal.addAll(new long[]{now - 500, now - 70000}, new long[]{-250l, 3000l}, new String[]{null, null}, 2, now, null) == 1);
+        journal.stop();
+
+        StatisticsWindow window = new LockedWindow(60000l, 1l);
+        TransactionJournal restarted = new TransactionJournal(window, new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, directory, 1 << 16, 10l, 1 << 10, "", 10000l);
+        restarted.start();
+        now = System.currentTimeMillis();
+        assertTrue(window.snapshot(now).getStatistics().getCount() == 2);
+        assertEquals(window.snapshot(now).getStatistics().getSum(), new BigDecimal("8.00"));
+        assertEquals(window.snapshot(now).getStatistics().getMin(), new BigDecimal("-2.50"));
+        restarted.stop();
+    }
+
+    @Test
+    public void testCheckpoint() {
+        String directory = folder.getRoot().getPath() + "/wal";
+        String checkpointDirectory = folder.getRoot().getPath() + "/checkpoints";
+        TransactionJournal journal = new TransactionJournal(new LockedWindow(60000l, 1l), new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, directory, 1 << 16, 10l, 1 << 10, checkpointDirectory, 60000l);
+        journal.start();
+        long now = System.currentTimeMillis();
+        assertTrue(journal.add(now - 1000, new BigDecimal("10"), null, now));
+        journal.checkpoint();
+        assertTrue(journal.add(now - 500, new BigDecimal("20"), "account-1", now));
+        journal.stop();
+
+        // The checkpoint written on stop and the log, the records before it counted once
+        StatisticsWindow window = new LockedWindow(60000l, 1l);
+        OrderStatisticsWindow orderWindow = new OrderStatisticsWindow(60000l, 1l, 1024);
+        KeyedWindows keyedWindows = new KeyedWindows(60000l, 1000l, 1);
+        TransactionJournal restarted = new TransactionJournal(window, orderWindow, keyedWindows, TimeSource.SYSTEM, directory, 1 << 16, 10l, 1 << 10,
+                checkpointDirectory, 60000l);
+        restarted.start();
+        now = System.currentTimeMillis();
+        assertTrue(window.snapshot(now).getStatistics().getCount() == 2);
+        assertEquals(window.snapshot(now).getStatistics().getSum(), new BigDecimal("30.00"));
+        assertTrue(orderWindow.query(now, index -> index.getCount()) == 2);
+        assertTrue(keyedWindows.snapshot("account-1", now).getCount() == 1);
+        restarted.stop();
+
+        // Without the log only the checkpoint is restored
+        StatisticsWindow checkpointed = new LockedWindow(60000l, 1l);
+        TransactionJournal withoutLog = new TransactionJournal(checkpointed, new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, "", 1 << 16, 10l, 1 << 10, checkpointDirectory, 60000l);
+        withoutLog.start();
+        assertEquals(checkpointed.snapshot(System.currentTimeMillis()).getStatistics().getSum(), new BigDecimal("30.00"));
+        withoutLog.clear();
+        assertTrue(checkpointed.snapshot(System.currentTimeMillis()).getStatistics().getCount() == 0);
+        withoutLog.stop();
+
+        StatisticsWindow cleared = new LockedWindow(60000l, 1l);
+        TransactionJournal again = new TransactionJournal(cleared, new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, "", 1 << 16, 10l, 1 << 10, checkpointDirectory, 60000l);
+        again.start();
+        assertTrue(cleared.snapshot(System.currentTimeMillis()).getStatistics().getCount() == 0);
+        again.stop();
+    }
+
+    @Test
+    public void testCheckpointOnStop() {
+        String checkpointDirectory = folder.getRoot().getPath();
+        TransactionJournal journal = new TransactionJournal(new LockedWindow(60000l, 1l), new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, "", 1 << 16, 10l, 1 << 10, checkpointDirectory, 60000l);
+        journal.start();
+        long now = System.currentTimeMillis();
+        assertTrue(journal.add(now - 1000, new BigDecimal("10"), null, now));
+        journal.stop();
+
+        StatisticsWindow window = new LockedWindow(60000l, 1l);
+        TransactionJournal restarted = new TransactionJournal(window, new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, "", 1 << 16, 10l, 1 << 10, checkpointDirectory, 60000l);
+        restarted.start();
+        assertEquals(window.snapshot(System.currentTimeMillis()).getStatistics().getSum(), new BigDecimal("10.00"));
+        restarted.stop();
+    }
+
+    @Test
+    public void testRejectedNotLogged() {
+        String directory = folder.getRoot().getPath();
+        // 1ms older than the 60s
+        VirtualTimeSource timeSource = new VirtualTimeSource(1600000000050l);
+        long now = timeSource.millis();
+        TransactionJournal journal = new TransactionJournal(new LockedWindow(60000l, 100l), new OrderStatisticsWindow(60000l, 100l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), timeSource, directory, 1 << 16, 10l, 1 << 10, "", 10000l);
+        journal.start();
+        assertFalse(journal.add(now - 60001, new BigDecimal("10"), "account-1", now));
+        boolean[] accepted = new boolean[2];
+        assertTrue(journal.addAll(new long[]{now - 60001, now - 500}, new BigDecimal[]{new BigDecimal("20"), new BigDecimal("30")},
+                new String[]{"account-1", "account-1"}, 2, now, accepted) == 1);
+        assertTrue(!accepted[0] && accepted[1]);
+        journal.stop();
+
+        StatisticsWindow window = new LockedWindow(60000l, 100l);
+        KeyedWindows keyedWindows = new KeyedWindows(60000l, 1000l, 1);
+        TransactionJournal restarted = new TransactionJournal(window, new OrderStatisticsWindow(60000l, 100l, 1024), keyedWindows,
+                timeSource, directory, 1 << 16, 10l, 1 << 10, "", 10000l);
+        restarted.start();
+        assertTrue(window.snapshot(now).getStatistics().getCount() == 1);
+        assertTrue(keyedWindows.snapshot("account-1", now).getCount() == 1);
+        restarted.stop();
+    }
+
+    @Test
+    public void testLogFailureLeavesNoTrace() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("wal");
+        StatisticsWindow window = new LockedWindow(60000l, 100l);
+        TransactionJournal journal = new TransactionJournal(window, new OrderStatisticsWindow(60000l, 100l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, directory.toString(), 1 << 16, 10l, 1 << 10, "", 10000l);
+        journal.start();
+        // No segment can be created any more
+        Files.delete(directory);
+        long now = System.currentTimeMillis();
+        try {
+            journal.add(now, BigDecimal.ONE, null, now);
+            fail("Added without the log");
+        } catch (StatisticsException ex) {
+            assertTrue(window.snapshot(now).getStatistics().getCount() == 0);
+        }
+        try {
+            journal.addAll(new long[]{now}, new BigDecimal[]{BigDecimal.ONE}, new String[]{null}, 1, now, null);
+            fail("Added without the log");
+        } catch (StatisticsException ex) {
+            assertTrue(window.snapshot(now).getStatistics().getCount() == 0);
+        } finally {
+            journal.stop();
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        TransactionJournal journal = new TransactionJournal(new LockedWindow(60000l, 1l), new OrderStatisticsWindow(60000l, 1l, 1024),
+                new KeyedWindows(60000l, 1000l, 1), TimeSource.SYSTEM, "", 1 << 16, 10l, 1 << 10, "", 10000l);
+        journal.start();
+        journal.add(System.currentTimeMillis(), BigDecimal.ONE, null, System.currentTimeMillis());
+        assertFalse(journal.isRunning());
+    }
+}
@@ -0,0 +1,106 @@
+package com.bank.tools;
+
+import com.bank.config.StatisticsConfiguration;
+import com.bank.models.BatchResult;
+import com.bank.models.TransactionBatch;
+import com.bank.utils.BinaryTransactions;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionReplayTest {
+
+    // On a minute boundary
+    private static final long START = 1600000020000l;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testReplayNdjson() throws IOException {
+        StringBuilder recording = new StringBuilder();
+        for (int second = 0; second < 300; second++) {
+            recording.append("{\"amount\":\"1.00\",\"timestamp\":\"")
+                    .append(Instant.ofEpochMilli(START + second * 1000l)).append("\"}\n");
+        }
+        // recorded late, out of every window by then
+        recording.append("{\"amount\":\"1.00\",\"timestamp\":\"").append(Instant.ofEpochMilli(START)).append("\"}\n");
+
+        ByteArrayOutputStream timeline = new ByteArrayOutputStream();
+        TransactionReplay replay = new TransactionReplay(StatisticsConfiguration.LOCKED_MODE, new String[]{"60s"}, 60000l, false, timeline);
+        BatchResult result = replay.replay(new ByteArrayInputStream(recording.toString().getBytes(StandardCharsets.UTF_8)),
+                TransactionReplay.NDJSON_FORMAT);
+
+        assertTrue(result.getAccepted() == 300);
+        assertTrue(result.getExpired() == 1);
+        assertTimeline(timeline);
+    }
+
+    @Test
+    public void testReplayBinary() throws IOException {
+        ByteArrayOutputStream recording = new ByteArrayOutputStream();
+        for (int minute = 0; minute < 5; minute++) {
+            TransactionBatch batch = new TransactionBatch();
+            for (int second = 0; second < 60; second++) {
+                batch.add(START + (minute * 60 + second) * 1000l, 100l);
+            }
+            BinaryTransactions.write(batch, recording);
+        }
+        BinaryTransactions.write(new TransactionBatch().add(START, 100l), recording);
+
+        ByteArrayOutputStream timeline = new ByteArrayOutputStream();
+        TransactionReplay replay = new TransactionReplay(StatisticsConfiguration.LOCKED_MODE, new String[]{"60s"}, 60000l, false, timeline);
+        BatchResult result = replay.replay(new ByteArrayInputStream(recording.toByteArray()), TransactionReplay.BINARY_FORMAT);
+
+        assertTrue(result.getAccepted() == 300);
+        assertTrue(result.getExpired() == 1);
+        assertTimeline(timeline);
+    }
+
+    @Test
+    public void testReplayWindows() throws IOException {
+        StringBuilder recording = new StringBuilder();
+        for (int second = 0; second < 120; second++) {
+            recording.append("{\"amount\":\"2.00\",\"timestamp\":").append(START + second * 1000l).append("}\n");
+        }
+
+        ByteArrayOutputStream timeline = new ByteArrayOutputStream();
+        TransactionReplay replay = new TransactionReplay(StatisticsConfiguration.LOCKED_MODE, new String[]{"60s", "1h"}, 30000l, true, timeline);
+        replay.replay(new ByteArrayInputStream(recording.toString().getBytes(StandardCharsets.UTF_8)), TransactionReplay.NDJSON_FORMAT);
+
+        // a snapshot every 30s up to 2 minutes, for each window
+        String[] lines = new String(timeline.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertTrue(lines.length == 8);
+        assertTrue(replay.getSnapshots() == 8);
+        for (int i = 6; i < 8; i++) {
+            JsonNode line = objectMapper.readTree(lines[i]);
+            long count = line.get("statistics").get("count").asLong();
+            assertTrue(line.get("window").asText().equals("1h") ? count == 120 : count == 60);
+            assertEquals(line.get("statistics").get("p50").asText(), "2.00");
+        }
+    }
+
+    /**
+     * One snapshot a minute, each holding the 60 transactions of the previous minute.
+     */
+    private void assertTimeline(ByteArrayOutputStream timeline) throws IOException {
+        String[] lines = new String(timeline.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertTrue(lines.length == 5);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode line = objectMapper.readTree(lines[i]);
+            assertEquals(line.get("time").asText(), Instant.ofEpochMilli(START + (i + 1) * 60000l).toString()
+                    .replace("Z", ".000Z"));
+            assertEquals(line.get("window").asText(), "1m");
+            assertTrue(line.get("statistics").get("count").asLong() == 60);
+            assertEquals(line.get("statistics").get("sum").asText(), "60.00");
+        }
+    }
+}
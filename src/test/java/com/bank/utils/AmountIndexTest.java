@@ -0,0 +1,70 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AmountIndexTest {
+
+    @Test
+    public void testSelectAndRank() {
+        Random random = new Random(7);
+        long[] amounts = new long[1000];
+        AmountIndex index = new AmountIndex(1024);
+        for (int i = 0; i < amounts.length; i++) {
+            // Mostly within the buckets, some negative and some overflowing
+            amounts[i] = random.nextInt(1400) - 200;
+            index.add(amounts[i]);
+        }
+        Arrays.sort(amounts);
+
+        assertTrue(index.getCount() == amounts.length);
+        for (int rank = 0; rank < amounts.length; rank++) {
+            assertEquals(index.select(rank), BigDecimal.valueOf(amounts[rank], 2));
+        }
+        for (long amount = -250; amount < 1250; amount += 7) {
+            long below = 0;
+            while (below < amounts.length && amounts[(int) below] < amount) {
+                below++;
+            }
+            assertTrue(index.rank(BigDecimal.valueOf(amount, 2)) == below);
+        }
+    }
+
+    @Test
+    public void testQuantizesToCents() {
+        AmountIndex index = new AmountIndex(1024);
+        index.add(new BigDecimal("1.005"));
+        index.add(new BigDecimal("1E+30"));
+
+        assertEquals(index.select(0), new BigDecimal("1.01"));
+        assertEquals(index.select(1), new BigDecimal("1E+30").setScale(2));
+        assertTrue(index.rank(new BigDecimal("1.01")) == 0);
+        assertTrue(index.rank(new BigDecimal("1.011")) == 0);
+        assertTrue(index.rank(new BigDecimal("2")) == 1);
+    }
+
+    @Test
+    public void testRemove() {
+        AmountIndex index = new AmountIndex(1024);
+        index.add(500l);
+        index.add(-500l);
+        index.add(5000l);
+        index.remove(500l);
+        index.remove(new BigDecimal("-5"));
+
+        assertTrue(index.getCount() == 1);
+        assertEquals(index.select(0), new BigDecimal("50.00"));
+        assertTrue(index.rank(new BigDecimal("100")) == 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectOutOfRange() {
+        new AmountIndex(1024).select(0);
+    }
+}
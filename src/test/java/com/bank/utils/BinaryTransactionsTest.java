@@ -0,0 +1,98 @@
+package com.bank.utils;
+
+import com.bank.models.Transaction;
+import com.bank.models.TransactionBatch;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertTrue;
+
+public class BinaryTransactionsTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        TransactionBatch batch = new TransactionBatch(1);
+        for (int i = 0; i < 100; i++) {
+            batch.add(1000l + i, -50l * i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTransactions.write(batch, out);
+        assertTrue(out.size() == 4 + 100 * BinaryTransactions.RECORD_SIZE);
+
+        TransactionBatch read = BinaryTransactions.read(new ByteArrayInputStream(out.toByteArray()));
+        TransactionBatch decoded = BinaryTransactions.decode(ByteBuffer.wrap(out.toByteArray()));
+        assertTrue(read.getSize() == 100);
+        assertTrue(decoded.getSize() == 100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(read.getTimestamp(i) == 1000l + i && read.getAmount(i) == -50l * i);
+            assertTrue(decoded.getTimestamp(i) == 1000l + i && decoded.getAmount(i) == -50l * i);
+        }
+    }
+
+    @Test
+    public void testEncodeTransactions() throws IOException {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal("12.3"));
+        transaction.setTimestamp(new Date(1000l));
+
+        TransactionBatch batch = BinaryTransactions.decode(ByteBuffer.wrap(BinaryTransactions.encode(Arrays.asList(transaction, transaction))));
+        assertTrue(batch.getSize() == 2);
+        assertTrue(batch.getTimestamp(1) == 1000l);
+        assertTrue(batch.getAmount(1) == 1230l);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeUnscalableAmount() {
+        Transaction transaction = new Transaction();
+        transaction.setAmount(new BigDecimal("12.345"));
+        transaction.setTimestamp(new Date(1000l));
+        BinaryTransactions.encode(Arrays.asList(transaction));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeTruncated() throws IOException {
+        byte[] encoded = BinaryTransactions.encode(new TransactionBatch().add(1000l, 1l).add(2000l, 2l));
+        BinaryTransactions.decode(ByteBuffer.wrap(encoded, 0, encoded.length - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadTrailingBytes() throws IOException {
+        byte[] encoded = BinaryTransactions.encode(new TransactionBatch().add(1000l, 1l));
+        BinaryTransactions.read(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length + 1)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeInvalidCount() throws IOException {
+        BinaryTransactions.decode(ByteBuffer.allocate(4).putInt(0, -1));
+    }
+
+    @Test
+    public void testReadBatches() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTransactions.write(new TransactionBatch().add(1000l, 1l).add(2000l, 2l), out);
+        BinaryTransactions.write(new TransactionBatch(), out);
+        BinaryTransactions.write(new TransactionBatch().add(3000l, 3l), out);
+
+        long[] sums = {0l, 0l};
+        long read = BinaryTransactions.readBatches(new ByteArrayInputStream(out.toByteArray()), (timestamp, amount) -> {
+            sums[0] += timestamp;
+            sums[1] += amount;
+        });
+        assertTrue(read == 3);
+        assertTrue(sums[0] == 6000l && sums[1] == 6l);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadBatchesInvalidCount() throws IOException {
+        BinaryTransactions.readBatches(new ByteArrayInputStream(new byte[]{-1, -1, -1, -1}), (timestamp, amount) -> {
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixedPointStatisticsTest {
+
+    @Test
+    public void testAccept() {
+        FixedPointStatistics statistics = new FixedPointStatistics();
+        statistics.accept(new BigDecimal("10.5"));
+        statistics.accept(new BigDecimal("20"));
+        statistics.accept(new BigDecimal("-3.25"));
+
+        assertTrue(statistics.isScaled());
+        assertTrue(statistics.getCount() == 3);
+        assertEquals(statistics.getSum(), new BigDecimal("27.25"));
+        assertEquals(statistics.getMin(), new BigDecimal("-3.25"));
+        assertEquals(statistics.getMax(), new BigDecimal("20.00"));
+    }
+
+    @Test
+    public void testScalable() {
+        assertTrue(FixedPointStatistics.isScalable(new BigDecimal("12.30")));
+        assertTrue(FixedPointStatistics.isScalable(new BigDecimal("12.3000")));
+        assertTrue(FixedPointStatistics.isScalable(new BigDecimal("0.000")));
+        assertFalse(FixedPointStatistics.isScalable(new BigDecimal("0.005")));
+        assertFalse(FixedPointStatistics.isScalable(new BigDecimal("1E+30")));
+
+        assertTrue(FixedPointStatistics.toScaled(new BigDecimal("12.3000")) == 1230l);
+        assertTrue(FixedPointStatistics.toScaled(new BigDecimal("1E+3")) == 100000l);
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals(FixedPointStatistics.format(0l), "0.00");
+        assertEquals(FixedPointStatistics.format(5l), "0.05");
+        assertEquals(FixedPointStatistics.format(-5l), "-0.05");
+        assertEquals(FixedPointStatistics.format(-12345l), "-123.45");
+        assertEquals(FixedPointStatistics.format(Long.MIN_VALUE), BigDecimal.valueOf(Long.MIN_VALUE, 2).toString());
+    }
+
+    @Test
+    public void testAverageRoundsLikeBigDecimal() {
+        long[][] cases = {{1l, 2l}, {1l, 2l, 2l}, {-1l, -2l}, {-1l, -2l, -2l}, {10l, 5l, 0l}, {7l, 7l, 8l}};
+        for (long[] amounts : cases) {
+            FixedPointStatistics statistics = new FixedPointStatistics();
+            for (long amount : amounts) {
+                statistics.accept(amount);
+            }
+            String expected = statistics.getAverage(MathContext.DECIMAL128).setScale(2, BigDecimal.ROUND_HALF_UP).toString();
+            assertEquals(FixedPointStatistics.format(statistics.getScaledAverage()), expected);
+        }
+    }
+
+    @Test
+    public void testFallbackOnUnscalableAmount() {
+        FixedPointStatistics statistics = new FixedPointStatistics();
+        statistics.accept(new BigDecimal("1.00"));
+        statistics.accept(new BigDecimal("0.005"));
+
+        assertFalse(statistics.isScaled());
+        assertFalse(statistics.hasExactAverage());
+        assertEquals(statistics.getSum(), new BigDecimal("1.005"));
+        assertEquals(statistics.getMin(), new BigDecimal("0.005"));
+
+        statistics.reset();
+        assertTrue(statistics.isScaled());
+        assertTrue(statistics.getCount() == 0);
+    }
+
+    @Test
+    public void testFallbackOnOverflow() {
+        FixedPointStatistics statistics = new FixedPointStatistics();
+        statistics.accept(Long.MAX_VALUE);
+        statistics.accept(1l);
+
+        assertFalse(statistics.isScaled());
+        assertEquals(statistics.getSum(), BigDecimal.valueOf(Long.MAX_VALUE, 2).add(new BigDecimal("0.01")));
+        assertEquals(statistics.getMax(), BigDecimal.valueOf(Long.MAX_VALUE, 2));
+    }
+
+    @Test
+    public void testCombineScaled() {
+        FixedPointStatistics statistics = new FixedPointStatistics()
+                .combineScaled(0l, 0l, 0l, 0l)
+                .combineScaled(2l, 300l, 100l, 200l)
+                .combineScaled(1l, -50l, -50l, -50l);
+        assertTrue(statistics.isScaled());
+        assertTrue(statistics.getCount() == 3);
+        assertTrue(statistics.getScaledSum() == 250l);
+        assertTrue(statistics.getScaledMin() == -50l);
+        assertTrue(statistics.getScaledMax() == 200l);
+
+        statistics.combineScaled(1l, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+        assertFalse(statistics.isScaled());
+        assertTrue(statistics.getCount() == 4);
+        assertEquals(statistics.getSum(), BigDecimal.valueOf(Long.MAX_VALUE, 2).add(new BigDecimal("2.50")));
+        assertEquals(statistics.getMax(), BigDecimal.valueOf(Long.MAX_VALUE, 2));
+        assertEquals(statistics.getMin(), new BigDecimal("-0.50"));
+    }
+
+    @Test
+    public void testCombineAndSubtract() {
+        FixedPointStatistics first = new FixedPointStatistics();
+        first.accept(100l);
+        first.accept(900l);
+        FixedPointStatistics second = new FixedPointStatistics();
+        second.accept(500l);
+
+        FixedPointStatistics totals = new FixedPointStatistics().combine(first).combine(second);
+        assertTrue(totals.getScaledSum() == 1500l);
+        assertTrue(totals.getScaledMin() == 100l);
+        assertTrue(totals.getScaledMax() == 900l);
+        assertTrue(totals.sharesExtremes(first));
+        assertFalse(totals.sharesExtremes(second));
+
+        totals.subtract(first);
+        totals.setExtremes(second);
+        assertTrue(totals.getCount() == 1);
+        assertTrue(totals.getScaledSum() == 500l);
+        assertTrue(totals.getScaledMin() == 500l);
+        assertTrue(totals.getScaledMax() == 500l);
+    }
+}
@@ -0,0 +1,57 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertTrue;
+
+public class IsoTimestampsTest {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX").withZone(ZoneId.of("UTC"));
+
+    @Test
+    public void testParse() {
+        assertTrue(IsoTimestamps.parse("1970-01-01T00:00:00.000Z") == 0l);
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40.312Z") == Instant.parse("2021-05-02T10:51:40.312Z").toEpochMilli());
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40Z") == Instant.parse("2021-05-02T10:51:40Z").toEpochMilli());
+        assertTrue(IsoTimestamps.parse("2020-02-29T23:59:59.999Z") == Instant.parse("2020-02-29T23:59:59.999Z").toEpochMilli());
+        assertTrue(IsoTimestamps.parse("1969-12-31T23:59:59.999Z") == -1l);
+    }
+
+    @Test
+    public void testParseOffsets() {
+        long expected = OffsetDateTime.parse("2021-05-02T10:51:40.312+02:00").toInstant().toEpochMilli();
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40.312+02:00") == expected);
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40.312+0200") == expected);
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40.312+02") == expected);
+        assertTrue(IsoTimestamps.parse("2021-05-02T05:21:40.312-03:30") == expected);
+    }
+
+    @Test
+    public void testParseRandom() {
+        SplittableRandom random = new SplittableRandom(42l);
+        for (int i = 0; i < 10000; i++) {
+            long millis = random.nextLong(-5000000000000l, 5000000000000l);
+            assertTrue(IsoTimestamps.parse(FORMATTER.format(Instant.ofEpochMilli(millis))) == millis);
+        }
+    }
+
+    @Test
+    public void testParseInvalid() {
+        assertTrue(IsoTimestamps.parse("4/23/2018 11:32 PM") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("2021-05-02") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40.312") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40.31Z") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("2021-13-02T10:51:40.312Z") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("2021-02-29T10:51:40.312Z") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("2021-05-02T24:00:00.000Z") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("2021-05-02T10:51:40.312+2:00") == IsoTimestamps.INVALID);
+        assertTrue(IsoTimestamps.parse("1500-05-02T10:51:40.312Z") == IsoTimestamps.INVALID);
+    }
+}
@@ -0,0 +1,74 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedWindowsTest {
+
+    private static final long NOW = 1_000_000l;
+
+    @Test
+    public void testAddAndSnapshot() {
+        KeyedWindows windows = new KeyedWindows(60000l, 1000l, 4);
+
+        assertTrue(windows.add("alice", NOW - 100, new BigDecimal("10.00"), NOW));
+        assertTrue(windows.add("alice", NOW - 30000, new BigDecimal("30.00"), NOW));
+        assertTrue(windows.add("bob", NOW - 100, new BigDecimal("5.00"), NOW));
+        assertFalse(windows.add("bob", NOW - 61000, new BigDecimal("5.00"), NOW));
+
+        FixedPointStatistics alice = windows.snapshot("alice", NOW);
+        assertTrue(alice.getCount() == 2);
+        assertEquals(alice.getSum(), new BigDecimal("40.00"));
+        assertEquals(alice.getMin(), new BigDecimal("10.00"));
+        assertTrue(windows.snapshot("bob", NOW).getCount() == 1);
+        assertTrue(windows.snapshot("carol", NOW).getCount() == 0);
+        assertTrue(windows.getKeyCount() == 2);
+    }
+
+    @Test
+    public void testAddScaled() {
+        KeyedWindows windows = new KeyedWindows(60000l, 1000l, 4);
+
+        assertTrue(windows.add("alice", NOW - 100, 1000l, NOW));
+        assertTrue(windows.add("alice", NOW - 200, new BigDecimal("2.5"), NOW));
+        assertFalse(windows.add("alice", NOW - 61000, 500l, NOW));
+
+        FixedPointStatistics alice = windows.snapshot("alice", NOW);
+        assertTrue(alice.getCount() == 2);
+        assertEquals(alice.getSum(), new BigDecimal("12.50"));
+        assertEquals(alice.getMax(), new BigDecimal("10.00"));
+    }
+
+    @Test
+    public void testExpireDropsEmptyKeys() {
+        KeyedWindows windows = new KeyedWindows(60000l, 1000l, 4);
+        windows.add("alice", NOW - 59500, new BigDecimal("30.00"), NOW);
+        windows.add("alice", NOW - 100, new BigDecimal("10.00"), NOW);
+        windows.add("bob", NOW - 59500, new BigDecimal("5.00"), NOW);
+
+        windows.expire(NOW + 1000);
+        assertTrue(windows.getKeyCount() == 1);
+        assertEquals(windows.snapshot("alice", NOW + 1000).getMax(), new BigDecimal("10.00"));
+
+        assertTrue(windows.snapshot("alice", NOW + 60000).getCount() == 0);
+        assertTrue(windows.getKeyCount() == 0);
+    }
+
+    @Test
+    public void testOutOfOrderSlices() {
+        KeyedWindows windows = new KeyedWindows(60000l, 1000l, 1);
+        windows.add("alice", NOW - 100, new BigDecimal("1"), NOW);
+        windows.add("alice", NOW - 20000, new BigDecimal("2"), NOW);
+        windows.add("alice", NOW - 10000, new BigDecimal("3"), NOW);
+        windows.add("alice", NOW - 59500, new BigDecimal("4"), NOW);
+
+        assertEquals(windows.snapshot("alice", NOW).getSum(), new BigDecimal("10.00"));
+        assertEquals(windows.snapshot("alice", NOW + 1000).getSum(), new BigDecimal("6.00"));
+        assertEquals(windows.snapshot("alice", NOW + 51000).getSum(), new BigDecimal("1.00"));
+    }
+}
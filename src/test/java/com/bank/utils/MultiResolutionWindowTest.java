@@ -0,0 +1,82 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MultiResolutionWindowTest {
+
+    private static final long NOW = 10_000_000l;
+
+    private MultiResolutionWindow window() {
+        long[] windowTimes = {1000l, 60000l, 3600000l};
+        StatisticsWindow[] windows = new StatisticsWindow[windowTimes.length];
+        for (int i = 0; i < windowTimes.length; i++) {
+            windows[i] = new LockedWindow(windowTimes[i], MultiResolutionWindow.sliceTime(windowTimes[i], 1l, 60000l));
+        }
+        return new MultiResolutionWindow(60000l, windowTimes, windows);
+    }
+
+    @Test
+    public void testSliceTime() {
+        assertTrue(MultiResolutionWindow.sliceTime(1000l, 1l, 60000l) == 1l);
+        assertTrue(MultiResolutionWindow.sliceTime(60000l, 1l, 60000l) == 1l);
+        assertTrue(MultiResolutionWindow.sliceTime(3600000l, 1l, 60000l) == 60l);
+        // each window sliced in proportion to its length
+        assertTrue(MultiResolutionWindow.sliceTime(1000l, Constants.SLICE_TIME, Constants.MAX_SLICES) == 2l);
+        assertTrue(MultiResolutionWindow.sliceTime(60000l, Constants.SLICE_TIME, Constants.MAX_SLICES) == 100l);
+    }
+
+    @Test
+    public void testAddFeedsAllWindows() {
+        MultiResolutionWindow window = window();
+        assertTrue(window.add(NOW - 500, new BigDecimal("10"), NOW));
+        assertTrue(window.add(NOW - 5000, new BigDecimal("20"), NOW));
+
+        assertTrue(window.snapshot(NOW).getStatistics().getCount() == 2);
+        assertTrue(window.snapshot(1000l, NOW).getStatistics().getCount() == 1);
+        assertEquals(window.snapshot(3600000l, NOW).getStatistics().getSum(), new BigDecimal("30.00"));
+    }
+
+    @Test
+    public void testRejectedByPrimaryWindow() {
+        MultiResolutionWindow window = window();
+        assertFalse(window.add(NOW - 70000, new BigDecimal("10"), NOW));
+        assertTrue(window.snapshot(3600000l, NOW).getStatistics().getCount() == 0);
+    }
+
+    @Test
+    public void testAddAllForwardsAcceptedOnly() {
+        MultiResolutionWindow window = window();
+        long[] timestamps = {NOW - 500, NOW - 70000, NOW - 5000};
+        BigDecimal[] amounts = {new BigDecimal("10"), new BigDecimal("20"), new BigDecimal("30")};
+        boolean[] accepted = new boolean[3];
+
+        assertTrue(window.addAll(timestamps, amounts, 3, NOW, accepted) == 2);
+        assertTrue(accepted[0] && !accepted[1] && accepted[2]);
+        assertTrue(window.snapshot(3600000l, NOW).getStatistics().getCount() == 2);
+        assertEquals(window.snapshot(3600000l, NOW).getStatistics().getSum(), new BigDecimal("40.00"));
+    }
+
+    @Test
+    public void testWindowsExpireIndependently() {
+        MultiResolutionWindow window = window();
+        window.add(NOW, new BigDecimal("10"), NOW);
+
+        window.expire(NOW + 120000);
+        assertTrue(window.snapshot(NOW + 120000).getStatistics().getCount() == 0);
+        assertTrue(window.snapshot(3600000l, NOW + 120000).getStatistics().getCount() == 1);
+
+        window.clear();
+        assertTrue(window.snapshot(3600000l, NOW + 120000).getStatistics().getCount() == 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownWindow() {
+        window().snapshot(120000l, NOW);
+    }
+}
@@ -0,0 +1,83 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrderStatisticsWindowTest {
+
+    private static final long NOW = 1_000_000l;
+
+    @Test
+    public void testAddAndExpire() {
+        OrderStatisticsWindow window = new OrderStatisticsWindow(60000l, 10l, 1024);
+
+        assertTrue(window.add(NOW - 59000, new BigDecimal("30"), NOW));
+        assertTrue(window.add(NOW - 1000, new BigDecimal("10"), NOW));
+        assertTrue(window.add(NOW - 1000, new BigDecimal("20"), NOW));
+        assertFalse(window.add(NOW - 60011, new BigDecimal("40"), NOW));
+        assertFalse(window.add(NOW + 10, new BigDecimal("40"), NOW));
+
+        assertTrue(window.query(NOW, AmountIndex::getCount) == 3);
+        assertEquals(window.query(NOW, index -> index.select(2)), new BigDecimal("30.00"));
+
+        assertTrue(window.query(NOW + 1010, AmountIndex::getCount) == 2);
+        assertEquals(window.query(NOW + 1010, index -> index.select(1)), new BigDecimal("20.00"));
+
+        window.expire(NOW + 120000);
+        assertTrue(window.query(NOW + 120000, AmountIndex::getCount) == 0);
+    }
+
+    @Test(timeout = 10000)
+    public void testAddWhileQueried() throws InterruptedException {
+        OrderStatisticsWindow window = new OrderStatisticsWindow(60000l, 10l, 1024);
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        Thread reader = new Thread(() -> window.query(NOW, index -> {
+            querying.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return index.getCount();
+        }));
+        reader.start();
+        querying.await();
+
+        // buffered while the query holds the index, past the size applied by writers
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(window.add(NOW - i, BigDecimal.ONE, NOW));
+        }
+        released.countDown();
+        reader.join();
+
+        assertTrue(window.query(NOW, AmountIndex::getCount) == 5000);
+    }
+
+    @Test
+    public void testDisabled() {
+        OrderStatisticsWindow window = new OrderStatisticsWindow(60000l, 10l, 1024, false);
+        assertFalse(window.isEnabled());
+        assertFalse(window.add(NOW, BigDecimal.ONE, NOW));
+        assertTrue(window.addAll(new long[]{NOW}, new BigDecimal[]{BigDecimal.ONE}, 1, NOW) == 0);
+    }
+
+    @Test
+    public void testAddAll() {
+        OrderStatisticsWindow window = new OrderStatisticsWindow(60000l, 10l, 1024);
+        long[] timestamps = {NOW - 10, NOW - 20, NOW - 70000};
+        BigDecimal[] amounts = {new BigDecimal("-1"), new BigDecimal("5000"), new BigDecimal("1")};
+
+        assertTrue(window.addAll(timestamps, amounts, 3, NOW) == 2);
+        assertTrue(window.query(NOW, index -> index.rank(BigDecimal.ZERO)) == 1);
+
+        window.clear();
+        assertTrue(window.query(NOW, AmountIndex::getCount) == 0);
+    }
+}
@@ -0,0 +1,78 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.5, 0.95, 0.99, 1};
+
+    @Test
+    public void testRelativeError() {
+        Random random = new Random(42);
+        double[] amounts = new double[10000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < amounts.length; i++) {
+            // Long tailed, as transaction amounts are
+            amounts[i] = Math.round(Math.exp(random.nextGaussian() * 2 + 4) * 100) / 100d + 0.01;
+            sketch.accept(amounts[i]);
+        }
+        Arrays.sort(amounts);
+
+        assertTrue(sketch.getCount() == amounts.length);
+        for (double quantile : QUANTILES) {
+            assertWithinBound(sketch.getQuantile(quantile), amounts[(int) (quantile * (amounts.length - 1))]);
+        }
+    }
+
+    @Test
+    public void testNegativeAndZeroAmounts() {
+        QuantileSketch sketch = new QuantileSketch();
+        double[] amounts = {-500, -20.5, -3, 0, 0, 7.25, 1000};
+        for (double amount : amounts) {
+            sketch.accept(amount);
+        }
+
+        for (int i = 0; i < amounts.length; i++) {
+            assertWithinBound(sketch.getQuantile((double) i / (amounts.length - 1)), amounts[i]);
+        }
+    }
+
+    @Test
+    public void testCombineAndSubtract() {
+        QuantileSketch first = new QuantileSketch();
+        QuantileSketch second = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            first.accept(i);
+            second.accept(i + 100);
+        }
+
+        QuantileSketch merged = new QuantileSketch(first).combine(second);
+        assertTrue(merged.getCount() == 200);
+        assertWithinBound(merged.getQuantile(0.5), 100);
+        assertWithinBound(merged.getQuantile(0.99), 198);
+
+        merged.subtract(first);
+        assertTrue(merged.getCount() == 100);
+        assertWithinBound(merged.getQuantile(0), 101);
+        assertWithinBound(merged.getQuantile(0.5), 150);
+
+        merged.subtract(second);
+        assertTrue(merged.getCount() == 0);
+        assertTrue(Double.isNaN(merged.getQuantile(0.5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantile() {
+        new QuantileSketch().getQuantile(1.5);
+    }
+
+    private static void assertWithinBound(double estimate, double exact) {
+        assertTrue(estimate + " is not within the bound of " + exact,
+                Math.abs(estimate - exact) <= QuantileSketch.RELATIVE_ACCURACY * Math.abs(exact) + 1e-9);
+    }
+}
@@ -0,0 +1,103 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RollupHistoryTest {
+
+    // On a minute boundary
+    private static final long START = 1600000020000l;
+
+    private final RollupHistory history = new RollupHistory(new long[]{1000l, 60000l}, new long[]{3600000l, 86400000l});
+
+    @Test
+    public void testQueryBySecondAndMinute() {
+        history.add(START, new BigDecimal("1.00"));
+        history.add(START + 500l, new BigDecimal("3.00"));
+        history.add(START + 1000l, new BigDecimal("2.005"));
+        history.addAll(new long[]{START + 61000l, START + 62000l}, new BigDecimal[]{new BigDecimal("-4"), new BigDecimal("10")}, 2);
+
+        FixedPointStatistics[] seconds = history.query(START, 1000l, 3, START + 120000l);
+        assertTrue(seconds[0].getCount() == 2);
+        assertTrue(seconds[0].getScaledSum() == 400l);
+        assertTrue(seconds[0].getScaledMin() == 100l && seconds[0].getScaledMax() == 300l);
+        // Rounded half up to cents
+        assertTrue(seconds[1].getScaledSum() == 201l);
+        assertTrue(seconds[2].getCount() == 0);
+
+        FixedPointStatistics[] minutes = history.query(START, 60000l, 2, START + 120000l);
+        assertTrue(minutes[0].getCount() == 3);
+        assertTrue(minutes[1].getCount() == 2);
+        assertTrue(minutes[1].getScaledSum() == 600l);
+        assertTrue(minutes[1].getScaledMin() == -400l);
+
+        FixedPointStatistics[] steps = history.query(START, 30000l, 4, START + 120000l);
+        assertTrue(steps[0].getCount() == 3 && steps[1].getCount() == 0 && steps[2].getCount() == 2);
+    }
+
+    @Test
+    public void testRetention() {
+        history.add(START, new BigDecimal("1.00"));
+        long now = START + 7200000l;
+        history.add(now, new BigDecimal("2.00"));
+
+        // Out of the seconds after an hour, still in the minutes
+        assertTrue(history.query(START, 1000l, 1, now)[0].getCount() == 0);
+        assertTrue(history.query(START, 60000l, 1, now)[0].getCount() == 1);
+        // Slots recycled by newer slices reject older ones
+        assertFalse(history.add(now - 3600000l, new BigDecimal("3.00")));
+
+        history.clear();
+        assertTrue(history.query(now, 60000l, 1, now)[0].getCount() == 0);
+    }
+
+    @Test
+    public void testNoSumOverflow() {
+        BigDecimal amount = BigDecimal.valueOf(900000000000000000l, 2);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(history.add(START, amount));
+        }
+        assertFalse(history.add(START, amount));
+        assertFalse(history.add(START, new BigDecimal("1E+30")));
+
+        FixedPointStatistics second = history.query(START, 1000l, 1, START)[0];
+        assertTrue(second.getCount() == 10);
+        assertEquals(second.getSum(), amount.multiply(BigDecimal.TEN));
+    }
+
+    @Test
+    public void testQueryMergesStripes() throws InterruptedException {
+        RollupHistory striped = new RollupHistory(new long[]{1000l, 60000l}, new long[]{3600000l, 86400000l}, 4);
+        Thread[] writers = new Thread[8];
+        for (int t = 0; t < writers.length; t++) {
+            long amount = t + 1;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    striped.add(START + i % 60000, BigDecimal.valueOf(amount));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        FixedPointStatistics minute = striped.query(START, 60000l, 1, START + 60000l)[0];
+        assertTrue(minute.getCount() == 80000);
+        assertEquals(minute.getSum(), new BigDecimal("360000.00"));
+        assertTrue(minute.getScaledMin() == 100l && minute.getScaledMax() == 800l);
+
+        striped.clear();
+        assertTrue(striped.query(START, 60000l, 1, START + 60000l)[0].getCount() == 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStepNotMultipleOfSlices() {
+        history.query(START, 1500l, 1, START);
+    }
+}
@@ -0,0 +1,125 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StripedWindowTest {
+
+    private static final long NOW = 1_000_000l;
+
+    @Test
+    public void testConcurrentAdds() throws InterruptedException {
+        StripedWindow window = new StripedWindow(60000l, 1l, 4);
+        assertTrue(window.getStripeCount() == 4);
+
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int offset = t;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    window.add(NOW - i, new BigDecimal(offset + 1), NOW);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        FixedPointStatistics statistics = window.snapshot(NOW).getStatistics();
+        assertTrue(statistics.getCount() == 8000);
+        assertEquals(statistics.getSum(), new BigDecimal("36000.00"));
+        assertEquals(statistics.getMin(), new BigDecimal("1.00"));
+        assertEquals(statistics.getMax(), new BigDecimal("8.00"));
+    }
+
+    @Test
+    public void testSnapshotExpiresStripes() {
+        StripedWindow window = new StripedWindow(60000l, 1l, 2);
+        window.add(NOW - 59000, new BigDecimal("5"), NOW);
+        window.add(NOW - 1000, new BigDecimal("3"), NOW);
+
+        WindowSnapshot snapshot = window.snapshot(NOW);
+        assertTrue(snapshot.getStatistics().getCount() == 2);
+        assertTrue(window.snapshot(NOW) == snapshot);
+
+        WindowSnapshot expired = window.snapshot(NOW + 1001);
+        assertTrue(expired.getVersion() > snapshot.getVersion());
+        assertTrue(expired.getStatistics().getCount() == 1);
+        assertEquals(expired.getStatistics().getMax(), new BigDecimal("3.00"));
+    }
+
+    @Test(timeout = 10000)
+    public void testSnapshotExpiresLockedStripes() throws InterruptedException {
+        StripedWindow window = new StripedWindow(60000l, 1l, 1);
+        window.add(NOW - 59000, new BigDecimal("5"), NOW);
+        window.add(NOW - 1000, new BigDecimal("3"), NOW);
+        assertTrue(window.snapshot(NOW).getStatistics().getCount() == 2);
+
+        CountDownLatch released = new CountDownLatch(1);
+        Thread holder = holdLock(window, released);
+        FixedPointStatistics statistics = window.snapshot(NOW + 1001).getStatistics();
+        released.countDown();
+        holder.join();
+
+        assertTrue(statistics.getCount() == 1);
+        assertEquals(statistics.getMax(), new BigDecimal("3.00"));
+    }
+
+    @Test(timeout = 10000)
+    public void testSnapshotDoesNotWaitForSketches() throws InterruptedException {
+        StripedWindow window = new StripedWindow(60000l, 1l, 1);
+        window.add(NOW, new BigDecimal("5"), NOW);
+        assertTrue(window.snapshot(NOW).getQuantiles().getCount() == 1);
+        window.add(NOW, new BigDecimal("3"), NOW);
+
+        CountDownLatch released = new CountDownLatch(1);
+        Thread holder = holdLock(window, released);
+        WindowSnapshot snapshot = window.snapshot(NOW);
+        released.countDown();
+        holder.join();
+
+        // the sketch copied before the lock was taken
+        assertTrue(snapshot.getStatistics().getCount() == 2);
+        assertTrue(snapshot.getQuantiles().getCount() == 1);
+        assertTrue(window.snapshot(NOW).getQuantiles().getCount() == 2);
+    }
+
+    @Test
+    public void testAddOutsideOfWindowAndClear() {
+        StripedWindow window = new StripedWindow(60000l, 1l, 2);
+        assertFalse(window.add(NOW - 60001, new BigDecimal("5"), NOW));
+        assertTrue(window.add(NOW, new BigDecimal("5"), NOW));
+
+        window.clear();
+
+        assertTrue(window.snapshot(NOW).getStatistics().getCount() == 0);
+    }
+
+    /**
+     * Holds the lock of the first stripe from another thread, in a visitor of its slices,
+     * until {@code released}.
+     */
+    private static Thread holdLock(StripedWindow window, CountDownLatch released) throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread holder = new Thread(() -> window.forEachSlice((windowTime, sliceTime, epoch, statistics, sketch) -> {
+            locked.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        locked.await();
+        return holder;
+    }
+}
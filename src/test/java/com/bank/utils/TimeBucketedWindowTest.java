@@ -0,0 +1,135 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeBucketedWindowTest {
+
+    private static final long NOW = 1_000_000l;
+
+    @Test
+    public void testAddAndSnapshot() {
+        TimeBucketedWindow window = new TimeBucketedWindow(60000l, 10l);
+
+        assertTrue(window.add(NOW - 100, new BigDecimal("100.00"), NOW));
+        assertTrue(window.add(NOW - 105, new BigDecimal("110.00"), NOW));
+        assertTrue(window.add(NOW - 30000, new BigDecimal("90.00"), NOW));
+
+        FixedPointStatistics statistics = window.snapshot();
+        assertTrue(statistics.getCount() == 3);
+        assertEquals(statistics.getSum(), new BigDecimal("300.00"));
+        assertEquals(statistics.getMax(), new BigDecimal("110.00"));
+        assertEquals(statistics.getMin(), new BigDecimal("90.00"));
+    }
+
+    @Test
+    public void testQuantilesFollowExpiry() {
+        TimeBucketedWindow window = new TimeBucketedWindow(60000l, 10l);
+        window.add(NOW - 59000, new BigDecimal("1000.00"), NOW);
+        for (int i = 1; i <= 9; i++) {
+            window.add(NOW - 1000, BigDecimal.valueOf(i), NOW);
+        }
+
+        QuantileSketch quantiles = window.quantiles();
+        assertTrue(quantiles.getCount() == 10);
+        assertTrue(quantiles.getQuantile(1) > 990);
+        assertTrue(window.quantiles() == quantiles);
+
+        window.expire(NOW + 1010);
+        quantiles = window.quantiles();
+        assertTrue(quantiles.getCount() == 9);
+        assertTrue(quantiles.getQuantile(1) < 9.1);
+    }
+
+    @Test
+    public void testAddOutsideOfWindow() {
+        TimeBucketedWindow window = new TimeBucketedWindow(60000l, 10l);
+
+        assertFalse(window.add(NOW - 60011, new BigDecimal("100.00"), NOW));
+        assertFalse(window.add(NOW + 10, new BigDecimal("100.00"), NOW));
+        assertTrue(window.snapshot().getCount() == 0);
+    }
+
+    @Test
+    public void testExpire() {
+        TimeBucketedWindow window = new TimeBucketedWindow(60000l, 10l);
+        window.add(NOW - 59000, new BigDecimal("5"), NOW);
+        window.add(NOW - 1000, new BigDecimal("3"), NOW);
+
+        assertFalse(window.hasExpired(NOW + 500));
+        assertFalse(window.expire(NOW + 500));
+        assertTrue(window.snapshot().getCount() == 2);
+
+        assertTrue(window.hasExpired(NOW + 1010));
+        assertTrue(window.expire(NOW + 1010));
+        assertFalse(window.hasExpired(NOW + 1010));
+        FixedPointStatistics statistics = window.snapshot();
+        assertTrue(statistics.getCount() == 1);
+        assertEquals(statistics.getMax(), new BigDecimal("3.00"));
+
+        assertTrue(window.expire(NOW + 120000));
+        assertTrue(window.snapshot().getCount() == 0);
+    }
+
+    @Test
+    public void testAddAfterSliceEvicted() {
+        TimeBucketedWindow window = new TimeBucketedWindow(60000l, 10l);
+        window.expire(NOW);
+
+        // admitted by its age, but dropped with its slice
+        assertTrue(window.add(NOW - 60005, new BigDecimal("5"), NOW - 10));
+        assertTrue(window.add(NOW - 59990, new BigDecimal("5"), NOW - 10));
+        assertFalse(window.add(NOW - 60011, new BigDecimal("5"), NOW - 10));
+        assertTrue(window.snapshot().getCount() == 1);
+    }
+
+    @Test
+    public void testSlotReuseAcrossWraps() {
+        TimeBucketedWindow window = new TimeBucketedWindow(100l, 10l);
+        for (long now = NOW; now < NOW + 1000; now += 7) {
+            window.expire(now);
+            window.add(now, BigDecimal.ONE, now);
+        }
+        // the one at 896 is dropped with its slice starting at 890
+        assertTrue(window.snapshot().getCount() == 14);
+        window.expire(NOW + 2000);
+        assertTrue(window.snapshot().getCount() == 0);
+    }
+
+    @Test
+    public void testExtremesRecomputedAfterEviction() {
+        TimeBucketedWindow window = new TimeBucketedWindow(1000l, 1l);
+        window.add(NOW - 900, new BigDecimal("1"), NOW);
+        window.add(NOW - 800, new BigDecimal("9"), NOW);
+        window.add(NOW - 100, new BigDecimal("5"), NOW);
+
+        window.expire(NOW + 150);
+        FixedPointStatistics statistics = window.snapshot();
+        assertEquals(statistics.getMin(), new BigDecimal("5.00"));
+        assertEquals(statistics.getMax(), new BigDecimal("9.00"));
+        assertEquals(statistics.getSum(), new BigDecimal("14.00"));
+
+        window.expire(NOW + 250);
+        statistics = window.snapshot();
+        assertEquals(statistics.getMin(), new BigDecimal("5.00"));
+        assertEquals(statistics.getMax(), new BigDecimal("5.00"));
+        assertTrue(statistics.getCount() == 1);
+    }
+
+    @Test
+    public void testClear() {
+        TimeBucketedWindow window = new TimeBucketedWindow(60000l, 10l);
+        window.add(NOW, new BigDecimal("5"), NOW);
+        long version = window.getVersion();
+
+        window.clear();
+
+        assertTrue(window.getVersion() > version);
+        assertTrue(window.snapshot().getCount() == 0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class TimeSourceTest {
+
+    @Test
+    public void testVirtual() {
+        VirtualTimeSource timeSource = new VirtualTimeSource(1000l);
+        assertTrue(timeSource.millis() == 1000l);
+        assertTrue(timeSource.advance(500l) == 1500l);
+        assertTrue(timeSource.millis() == 1500l);
+        timeSource.set(100l);
+        assertTrue(timeSource.millis() == 100l);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVirtualBackwards() {
+        new VirtualTimeSource(1000l).advance(-1l);
+    }
+
+    @Test
+    public void testCached() throws InterruptedException {
+        try (CachedTimeSource timeSource = new CachedTimeSource(5l)) {
+            long first = timeSource.millis();
+            assertTrue(first <= System.currentTimeMillis());
+            long deadline = System.currentTimeMillis() + 5000l;
+            while (timeSource.millis() == first && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1l);
+            }
+            assertTrue(timeSource.millis() > first);
+            assertTrue(timeSource.millis() <= System.currentTimeMillis());
+        }
+    }
+}
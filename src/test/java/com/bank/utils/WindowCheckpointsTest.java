@@ -0,0 +1,156 @@
+package com.bank.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WindowCheckpointsTest {
+
+    private static final long NOW = 1530000000000l;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StatisticsWindow window = new StripedWindow(60000l, 1l, 4);
+        window.add(NOW - 59000, new BigDecimal("1.5"), NOW);
+        window.add(NOW - 1000, new BigDecimal("12.3343"), NOW);
+        window.add(NOW, new BigDecimal("-3"), NOW);
+        window.add(NOW, new BigDecimal("2"), NOW);
+        WindowCheckpoints checkpoints = new WindowCheckpoints(folder.getRoot().toPath());
+        checkpoints.write(NOW, new WriteAheadLog.Position(NOW, 3, 120), WindowCheckpoints.capture(window));
+
+        // The oldest slice expired meanwhile
+        StatisticsWindow restored = new LockedWindow(60000l, 1l);
+        WindowCheckpoints.Checkpoint checkpoint = checkpoints.restore(restored, NOW + 2000);
+        assertTrue(checkpoint.getCreatedAt() == NOW);
+        assertEquals(checkpoint.getPosition().toString(), NOW + "-3@120");
+        assertTrue(checkpoint.getRestoredSlices() == 2);
+        WindowSnapshot snapshot = restored.snapshot(NOW + 2000);
+        assertTrue(snapshot.getStatistics().getCount() == 3);
+        assertEquals(snapshot.getStatistics().getSum(), new BigDecimal("11.3343"));
+        assertEquals(snapshot.getStatistics().getMin(), new BigDecimal("-3.00"));
+        assertEquals(snapshot.getStatistics().getMax(), new BigDecimal("12.3343"));
+        assertTrue(snapshot.getQuantiles().getCount() == 3);
+
+        // Slices of another resolution are ignored
+        StatisticsWindow resliced = new LockedWindow(60000l, 10l);
+        assertTrue(checkpoints.restore(resliced, NOW).getRestoredSlices() == 0);
+        assertTrue(resliced.snapshot(NOW).getStatistics().getCount() == 0);
+    }
+
+    @Test
+    public void testEncodeCopy() {
+        StatisticsWindow window = new LockedWindow(60000l, 100l);
+        window.add(NOW, BigDecimal.ONE, NOW);
+        WindowCheckpoints.Slices copied = WindowCheckpoints.copy(window);
+        // Added after the copy, left out of the encoded slices
+        window.add(NOW, BigDecimal.TEN, NOW);
+        assertTrue(copied.size() == 1);
+
+        StatisticsWindow merged = new LockedWindow(60000l, 100l);
+        assertTrue(WindowCheckpoints.merge(WindowCheckpoints.encode(copied), merged, NOW) == 1);
+        assertEquals(merged.snapshot(NOW).getStatistics().getSum(), new BigDecimal("1.00"));
+        assertTrue(merged.snapshot(NOW).getQuantiles().getCount() == 1);
+    }
+
+    @Test
+    public void testMergeMalformedSlices() throws IOException {
+        assertTrue(WindowCheckpoints.merge(slice(100l, 100l, new int[]{3, 5}, new long[]{1l, 1l}),
+                new LockedWindow(60000l, 100l), NOW) == 1);
+
+        assertMalformed(slice(100l, 100l, new int[]{5, 3}, new long[]{1l, 1l}));
+        assertMalformed(slice(100l, 100l, new int[]{3, 3}, new long[]{1l, 1l}));
+        assertMalformed(slice(100l, 100l, new int[]{3}, new long[]{-1l}));
+        assertMalformed(slice(100l, 100l, new int[]{3, 5}, new long[]{Long.MAX_VALUE, 1l}));
+        assertMalformed(slice(200l, 100l, new int[]{3}, new long[]{1l}));
+
+        // A bucket count larger than any sketch, nothing allocated
+        byte[] bytes = slice(100l, 100l, new int[0], new long[0]);
+        bytes[bytes.length - 9] = 0x7f;
+        assertMalformed(bytes);
+    }
+
+    @Test
+    public void testCorruptCheckpoint() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WindowCheckpoints checkpoints = new WindowCheckpoints(directory);
+        assertNull(checkpoints.restore(new LockedWindow(60000l, 1l), NOW));
+
+        StatisticsWindow window = new LockedWindow(60000l, 1l);
+        window.add(NOW, BigDecimal.ONE, NOW);
+        checkpoints.write(NOW, null, WindowCheckpoints.capture(window));
+        checkpoints.write(NOW + 1, null, WindowCheckpoints.capture(window));
+        window.add(NOW, BigDecimal.TEN, NOW);
+        Path newest = checkpoints.write(NOW + 2, null, WindowCheckpoints.capture(window));
+        // Only the newest two are kept
+        try (Stream<Path> paths = Files.list(directory)) {
+            assertTrue(paths.count() == 2);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(newest.toFile(), "rw")) {
+            file.seek(file.length() - 10);
+            file.write(0x7f);
+        }
+        StatisticsWindow restored = new LockedWindow(60000l, 1l);
+        WindowCheckpoints.Checkpoint checkpoint = checkpoints.restore(restored, NOW);
+        assertTrue(checkpoint.getCreatedAt() == NOW + 1);
+        assertNull(checkpoint.getPosition());
+        assertEquals(restored.snapshot(NOW).getStatistics().getSum(), new BigDecimal("1.00"));
+
+        checkpoints.clear();
+        assertNull(checkpoints.restore(new LockedWindow(60000l, 1l), NOW));
+    }
+
+    /**
+     * Slices as {@link WindowCheckpoints#capture} writes them, one slice of positive
+     * buckets at NOW.
+     */
+    private static byte[] slice(long min, long max, int[] indexes, long[] counts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeLong(60000l);
+        out.writeLong(100l);
+        out.writeByte(2);
+        out.writeLong(NOW / 100l);
+        out.writeLong(1l);
+        out.writeBoolean(false);
+        out.writeLong(min);
+        out.writeLong(min);
+        out.writeLong(max);
+        out.writeLong(0l);
+        out.writeInt(indexes.length);
+        for (int i = 0; i < indexes.length; i++) {
+            out.writeInt(indexes[i]);
+            out.writeLong(counts[i]);
+        }
+        out.writeInt(0);
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static void assertMalformed(byte[] slices) {
+        try {
+            WindowCheckpoints.merge(slices, new LockedWindow(60000l, 100l), NOW);
+            fail("Merged malformed slices");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.bank.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WindowDurationsTest {
+
+    @Test
+    public void testParse() {
+        assertTrue(WindowDurations.parse("250ms") == 250l);
+        assertTrue(WindowDurations.parse("60s") == 60000l);
+        assertTrue(WindowDurations.parse("1m") == 60000l);
+        assertTrue(WindowDurations.parse(" 1H ") == 3600000l);
+        assertTrue(WindowDurations.parse("2d") == 172800000l);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalid() {
+        WindowDurations.parse("1 hour");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseZero() {
+        WindowDurations.parse("0s");
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals(WindowDurations.format(60000l), "1m");
+        assertEquals(WindowDurations.format(90000l), "90s");
+        assertEquals(WindowDurations.format(3600000l), "1h");
+        assertEquals(WindowDurations.format(1500l), "1500ms");
+    }
+}
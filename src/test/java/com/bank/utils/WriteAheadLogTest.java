@@ -0,0 +1,180 @@
+package com.bank.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WriteAheadLogTest {
+
+    private static final long NOW = 1530000000000l;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplay() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = new WriteAheadLog(directory, 60000l, 60000l, 4096);
+        log.replay(NOW, (timestamp, amount, key, checkpointed) -> {
+        });
+        log.append(NOW - 70000, new BigDecimal("1.5"), null, NOW - 10000);
+        log.append(NOW - 1000, new BigDecimal("12.3343"), "account-1", NOW - 1000);
+        log.appendAll(new long[]{NOW - 500, NOW}, new BigDecimal[]{new BigDecimal("-3"), new BigDecimal("1E+30")},
+                new String[]{null, "merchant-é"}, 2, NOW, null);
+        log.close();
+
+        List<String> records = replay(directory, NOW);
+        assertEquals(records.size(), 3);
+        assertEquals(records.get(0), (NOW - 1000) + " 12.3343 account-1");
+        assertEquals(records.get(1), (NOW - 500) + " -3 null");
+        assertEquals(records.get(2), NOW + " 1E+30 merchant-é");
+    }
+
+    @Test
+    public void testReplayScaled() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = new WriteAheadLog(directory, 60000l, 60000l, 4096);
+        log.replay(NOW, (timestamp, amount, key, checkpointed) -> {
+        });
+        log.append(NOW - 1000, 1233l, "account-1", NOW - 1000);
+        long[] amounts = {0l, 127l, 128l, -128l, -129l, Long.MAX_VALUE, Long.MIN_VALUE};
+        long[] timestamps = new long[amounts.length];
+        Arrays.fill(timestamps, NOW);
+        log.appendAll(timestamps, amounts, new String[amounts.length], amounts.length, NOW, null);
+        log.close();
+
+        List<String> records = replay(directory, NOW);
+        assertEquals(records.size(), 8);
+        assertEquals(records.get(0), (NOW - 1000) + " 12.33 account-1");
+        for (int i = 0; i < amounts.length; i++) {
+            assertEquals(records.get(i + 1), NOW + " " + BigDecimal.valueOf(amounts[i], FixedPointStatistics.SCALE) + " null");
+        }
+    }
+
+    @Test
+    public void testRotationAndExpiry() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = new WriteAheadLog(directory, 60000l, 60000l, 128);
+        log.replay(NOW, (timestamp, amount, key, checkpointed) -> {
+        });
+        // Records of 29 bytes, four per segment of 128 bytes
+        for (int i = 0; i < 7; i++) {
+            log.append(NOW, BigDecimal.ONE, null, NOW);
+        }
+        log.append(NOW + 60000, BigDecimal.TEN, null, NOW + 60000);
+        assertEquals(segments(directory).size(), 3);
+
+        // The segments of the first minute expire once their last possible record did
+        log.deleteExpired(NOW + 119999 - Math.floorMod(NOW, 60000l));
+        assertEquals(segments(directory).size(), 3);
+        log.deleteExpired(NOW + 120000 - Math.floorMod(NOW, 60000l));
+        assertEquals(segments(directory).size(), 1);
+        assertEquals(replay(directory, NOW + 60000), Stream.of((NOW + 60000) + " 10 null").collect(Collectors.toList()));
+
+        log.clear();
+        assertTrue(segments(directory).isEmpty());
+    }
+
+    @Test
+    public void testReplayStopsAtTornRecord() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = new WriteAheadLog(directory, 60000l, 60000l, 4096);
+        log.replay(NOW, (timestamp, amount, key, checkpointed) -> {
+        });
+        log.append(NOW, BigDecimal.ONE, null, NOW);
+        log.append(NOW, BigDecimal.TEN, null, NOW);
+        log.close();
+
+        // Corrupts the last byte of the second record
+        Path segment = segments(directory).get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(2 * 29 - 1);
+            file.write(0x7f);
+        }
+
+        WriteAheadLog restarted = new WriteAheadLog(directory, 60000l, 60000l, 4096);
+        List<String> records = new ArrayList<>();
+        restarted.replay(NOW, (timestamp, amount, key, checkpointed) -> records.add(amount.toString()));
+        assertEquals(records, Stream.of("1").collect(Collectors.toList()));
+
+        // Appends after a restart start a new segment
+        restarted.append(NOW, new BigDecimal("2"), null, NOW);
+        restarted.close();
+        assertEquals(segments(directory).size(), 2);
+        assertEquals(replay(directory, NOW).size(), 2);
+    }
+
+    @Test
+    public void testSyncForcesEveryAppend() {
+        WriteAheadLog log = new WriteAheadLog(folder.getRoot().toPath(), 60000l, 60000l, 4096);
+        log.append(NOW, BigDecimal.ONE, null, NOW);
+        assertTrue(log.getUnsyncedBytes() > 0);
+        assertTrue(log.sync() == 1);
+        assertTrue(log.sync() == 0);
+
+        // Appended to the segment synced already, forced again by the next sync
+        log.append(NOW, BigDecimal.TEN, null, NOW);
+        assertTrue(log.sync() == 1);
+        assertTrue(log.getUnsyncedBytes() == 0l);
+        log.close();
+    }
+
+    @Test
+    public void testMark() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        WriteAheadLog log = new WriteAheadLog(directory, 60000l, 60000l, 4096);
+        log.replay(NOW, (timestamp, amount, key, checkpointed) -> {
+        });
+        log.append(NOW, BigDecimal.ONE, null, NOW);
+        WriteAheadLog.Position position = log.mark();
+        assertEquals(log.mark().toString(), position.toString());
+        // The next appends still go to the marked segment, after the mark
+        log.append(NOW, BigDecimal.TEN, null, NOW);
+        log.close();
+        assertEquals(segments(directory).size(), 1);
+
+        List<String> records = new ArrayList<>();
+        new WriteAheadLog(directory, 60000l, 60000l, 4096)
+                .replay(NOW, position, (timestamp, amount, key, checkpointed) -> records.add(amount + " " + checkpointed));
+        assertEquals(records, Stream.of("1 true", "10 false").collect(Collectors.toList()));
+
+        // Marked before the first append of a restart, all the replayed records are before
+        WriteAheadLog restarted = new WriteAheadLog(directory, 60000l, 60000l, 4096);
+        restarted.replay(NOW, (timestamp, amount, key, checkpointed) -> {
+        });
+        WriteAheadLog.Position restart = restarted.mark();
+        restarted.append(NOW, new BigDecimal("100"), null, NOW);
+        restarted.close();
+        records.clear();
+        new WriteAheadLog(directory, 60000l, 60000l, 4096)
+                .replay(NOW, restart, (timestamp, amount, key, checkpointed) -> records.add(amount + " " + checkpointed));
+        assertEquals(records, Stream.of("1 true", "10 true", "100 false").collect(Collectors.toList()));
+    }
+
+    private static List<String> replay(Path directory, long now) throws IOException {
+        List<String> records = new ArrayList<>();
+        new WriteAheadLog(directory, 60000l, 60000l, 4096)
+                .replay(now, (timestamp, amount, key, checkpointed) -> records.add(timestamp + " " + amount + " " + key));
+        return records;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+}